@@ -0,0 +1,141 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.Pose3D;
+import org.firstinspires.ftc.robotcore.external.navigation.Position;
+import org.firstinspires.ftc.teamcode.hardwareSystems.Webcam;
+import org.firstinspires.ftc.vision.apriltag.AprilTagDetection;
+
+import java.util.List;
+
+/**
+ * Corrects a {@link Localizer} with AprilTag poses, compensating for camera latency.
+ * <p>
+ * A detection describes where the robot was when the frame was captured, often 50-100 ms before it's
+ * processed. Rather than setting the current pose to that, the relocalizer looks up the odometry pose
+ * at the frame's capture time, replaces it with the tag pose, and replays the odometry motion since then
+ * on top of it. This is kept as a rigid correction from the odometry frame to the field frame,
+ * so the wrapped localizer's pose is never touched and its history stays consistent.
+ * <p>
+ * Tag poses come from {@link AprilTagDetection#robotPose}; see {@link FusionLocalizer}.
+ */
+@Config
+public final class AprilTagRelocalizer implements Localizer {
+    public static class Params {
+        // odometry poses kept for lookups; must cover the camera latency at the loop rate
+        public int historyCapacity = 100;
+        public double tagMaxRange = 72.0; // in inches
+        // fraction of each correction applied; 1 snaps to the tag
+        public double correctionGain = 1.0;
+    }
+
+    public static Params PARAMS = new Params();
+
+    public final Localizer odometry;
+    public final Webcam webcam;
+
+    private final PoseBuffer history = new PoseBuffer(PARAMS.historyCapacity);
+
+    // field pose = correction * odometry pose
+    private Pose2d correction = new Pose2d(0.0, 0.0, 0.0);
+    private Pose2d pose;
+
+    private long corrections, staleDetections;
+    private long lastLatencyNanos;
+
+    public AprilTagRelocalizer(Localizer odometry, Webcam webcam) {
+        this.odometry = odometry;
+        this.webcam = webcam;
+
+        pose = odometry.getPose();
+    }
+
+    @Override
+    public void setPose(Pose2d pose) {
+        correction = pose.times(odometry.getPose().inverse());
+        this.pose = pose;
+    }
+
+    @Override
+    public Pose2d getPose() {
+        return pose;
+    }
+
+    @Override
+    public PoseVelocity2d update() {
+        PoseVelocity2d vel = odometry.update();
+
+        Pose2d odometryPose = odometry.getPose();
+        history.add(System.nanoTime(), odometryPose, vel);
+
+        List<AprilTagDetection> detections = webcam.getFreshAprilTagDetections();
+        if (detections != null) {
+            for (AprilTagDetection detection : detections) {
+                relocalize(detection);
+            }
+        }
+
+        pose = correction.times(odometryPose);
+
+        // the velocity is in the robot frame, so the correction doesn't change it
+        return vel;
+    }
+
+    private void relocalize(AprilTagDetection detection) {
+        Pose3D robotPose = detection.robotPose;
+        if (detection.metadata == null || robotPose == null || detection.ftcPose == null
+                || detection.ftcPose.range > PARAMS.tagMaxRange) {
+            return;
+        }
+
+        long captureNanos = detection.frameAcquisitionNanoTime;
+        Pose2d odometryThen = history.getPoseAt(captureNanos);
+        if (odometryThen == null) {
+            // captured before the oldest pose kept
+            staleDetections++;
+            return;
+        }
+
+        Position position = robotPose.getPosition().toUnit(DistanceUnit.INCH);
+        Pose2d tagPose = new Pose2d(position.x, position.y, robotPose.getOrientation().getYaw(AngleUnit.RADIANS));
+
+        Pose2d target = tagPose.times(odometryThen.inverse());
+        double gain = PARAMS.correctionGain;
+        if (gain >= 1.0) {
+            correction = target;
+        } else {
+            correction = new Pose2d(
+                    correction.position.plus(target.position.minus(correction.position).times(gain)),
+                    correction.heading.plus(gain * target.heading.minus(correction.heading)));
+        }
+
+        corrections++;
+        lastLatencyNanos = System.nanoTime() - captureNanos;
+    }
+
+    /**
+     * @return how many detections have corrected the pose
+     */
+    public long getCorrections() {
+        return corrections;
+    }
+
+    /**
+     * @return how many detections were captured outside the pose history
+     */
+    public long getStaleDetections() {
+        return staleDetections;
+    }
+
+    /**
+     * @return the time from capture to correction of the last detection used (in nanoseconds)
+     */
+    public long getLastLatencyNanos() {
+        return lastLatencyNanos;
+    }
+}
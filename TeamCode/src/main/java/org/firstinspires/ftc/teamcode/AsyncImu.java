@@ -0,0 +1,174 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.qualcomm.robotcore.hardware.IMU;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.AngularVelocity;
+import org.firstinspires.ftc.robotcore.external.navigation.UnnormalizedAngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads an {@link IMU} on a background thread so the control loop never waits on the I2C transaction.
+ * <p>
+ * Samples are handed to the loop through a triple buffer: the reader thread fills a spare slot and swaps it in
+ * with a single atomic exchange, and {@link #getLatest()} swaps out the newest one the same way.
+ * Neither side ever blocks or allocates a slot, and the loop always sees a complete sample.
+ * There must be only one consumer calling {@link #getLatest()}, e.g. the localizer.
+ * <p>
+ * Like {@link VoltageMonitor}, the thread stops by itself once the thread that created it dies;
+ * iterative op modes should call {@link #close()} in {@code stop()}.
+ */
+@Config
+public final class AsyncImu {
+    public static class Params {
+        // time between the starts of IMU reads (in milliseconds), about the IMU's 100 Hz fusion output period;
+        // reading faster only returns repeated samples, and 0 reads back to back, holding the hub's I2C bus
+        public long periodMs = 10;
+    }
+
+    public static Params PARAMS = new Params();
+
+    /**
+     * One IMU reading. Slots are reused, so copy out anything needed past the next {@link #getLatest()}.
+     */
+    public static final class Sample {
+        /**
+         * Increases by one with every reading; compare to tell whether a sample is new.
+         */
+        public long sequence;
+        /**
+         * The {@link System#nanoTime()} at which the reading was taken.
+         */
+        public long timestampNanos;
+        public YawPitchRollAngles angles;
+        /**
+         * In radians per second.
+         */
+        public AngularVelocity angularVelocity;
+    }
+
+    // low two bits: slot index; this bit: the slot hasn't been consumed yet
+    private static final int FRESH = 4;
+
+    public final IMU imu;
+
+    private final Sample[] slots = {new Sample(), new Sample(), new Sample()};
+    private final AtomicInteger latest;
+    // owned by the reader thread
+    private int back = 1;
+    // owned by the consumer
+    private int front = 0;
+
+    private final Thread owner;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    private volatile long sampleCount;
+    private volatile long lastSampleNanos;
+    private volatile double sampleRateHz;
+
+    public AsyncImu(IMU imu) {
+        this.imu = imu;
+
+        // take the first sample synchronously into the consumer's slot so getLatest() is valid immediately
+        read(slots[front], 1);
+        sampleCount = 1;
+        lastSampleNanos = slots[front].timestampNanos;
+        latest = new AtomicInteger(2);
+
+        owner = Thread.currentThread();
+        thread = new Thread(this::run, "AsyncImu");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return the newest sample; never blocks
+     */
+    public Sample getLatest() {
+        if ((latest.get() & FRESH) != 0) {
+            front = latest.getAndSet(front) & 3;
+        }
+
+        return slots[front];
+    }
+
+    /**
+     * @return how many samples have been read
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return the low-pass filtered rate at which samples are read (in hertz)
+     */
+    public double getSampleRateHz() {
+        return sampleRateHz;
+    }
+
+    /**
+     * @return how long ago the newest sample was read (in nanoseconds)
+     */
+    public long getStalenessNanos() {
+        return System.nanoTime() - lastSampleNanos;
+    }
+
+    /**
+     * Stops the reader thread. {@link #getLatest()} keeps returning the last sample.
+     */
+    public void close() {
+        closed = true;
+        thread.interrupt();
+    }
+
+    private void run() {
+        long sequence = 1;
+        long readStart = System.nanoTime();
+
+        while (!closed && owner.isAlive()) {
+            // count the read itself toward the period
+            long waitNanos = readStart + PARAMS.periodMs * 1_000_000 - System.nanoTime();
+            if (waitNanos > 0) {
+                try {
+                    Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+            readStart = System.nanoTime();
+
+            Sample sample = slots[back];
+            read(sample, ++sequence);
+            back = latest.getAndSet(back | FRESH) & 3;
+
+            double dt = (sample.timestampNanos - lastSampleNanos) * 1e-9;
+            if (dt > 0) {
+                double rate = 1 / dt;
+                sampleRateHz = sampleRateHz == 0 ? rate : sampleRateHz + 0.1 * (rate - sampleRateHz);
+            }
+            lastSampleNanos = sample.timestampNanos;
+            sampleCount = sequence;
+        }
+    }
+
+    private void read(Sample sample, long sequence) {
+        YawPitchRollAngles angles = imu.getRobotYawPitchRollAngles();
+        // Use degrees here to work around https://github.com/FIRST-Tech-Challenge/FtcRobotController/issues/1070
+        AngularVelocity angularVelocityDegrees = imu.getRobotAngularVelocity(AngleUnit.DEGREES);
+
+        sample.timestampNanos = System.nanoTime();
+        sample.sequence = sequence;
+        sample.angles = angles;
+        sample.angularVelocity = new AngularVelocity(
+                UnnormalizedAngleUnit.RADIANS,
+                (float) Math.toRadians(angularVelocityDegrees.xRotationRate),
+                (float) Math.toRadians(angularVelocityDegrees.yRotationRate),
+                (float) Math.toRadians(angularVelocityDegrees.zRotationRate),
+                angularVelocityDegrees.acquisitionTime
+        );
+    }
+}
@@ -1,20 +1,28 @@
 package org.firstinspires.ftc.teamcode;
 
-import androidx.annotation.NonNull;
-
-import com.acmerobotics.roadrunner.Arclength;
+import com.acmerobotics.roadrunner.Action;
 import com.acmerobotics.roadrunner.Pose2d;
-import com.acmerobotics.roadrunner.Pose2dDual;
-import com.acmerobotics.roadrunner.PosePath;
-import com.acmerobotics.roadrunner.Trajectory;
-import com.acmerobotics.roadrunner.TrajectoryActionBuilder;
-import com.acmerobotics.roadrunner.TrajectoryBuilder;
-import com.acmerobotics.roadrunner.TrajectoryBuilderParams;
-import com.acmerobotics.roadrunner.VelConstraint;
 import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
 
 @Autonomous(name = "Auto")
 public class Auto extends CustomLinearOp {
+    /**
+     * The compiled path, loaded during init.
+     */
+    private Action path;
+
+    /**
+     * Loads the path before "Start," so the match never waits on a file load or a first-time compile.
+     */
+    @Override
+    protected void onInit() {
+        path = TrajectoryCache.load(
+                MECANUM_DRIVE, "auto", new Pose2d(0, 0, 0),
+                new TrajectoryCache.Steps()
+                        .lineToX(40)
+        );
+    }
+
     /**
      * Automatically runs after pressing the "Init" button on the Control Hub
      */
@@ -22,12 +30,8 @@ public class Auto extends CustomLinearOp {
     public void runOpMode() {
         super.runOpMode();
 
-        new TrajectoryBuilder(new Pose2d(0, 0, 0))
-                .forward(40)
-                        .build();
-
-        MECANUM_DRIVE.actionBuilder(new Pose2d(0, 0, 0));
+        SCHEDULER.runBlocking(path);
 
         telemetry.update();
     }
-}
\ No newline at end of file
+}
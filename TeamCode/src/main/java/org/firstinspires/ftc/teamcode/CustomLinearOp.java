@@ -30,6 +30,16 @@ public class CustomLinearOp extends LinearOpMode {
 
     /* Robot systems */
 
+    /**
+     * Refreshes the bulk-read cache of every hub.
+     * Tick it once at the top of every loop, before reading any sensors.
+     */
+    protected LoopClock LOOP_CLOCK;
+    /**
+     * Runs RoadRunner actions at a fixed loop period.
+     */
+    protected FixedRateScheduler SCHEDULER;
+
     protected Wheels WHEELS;
     /*
      *  TODO: For default purposes, the class is set to MecanumDrive.
@@ -120,8 +130,11 @@ public class CustomLinearOp extends LinearOpMode {
      */
     public void autoSleep(HashSet<DcMotor> motors) {
         // Sleep while any of the motors are still running.
+        // `isBusy()` is read from the bulk cache, so refresh it each time.
+        LOOP_CLOCK.tick();
         while (motors.stream().anyMatch(DcMotor::isBusy)) {
             sleep(1);
+            LOOP_CLOCK.tick();
         }
     }
 
@@ -254,6 +267,10 @@ public class CustomLinearOp extends LinearOpMode {
     public void runOpMode() {
         autoSleepEnabled = true;
 
+        // Must come before any subsystem reads a sensor.
+        LOOP_CLOCK = LoopClock.get(hardwareMap);
+        SCHEDULER = new FixedRateScheduler(LOOP_CLOCK);
+
         initWheels();
         initArm();
         initClaw();
@@ -288,6 +305,15 @@ public class CustomLinearOp extends LinearOpMode {
          */
         telemetry.addData("Starting position", ALLIANCE_COLOR.name() + ", " + TEAM_SIDE.name());
 
+        onInit();
+
         waitForStart();
     }
+
+    /**
+     * Run by {@code runOpMode()} after the hardware is initialized, before waiting for "Start."
+     * Override to do slow setup during init rather than the match, e.g. loading paths with {@link TrajectoryCache}.
+     */
+    protected void onInit() {
+    }
 }
\ No newline at end of file
@@ -19,4 +19,19 @@ public final class Drawing {
         Vector2d p2 = p1.plus(halfv);
         c.strokeLine(p1.x, p1.y, p2.x, p2.y);
     }
+
+    /**
+     * Same as {@link #drawRobot(Canvas, Pose2d)}, but takes the pose as plain doubles
+     * so control loops can draw without building a {@code Pose2d}.
+     */
+    public static void drawRobot(Canvas c, double x, double y, double heading) {
+        final double ROBOT_RADIUS = 9;
+
+        c.setStrokeWidth(1);
+        c.strokeCircle(x, y, ROBOT_RADIUS);
+
+        double halfX = 0.5 * ROBOT_RADIUS * Math.cos(heading);
+        double halfY = 0.5 * ROBOT_RADIUS * Math.sin(heading);
+        c.strokeLine(x + halfX, y + halfY, x + 2 * halfX, y + 2 * halfY);
+    }
 }
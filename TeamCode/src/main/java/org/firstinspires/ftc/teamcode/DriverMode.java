@@ -18,6 +18,8 @@ public class DriverMode extends CustomLinearOp {
      * the loop once.
      */
     private void runLoop() {
+        LOOP_CLOCK.tick();
+
         /* Gamepad 1
          * Run(Wheel and Webcam Controls) */
 
@@ -43,6 +45,8 @@ public class DriverMode extends CustomLinearOp {
 
         /* Gamepad 2 (Arm and Claw Controls) */
 
+        telemetry.addData("Bulk reads per loop", LOOP_CLOCK.getLastCycleBulkReads());
+        telemetry.addData("Loop time (ms)", LOOP_CLOCK.getLastPeriodNanos() * 1e-6);
         telemetry.update();
     }
 
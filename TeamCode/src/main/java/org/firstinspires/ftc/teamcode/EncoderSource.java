@@ -0,0 +1,20 @@
+package org.firstinspires.ftc.teamcode;
+
+/**
+ * A device that reads several encoders in a single transaction, e.g. an OctoQuad.
+ * Localizers depend on this rather than the device, so they can run on the JVM against a fake.
+ */
+public interface EncoderSource {
+    /**
+     * @return the number of channels filled by {@link #read(int[], double[])}
+     */
+    int channelCount();
+
+    /**
+     * Reads every channel at once.
+     *
+     * @param positions  filled with each channel's position (in ticks)
+     * @param velocities filled with each channel's velocity (in ticks per second)
+     */
+    void read(int[] positions, double[] velocities);
+}
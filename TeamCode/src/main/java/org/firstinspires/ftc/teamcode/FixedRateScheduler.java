@@ -0,0 +1,210 @@
+package org.firstinspires.ftc.teamcode;
+
+import android.os.Process;
+
+import com.acmerobotics.dashboard.FtcDashboard;
+import com.acmerobotics.dashboard.canvas.Canvas;
+import com.acmerobotics.dashboard.config.Config;
+import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
+import com.acmerobotics.roadrunner.Action;
+
+/**
+ * Runs an {@link Action} like {@code Actions.runBlocking}, but at a fixed period instead of as fast as I/O returns.
+ * <p>
+ * Each cycle starts on a deadline {@code k * periodMs} after the action started: the scheduler sleeps until
+ * shortly before the deadline and spins for the rest, then ticks the {@link LoopClock} and runs the action once.
+ * A cycle that overruns its period is counted and the missed deadlines are skipped, so later cycles stay in phase.
+ * <p>
+ * With {@link Params#highPriorityThread} set, the loop runs on a dedicated high-priority thread
+ * while the calling thread waits; interrupting the caller (e.g. stopping the op mode) stops the loop.
+ */
+@Config
+public final class FixedRateScheduler {
+    public static class Params {
+        public double periodMs = 10;
+        // sleep until this long before each deadline, then spin (in microseconds)
+        public double spinMicros = 500;
+        public boolean highPriorityThread = false;
+    }
+
+    public static Params PARAMS = new Params();
+
+    private final LoopClock loopClock;
+
+    private long cycles;
+    private long overruns;
+    private long lastPeriodNanos, maxPeriodNanos;
+    private long lastJitterNanos, maxJitterNanos;
+    private double totalJitterNanos;
+
+    /**
+     * @param loopClock The clock to tick at the start of every cycle.
+     */
+    public FixedRateScheduler(LoopClock loopClock) {
+        this.loopClock = loopClock;
+    }
+
+    /**
+     * Runs {@code action} until it finishes or the calling thread is interrupted.
+     */
+    public void runBlocking(Action action) {
+        if (!PARAMS.highPriorityThread) {
+            runLoop(action);
+            return;
+        }
+
+        Thread loopThread = new Thread(() -> {
+            try {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_DISPLAY);
+            } catch (SecurityException | IllegalArgumentException e) {
+                Thread.currentThread().setPriority(Thread.MAX_PRIORITY);
+            }
+
+            runLoop(action);
+        }, "FixedRateScheduler");
+        loopThread.start();
+
+        try {
+            loopThread.join();
+        } catch (InterruptedException e) {
+            loopThread.interrupt();
+            try {
+                loopThread.join();
+            } catch (InterruptedException ignored) {
+                // already interrupted, nothing left to wait for
+            }
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runLoop(Action action) {
+        resetStats();
+
+        FtcDashboard dash = FtcDashboard.getInstance();
+        Canvas c = new Canvas();
+        action.preview(c);
+
+        long periodNanos = Math.max(1, (long) (PARAMS.periodMs * 1e6));
+        long spinNanos = Math.max(0, (long) (PARAMS.spinMicros * 1e3));
+
+        long start = System.nanoTime();
+        long deadline = start;
+        long lastCycleStart = start;
+
+        boolean running = true;
+        while (running && !Thread.currentThread().isInterrupted()) {
+            if (!waitUntil(deadline, spinNanos)) {
+                break;
+            }
+
+            long cycleStart = System.nanoTime();
+            recordCycle(cycleStart, deadline, lastCycleStart);
+            lastCycleStart = cycleStart;
+
+            loopClock.tick();
+
+            TelemetryPacket p = new TelemetryPacket();
+            p.fieldOverlay().getOperations().addAll(c.getOperations());
+            running = action.run(p);
+
+            p.put("loop period (ms)", lastPeriodNanos * 1e-6);
+            p.put("loop jitter (ms)", lastJitterNanos * 1e-6);
+            p.put("loop overruns", overruns);
+            dash.sendTelemetryPacket(p);
+
+            deadline += periodNanos;
+            long now = System.nanoTime();
+            if (now > deadline) {
+                // skip the deadlines we've already missed
+                long missed = (now - deadline) / periodNanos + 1;
+                overruns++;
+                deadline += missed * periodNanos;
+            }
+        }
+    }
+
+    /**
+     * Sleeps until shortly before {@code deadline}, then spins until it passes.
+     *
+     * @return false if the thread was interrupted
+     */
+    private static boolean waitUntil(long deadline, long spinNanos) {
+        long remaining = deadline - System.nanoTime() - spinNanos;
+        if (remaining > 0) {
+            try {
+                Thread.sleep(remaining / 1_000_000, (int) (remaining % 1_000_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        while (System.nanoTime() < deadline) {
+            Thread.yield();
+        }
+
+        return true;
+    }
+
+    private void recordCycle(long cycleStart, long deadline, long lastCycleStart) {
+        if (cycles > 0) {
+            lastPeriodNanos = cycleStart - lastCycleStart;
+            maxPeriodNanos = Math.max(maxPeriodNanos, lastPeriodNanos);
+        }
+
+        lastJitterNanos = cycleStart - deadline;
+        maxJitterNanos = Math.max(maxJitterNanos, lastJitterNanos);
+        totalJitterNanos += lastJitterNanos;
+        cycles++;
+    }
+
+    private void resetStats() {
+        cycles = 0;
+        overruns = 0;
+        lastPeriodNanos = 0;
+        maxPeriodNanos = 0;
+        lastJitterNanos = 0;
+        maxJitterNanos = 0;
+        totalJitterNanos = 0;
+    }
+
+    /**
+     * @return how many cycles the last (or current) action has run
+     */
+    public long getCycles() {
+        return cycles;
+    }
+
+    /**
+     * @return how many cycles ran past their deadline
+     */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    /**
+     * @return the time between the starts of the last two cycles (in nanoseconds)
+     */
+    public long getLastPeriodNanos() {
+        return lastPeriodNanos;
+    }
+
+    public long getMaxPeriodNanos() {
+        return maxPeriodNanos;
+    }
+
+    /**
+     * @return how late the last cycle started relative to its deadline (in nanoseconds)
+     */
+    public long getLastJitterNanos() {
+        return lastJitterNanos;
+    }
+
+    public long getMaxJitterNanos() {
+        return maxJitterNanos;
+    }
+
+    public double getMeanJitterNanos() {
+        return cycles == 0 ? 0 : totalJitterNanos / cycles;
+    }
+}
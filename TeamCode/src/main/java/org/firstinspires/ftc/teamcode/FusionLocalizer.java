@@ -0,0 +1,312 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+import com.acmerobotics.roadrunner.ftc.FlightRecorder;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.Pose3D;
+import org.firstinspires.ftc.robotcore.external.navigation.Position;
+import org.firstinspires.ftc.teamcode.hardwareSystems.Webcam;
+import org.firstinspires.ftc.vision.apriltag.AprilTagDetection;
+
+import java.util.List;
+
+/**
+ * Fuses a dead-reckoning {@link Localizer} with IMU heading and AprilTag poses in an extended Kalman filter.
+ * <p>
+ * The wrapped localizer is only used for its pose increments, which drive the prediction step;
+ * its own math is untouched. IMU samples correct the heading, and each AprilTag detection with a known
+ * field position corrects the whole pose, unless it's too far from the estimate to be believable.
+ * <p>
+ * The state and covariance are primitive fields, so the filter itself never allocates.
+ * Each update costs one prediction, at most one IMU correction and at most {@link Params#maxTagsPerUpdate}
+ * tag corrections, so it stays well within the control loop.
+ * <p>
+ * Tag poses come from {@link AprilTagDetection#robotPose}, which the processor only gets right if it was
+ * given the camera's pose on the robot. Field coordinates are assumed to match RoadRunner's.
+ */
+@Config
+public final class FusionLocalizer implements Localizer {
+    public static class Params {
+        // odometry drift: variance added per inch traveled (in in^2) and per radian turned (in rad^2)
+        public double odometryPositionVariance = 0.002;
+        public double odometryHeadingVariance = 0.0005;
+
+        // IMU heading noise (in radians)
+        public double imuHeadingStd = Math.toRadians(1.0);
+
+        // AprilTag pose noise; position noise grows with the distance to the tag
+        public double tagPositionStd = 1.0; // in inches
+        public double tagPositionStdPerInch = 0.03;
+        public double tagHeadingStd = Math.toRadians(3.0); // in radians
+        public double tagMaxRange = 72.0; // tags farther than this (in inches) are ignored
+        // squared Mahalanobis distance above which a tag is rejected (99% for 3 degrees of freedom)
+        public double tagGate = 11.34;
+        public int maxTagsPerUpdate = 4;
+
+        // uncertainty after setPose()
+        public double initialPositionStd = 1.0; // in inches
+        public double initialHeadingStd = Math.toRadians(2.0); // in radians
+    }
+
+    public static Params PARAMS = new Params();
+
+    public final Localizer odometry;
+    // either may be null
+    public final AsyncImu asyncImu;
+    public final Webcam webcam;
+
+    // state
+    private double x, y, heading;
+    // covariance (symmetric)
+    private double p00, p01, p02, p11, p12, p22;
+
+    private double lastOdometryX, lastOdometryY, lastOdometryHeading;
+
+    // field heading minus IMU yaw; NaN until the first sample after setPose()
+    private double imuOffset = Double.NaN;
+    private long lastImuSequence;
+
+    private long tagUpdates, tagRejections;
+
+    private Pose2d pose;
+
+    public FusionLocalizer(Localizer odometry, AsyncImu asyncImu, Webcam webcam, Pose2d pose) {
+        this.odometry = odometry;
+        this.asyncImu = asyncImu;
+        this.webcam = webcam;
+
+        FlightRecorder.write("FUSION_PARAMS", PARAMS);
+
+        setPose(pose);
+    }
+
+    @Override
+    public void setPose(Pose2d pose) {
+        odometry.setPose(pose);
+        this.pose = pose;
+
+        x = pose.position.x;
+        y = pose.position.y;
+        heading = pose.heading.toDouble();
+
+        double positionVariance = PARAMS.initialPositionStd * PARAMS.initialPositionStd;
+        p00 = positionVariance;
+        p11 = positionVariance;
+        p22 = PARAMS.initialHeadingStd * PARAMS.initialHeadingStd;
+        p01 = p02 = p12 = 0.0;
+
+        lastOdometryX = x;
+        lastOdometryY = y;
+        lastOdometryHeading = heading;
+
+        imuOffset = Double.NaN;
+    }
+
+    @Override
+    public Pose2d getPose() {
+        return pose;
+    }
+
+    @Override
+    public PoseVelocity2d update() {
+        PoseVelocity2d vel = odometry.update();
+
+        Pose2d odometryPose = odometry.getPose();
+        double odometryX = odometryPose.position.x;
+        double odometryY = odometryPose.position.y;
+        double odometryHeading = odometryPose.heading.toDouble();
+
+        // increment in the robot frame at the last odometry pose
+        double dxWorld = odometryX - lastOdometryX, dyWorld = odometryY - lastOdometryY;
+        double c = Math.cos(lastOdometryHeading), s = Math.sin(lastOdometryHeading);
+        predict(c * dxWorld + s * dyWorld, -s * dxWorld + c * dyWorld, wrap(odometryHeading - lastOdometryHeading));
+
+        lastOdometryX = odometryX;
+        lastOdometryY = odometryY;
+        lastOdometryHeading = odometryHeading;
+
+        if (asyncImu != null) {
+            AsyncImu.Sample sample = asyncImu.getLatest();
+            if (sample.sequence != lastImuSequence) {
+                lastImuSequence = sample.sequence;
+
+                double yaw = sample.angles.getYaw(AngleUnit.RADIANS);
+                if (Double.isNaN(imuOffset)) {
+                    imuOffset = heading - yaw;
+                } else {
+                    correctHeading(yaw + imuOffset, PARAMS.imuHeadingStd * PARAMS.imuHeadingStd);
+                }
+            }
+        }
+
+        if (webcam != null) {
+            // null unless there are detections that haven't been fused yet
+            List<AprilTagDetection> detections = webcam.getFreshAprilTagDetections();
+            if (detections != null) {
+                int n = Math.min(detections.size(), PARAMS.maxTagsPerUpdate);
+                for (int i = 0; i < n; i++) {
+                    correctTag(detections.get(i));
+                }
+            }
+        }
+
+        heading = wrap(heading);
+        pose = new Pose2d(x, y, heading);
+
+        return vel;
+    }
+
+    private void predict(double dx, double dy, double dHeading) {
+        double c = Math.cos(heading), s = Math.sin(heading);
+        double dxWorld = c * dx - s * dy;
+        double dyWorld = s * dx + c * dy;
+
+        x += dxWorld;
+        y += dyWorld;
+        heading += dHeading;
+
+        // P = F P F^T + Q, with F the identity plus d(x, y)/d(heading) = (-dyWorld, dxWorld) in the last column
+        double a = -dyWorld, b = dxWorld;
+        double n00 = p00 + 2 * a * p02 + a * a * p22;
+        double n01 = p01 + a * p12 + b * p02 + a * b * p22;
+        double n02 = p02 + a * p22;
+        double n11 = p11 + 2 * b * p12 + b * b * p22;
+        double n12 = p12 + b * p22;
+
+        // drift grows with distance rather than time, so it doesn't depend on the loop rate
+        double positionNoise = PARAMS.odometryPositionVariance * Math.hypot(dx, dy);
+        p00 = n00 + positionNoise;
+        p01 = n01;
+        p02 = n02;
+        p11 = n11 + positionNoise;
+        p12 = n12;
+        p22 += PARAMS.odometryHeadingVariance * Math.abs(dHeading);
+    }
+
+    private void correctHeading(double measuredHeading, double variance) {
+        double innovation = wrap(measuredHeading - heading);
+        double sInv = 1.0 / (p22 + variance);
+
+        double k0 = p02 * sInv, k1 = p12 * sInv, k2 = p22 * sInv;
+        x += k0 * innovation;
+        y += k1 * innovation;
+        heading += k2 * innovation;
+
+        // P -= K P[2, :]
+        p00 -= k0 * p02;
+        p01 -= k0 * p12;
+        p02 -= k0 * p22;
+        p11 -= k1 * p12;
+        p12 -= k1 * p22;
+        p22 -= k2 * p22;
+    }
+
+    private void correctTag(AprilTagDetection detection) {
+        Pose3D robotPose = detection.robotPose;
+        if (detection.metadata == null || robotPose == null || detection.ftcPose == null
+                || detection.ftcPose.range > PARAMS.tagMaxRange) {
+            return;
+        }
+
+        double positionStd = PARAMS.tagPositionStd + PARAMS.tagPositionStdPerInch * detection.ftcPose.range;
+        double r0 = positionStd * positionStd;
+        double r2 = PARAMS.tagHeadingStd * PARAMS.tagHeadingStd;
+
+        Position position = robotPose.getPosition().toUnit(DistanceUnit.INCH);
+        double e0 = position.x - x;
+        double e1 = position.y - y;
+        double e2 = wrap(robotPose.getOrientation().getYaw(AngleUnit.RADIANS) - heading);
+
+        // S = P + R, inverted by cofactors
+        double s00 = p00 + r0, s01 = p01, s02 = p02, s11 = p11 + r0, s12 = p12, s22 = p22 + r2;
+        double c00 = s11 * s22 - s12 * s12;
+        double c01 = s02 * s12 - s01 * s22;
+        double c02 = s01 * s12 - s02 * s11;
+        double c11 = s00 * s22 - s02 * s02;
+        double c12 = s01 * s02 - s00 * s12;
+        double c22 = s00 * s11 - s01 * s01;
+        double det = s00 * c00 + s01 * c01 + s02 * c02;
+        if (!(det > 0)) {
+            return;
+        }
+        double i00 = c00 / det, i01 = c01 / det, i02 = c02 / det;
+        double i11 = c11 / det, i12 = c12 / det, i22 = c22 / det;
+
+        // S^-1 e
+        double w0 = i00 * e0 + i01 * e1 + i02 * e2;
+        double w1 = i01 * e0 + i11 * e1 + i12 * e2;
+        double w2 = i02 * e0 + i12 * e1 + i22 * e2;
+        if (e0 * w0 + e1 * w1 + e2 * w2 > PARAMS.tagGate) {
+            tagRejections++;
+            return;
+        }
+        tagUpdates++;
+
+        x += p00 * w0 + p01 * w1 + p02 * w2;
+        y += p01 * w0 + p11 * w1 + p12 * w2;
+        heading += p02 * w0 + p12 * w1 + p22 * w2;
+
+        // K = P S^-1
+        double k00 = p00 * i00 + p01 * i01 + p02 * i02;
+        double k01 = p00 * i01 + p01 * i11 + p02 * i12;
+        double k02 = p00 * i02 + p01 * i12 + p02 * i22;
+        double k10 = p01 * i00 + p11 * i01 + p12 * i02;
+        double k11 = p01 * i01 + p11 * i11 + p12 * i12;
+        double k12 = p01 * i02 + p11 * i12 + p12 * i22;
+        double k20 = p02 * i00 + p12 * i01 + p22 * i02;
+        double k21 = p02 * i01 + p12 * i11 + p22 * i12;
+        double k22 = p02 * i02 + p12 * i12 + p22 * i22;
+
+        // P -= K P
+        double n00 = p00 - (k00 * p00 + k01 * p01 + k02 * p02);
+        double n01 = p01 - (k00 * p01 + k01 * p11 + k02 * p12);
+        double n02 = p02 - (k00 * p02 + k01 * p12 + k02 * p22);
+        double n11 = p11 - (k10 * p01 + k11 * p11 + k12 * p12);
+        double n12 = p12 - (k10 * p02 + k11 * p12 + k12 * p22);
+        double n22 = p22 - (k20 * p02 + k21 * p12 + k22 * p22);
+        p00 = n00;
+        p01 = n01;
+        p02 = n02;
+        p11 = n11;
+        p12 = n12;
+        p22 = n22;
+    }
+
+    private static double wrap(double angle) {
+        return Math.atan2(Math.sin(angle), Math.cos(angle));
+    }
+
+    /**
+     * @return the standard deviation of the position estimate along its least certain direction (in inches)
+     */
+    public double getPositionStd() {
+        double mean = 0.5 * (p00 + p11);
+        double diff = 0.5 * (p00 - p11);
+        return Math.sqrt(mean + Math.sqrt(diff * diff + p01 * p01));
+    }
+
+    /**
+     * @return the standard deviation of the heading estimate (in radians)
+     */
+    public double getHeadingStd() {
+        return Math.sqrt(p22);
+    }
+
+    /**
+     * @return how many AprilTag detections have corrected the pose
+     */
+    public long getTagUpdates() {
+        return tagUpdates;
+    }
+
+    /**
+     * @return how many AprilTag detections were too far from the estimate to be used
+     */
+    public long getTagRejections() {
+        return tagRejections;
+    }
+}
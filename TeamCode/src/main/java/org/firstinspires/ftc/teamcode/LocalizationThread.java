@@ -0,0 +1,184 @@
+package org.firstinspires.ftc.teamcode;
+
+import android.os.Process;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+import com.acmerobotics.roadrunner.Vector2d;
+
+/**
+ * Runs a {@link Localizer} on its own thread at a fixed period, so odometry integrates in short steps
+ * however long the control loop takes.
+ * <p>
+ * Each step bulk-reads the hubs, updates the wrapped localizer and publishes an immutable {@link Snapshot}.
+ * The thread takes over the {@link LoopClock}'s bulk reads while it runs, so the hubs are only read once per step
+ * rather than once per step and once per loop.
+ * {@link #update()} latches the latest snapshot, and {@link #getPose()} returns the latched pose until the next
+ * {@link #update()}, so everything a loop iteration reads (pose, velocity and timestamp) comes from the same step.
+ * Code outside the loop can read {@link #getLatest()} at any time.
+ * <p>
+ * The wrapped localizer is only touched by the thread, and by {@link #setPose(Pose2d)} under the same lock.
+ * The thread is excluded from the {@link LoopProfiler}, which only supports the loop thread, so the wrapped
+ * localizer's stages aren't profiled while this runs. Like {@link VoltageMonitor}, the thread stops by itself
+ * once the thread that created it dies; iterative op modes should call {@link #close()} in {@code stop()}.
+ */
+@Config
+public final class LocalizationThread implements Localizer {
+    public static class Params {
+        // time between localizer updates (in microseconds); a bulk read takes 1-3 ms per hub,
+        // and the loop's motor writes need the rest of the bus
+        public long periodMicros = 10000;
+        public boolean highPriority = true;
+    }
+
+    public static Params PARAMS = new Params();
+
+    /**
+     * A pose and velocity published by one step of the thread.
+     */
+    public static final class Snapshot {
+        // System.nanoTime() when the step's inputs were read
+        public final long timestamp;
+        public final long sequence;
+        public final Pose2d pose;
+        public final PoseVelocity2d vel;
+
+        Snapshot(long timestamp, long sequence, Pose2d pose, PoseVelocity2d vel) {
+            this.timestamp = timestamp;
+            this.sequence = sequence;
+            this.pose = pose;
+            this.vel = vel;
+        }
+    }
+
+    public final Localizer localizer;
+    private final LoopClock loopClock;
+
+    private volatile Snapshot latest;
+    // only used by the loop thread
+    private Snapshot current;
+
+    private final Thread owner;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * @param loopClock The clock whose hubs are bulk-read before each update; it stops reading them itself
+     *                  until the thread stops.
+     */
+    public LocalizationThread(Localizer localizer, LoopClock loopClock) {
+        this.localizer = localizer;
+        this.loopClock = loopClock;
+
+        latest = new Snapshot(System.nanoTime(), 0, localizer.getPose(),
+                new PoseVelocity2d(new Vector2d(0.0, 0.0), 0.0));
+        current = latest;
+
+        owner = Thread.currentThread();
+        thread = new Thread(this::run, "LocalizationThread");
+        thread.setDaemon(true);
+        loopClock.delegateBulkReads(thread);
+        thread.start();
+    }
+
+    @Override
+    public void setPose(Pose2d pose) {
+        synchronized (this) {
+            localizer.setPose(pose);
+
+            Snapshot last = latest;
+            latest = new Snapshot(System.nanoTime(), last.sequence + 1, pose, last.vel);
+        }
+
+        current = latest;
+    }
+
+    @Override
+    public Pose2d getPose() {
+        return current.pose;
+    }
+
+    @Override
+    public PoseVelocity2d update() {
+        current = latest;
+        return current.vel;
+    }
+
+    /**
+     * @return the snapshot latched by the last {@link #update()}
+     */
+    public Snapshot getSnapshot() {
+        return current;
+    }
+
+    /**
+     * @return the most recent snapshot, which may be newer than {@link #getSnapshot()}
+     */
+    public Snapshot getLatest() {
+        return latest;
+    }
+
+    /**
+     * @return how many times the thread has updated the localizer
+     */
+    public long getUpdateCount() {
+        return latest.sequence;
+    }
+
+    /**
+     * Stops the thread. The pose stops changing, and the {@link LoopClock} goes back to doing the bulk reads.
+     */
+    public void close() {
+        closed = true;
+        thread.interrupt();
+    }
+
+    private void run() {
+        LoopProfiler.excludeCurrentThread();
+
+        if (PARAMS.highPriority) {
+            try {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_DISPLAY);
+            } catch (SecurityException | IllegalArgumentException e) {
+                Thread.currentThread().setPriority(Thread.MAX_PRIORITY);
+            }
+        }
+
+        try {
+            loop();
+        } finally {
+            loopClock.reclaimBulkReads(Thread.currentThread());
+        }
+    }
+
+    private void loop() {
+        long next = System.nanoTime();
+        while (!closed && owner.isAlive()) {
+            next += PARAMS.periodMicros * 1000;
+            long sleepNanos = next - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    Thread.sleep(sleepNanos / 1_000_000, (int) (sleepNanos % 1_000_000));
+                } catch (InterruptedException e) {
+                    break;
+                }
+            } else {
+                // fell behind; don't try to catch up
+                next = System.nanoTime();
+            }
+
+            step();
+        }
+    }
+
+    private void step() {
+        long timestamp = System.nanoTime();
+        loopClock.bulkRead();
+
+        synchronized (this) {
+            PoseVelocity2d vel = localizer.update();
+            latest = new Snapshot(timestamp, latest.sequence + 1, localizer.getPose(), vel);
+        }
+    }
+}
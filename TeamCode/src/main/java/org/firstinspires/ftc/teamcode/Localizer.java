@@ -19,6 +19,8 @@ public interface Localizer {
 
     /**
      * Updates the Localizer's pose estimate.
+     * Encoders are read from the hubs' bulk caches,
+     * so call it after {@link LoopClock#tick()} in each cycle.
      * @return the Localizer's current velocity estimate
      */
     PoseVelocity2d update();
@@ -0,0 +1,201 @@
+package org.firstinspires.ftc.teamcode;
+
+import androidx.annotation.NonNull;
+
+import com.acmerobotics.dashboard.canvas.Canvas;
+import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
+import com.acmerobotics.roadrunner.Action;
+import com.qualcomm.hardware.lynx.LynxModule;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Owns the bulk-read cache of every hub and defines the control cycle shared by all subsystems.
+ * <p>
+ * The hubs are put in {@link LynxModule.BulkCachingMode#MANUAL}, and {@link #tick()} clears their caches
+ * and performs exactly one bulk read per hub. Every encoder position, velocity and busy flag read
+ * during the rest of the cycle comes from that cache, however many times it's read.
+ * Since nothing refreshes the cache automatically, whatever runs the loop must call {@link #tick()}
+ * once at the top of every cycle (or run its actions through {@link #wrap(Action)}).
+ * <p>
+ * A thread that needs the hubs more often than the loop, like {@link LocalizationThread}, can take over the
+ * bulk reads with {@link #delegateBulkReads(Thread)} so the hubs aren't read twice. {@link #tick()} then only
+ * starts the cycle, and the rest of the cycle sees whatever that thread read last, which may change mid-cycle.
+ */
+public final class LoopClock {
+    private static final Map<HardwareMap, LoopClock> CLOCKS = new WeakHashMap<>();
+
+    /**
+     * Get the clock shared by everything using {@code hardwareMap}, creating it if needed.
+     * Also (re)applies manual bulk caching, in case another op mode changed it.
+     */
+    public static LoopClock get(HardwareMap hardwareMap) {
+        LoopClock clock;
+        synchronized (CLOCKS) {
+            clock = CLOCKS.get(hardwareMap);
+            if (clock == null) {
+                clock = new LoopClock(hardwareMap);
+                CLOCKS.put(hardwareMap, clock);
+            }
+        }
+
+        for (LynxModule module : clock.modules) {
+            module.setBulkCachingMode(LynxModule.BulkCachingMode.MANUAL);
+        }
+
+        return clock;
+    }
+
+    private final List<LynxModule> modules;
+
+    private long cycle;
+    private long cycleStartNanos;
+    private long lastPeriodNanos;
+
+    private int lastCycleBulkReads;
+    private long cycleBulkReadNanos, lastCycleBulkReadNanos;
+    // counts the delegate's reads too
+    private final AtomicLong totalBulkReads = new AtomicLong();
+    private long cycleStartBulkReads;
+
+    // the thread doing the bulk reads instead of tick(), if any
+    private volatile Thread bulkReader;
+
+    private LoopClock(HardwareMap hardwareMap) {
+        modules = hardwareMap.getAll(LynxModule.class);
+    }
+
+    public List<LynxModule> getModules() {
+        return modules;
+    }
+
+    /**
+     * Starts a new cycle: clears every hub's bulk cache and refreshes it with one bulk read per hub,
+     * unless the bulk reads are delegated.
+     */
+    public void tick() {
+        long now = System.nanoTime();
+        long bulkReads = totalBulkReads.get();
+        if (cycle > 0) {
+            lastPeriodNanos = now - cycleStartNanos;
+            lastCycleBulkReads = (int) (bulkReads - cycleStartBulkReads);
+            lastCycleBulkReadNanos = cycleBulkReadNanos;
+        }
+
+        cycle++;
+        cycleStartNanos = now;
+        cycleStartBulkReads = bulkReads;
+        cycleBulkReadNanos = 0;
+
+        refresh();
+    }
+
+    /**
+     * Forces another bulk read in the middle of a cycle, for code that needs fresher data than the cycle start.
+     * Counts towards this cycle's bulk reads. Does nothing while the bulk reads are delegated,
+     * since the delegate keeps the caches fresher than a cycle anyway.
+     */
+    public void refresh() {
+        if (bulkReader != null) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        bulkRead();
+        cycleBulkReadNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Clears every hub's bulk cache and refreshes it with one bulk read per hub. Only call this from the loop
+     * (through {@link #tick()} or {@link #refresh()}) or from the thread the bulk reads are delegated to.
+     */
+    public void bulkRead() {
+        for (int i = 0; i < modules.size(); i++) {
+            LynxModule module = modules.get(i);
+            module.clearBulkCache();
+            module.getBulkData();
+        }
+
+        totalBulkReads.addAndGet(modules.size());
+    }
+
+    /**
+     * Makes {@code reader} the only thread that bulk-reads the hubs, by calling {@link #bulkRead()}.
+     * Until {@link #reclaimBulkReads(Thread)}, {@link #tick()} and {@link #refresh()} don't touch the hubs.
+     */
+    public synchronized void delegateBulkReads(Thread reader) {
+        bulkReader = reader;
+    }
+
+    /**
+     * Gives the bulk reads back to {@link #tick()}, if they're still delegated to {@code reader}.
+     */
+    public synchronized void reclaimBulkReads(Thread reader) {
+        if (bulkReader == reader) {
+            bulkReader = null;
+        }
+    }
+
+    /**
+     * @return how many cycles have started
+     */
+    public long getCycle() {
+        return cycle;
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} at the start of the current cycle
+     */
+    public long getCycleStartNanos() {
+        return cycleStartNanos;
+    }
+
+    /**
+     * @return the length of the last complete cycle (in nanoseconds)
+     */
+    public long getLastPeriodNanos() {
+        return lastPeriodNanos;
+    }
+
+    /**
+     * @return how many bulk reads the last complete cycle cost, including the delegate's
+     */
+    public int getLastCycleBulkReads() {
+        return lastCycleBulkReads;
+    }
+
+    /**
+     * @return how long the loop spent in bulk reads during the last complete cycle (in nanoseconds);
+     *         the delegate's reads don't block the loop, so they aren't included
+     */
+    public long getLastCycleBulkReadNanos() {
+        return lastCycleBulkReadNanos;
+    }
+
+    public long getTotalBulkReads() {
+        return totalBulkReads.get();
+    }
+
+    /**
+     * Wraps an action so that every run of it starts a new cycle.
+     * Use it on the top-level action passed to {@code Actions.runBlocking}.
+     */
+    public Action wrap(Action action) {
+        return new Action() {
+            @Override
+            public boolean run(@NonNull TelemetryPacket p) {
+                tick();
+                return action.run(p);
+            }
+
+            @Override
+            public void preview(@NonNull Canvas fieldOverlay) {
+                action.preview(fieldOverlay);
+            }
+        };
+    }
+}
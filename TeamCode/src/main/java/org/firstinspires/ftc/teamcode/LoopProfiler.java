@@ -0,0 +1,261 @@
+package org.firstinspires.ftc.teamcode;
+
+import android.content.Context;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
+import com.qualcomm.ftccommon.FtcEventLoop;
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+import com.qualcomm.robotcore.eventloop.opmode.OpModeManagerNotifier;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.ftccommon.external.OnCreateEventLoop;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Times the stages of the drive control loop into fixed-bucket histograms.
+ * <p>
+ * Wrap a stage with {@link #start()} and {@link #record(Stage, long)}, or chain stages with {@link #lap(Stage, long)}.
+ * Recording is a {@code nanoTime()} call and a few array updates; when {@link Params#enabled} is off
+ * both calls return right after checking the flag.
+ * Percentiles come from log-spaced buckets (8 per power of two), so they're accurate to about 12%.
+ * <p>
+ * The histograms reset when an op mode is initialized and are written to the robot log when it stops.
+ * Not thread-safe; only record from the loop thread. Threads that run loop code on their own, like
+ * {@link LocalizationThread}, call {@link #excludeCurrentThread()} first so their stages are dropped.
+ */
+@Config
+public final class LoopProfiler {
+    public static class Params {
+        public boolean enabled = false;
+        // how often publish() adds the histograms to a packet
+        public long publishPeriodMs = 250;
+    }
+
+    public static Params PARAMS = new Params();
+
+    public enum Stage {
+        ENCODERS("encoders"),
+        IMU("imu"),
+        CONTROLLER("controller"),
+        MOTORS("motors"),
+        LOGGING("logging"),
+        DRAWING("drawing");
+
+        // packet keys, built once so publishing doesn't concatenate strings
+        private final String label, p50Key, p95Key, p99Key, maxKey;
+
+        Stage(String label) {
+            this.label = label;
+            p50Key = "profile/" + label + " p50 (us)";
+            p95Key = "profile/" + label + " p95 (us)";
+            p99Key = "profile/" + label + " p99 (us)";
+            maxKey = "profile/" + label + " max (us)";
+        }
+    }
+
+    private static final int SUB_BUCKETS = 8;
+    private static final int BUCKETS = (63 - 2) * SUB_BUCKETS;
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final long[][] COUNTS = new long[STAGES.length][BUCKETS];
+    private static final long[] TOTALS = new long[STAGES.length];
+    private static final long[] MAXES = new long[STAGES.length];
+
+    private static long lastPublishNanos;
+
+    private static final ThreadLocal<Boolean> EXCLUDED = new ThreadLocal<Boolean>() {
+        @Override
+        protected Boolean initialValue() {
+            return Boolean.FALSE;
+        }
+    };
+
+    private LoopProfiler() {}
+
+    /**
+     * @return the start time to pass to {@link #record(Stage, long)}, or 0 if profiling is disabled
+     *         or the current thread is excluded
+     */
+    public static long start() {
+        return PARAMS.enabled && !EXCLUDED.get() ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Drops every stage recorded from the current thread from now on.
+     */
+    public static void excludeCurrentThread() {
+        EXCLUDED.set(Boolean.TRUE);
+    }
+
+    /**
+     * Records a stage that began at {@code start}.
+     */
+    public static void record(Stage stage, long start) {
+        if (start == 0) {
+            return;
+        }
+
+        add(stage, System.nanoTime() - start);
+    }
+
+    /**
+     * Records a stage that began at {@code start} and starts the next one.
+     *
+     * @return the start time of the next stage, or 0 if profiling is disabled
+     */
+    public static long lap(Stage stage, long start) {
+        if (start == 0) {
+            return start();
+        }
+
+        long now = System.nanoTime();
+        add(stage, now - start);
+        return now;
+    }
+
+    private static void add(Stage stage, long nanos) {
+        int s = stage.ordinal();
+        COUNTS[s][bucket(nanos)]++;
+        TOTALS[s]++;
+        if (nanos > MAXES[s]) {
+            MAXES[s] = nanos;
+        }
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return nanos < 0 ? 0 : (int) nanos;
+        }
+
+        int msb = 63 - Long.numberOfLeadingZeros(nanos);
+        return (msb - 2) * SUB_BUCKETS + (int) ((nanos >>> (msb - 3)) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * @return the largest value that falls in bucket {@code i}
+     */
+    private static long bucketUpperBound(int i) {
+        if (i < SUB_BUCKETS) {
+            return i;
+        }
+
+        int shift = i / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + i % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * @param p the percentile, between 0 and 1
+     * @return the (bucketed) {@code p} percentile of the stage's durations (in nanoseconds), or 0 if none were recorded
+     */
+    public static long percentile(Stage stage, double p) {
+        int s = stage.ordinal();
+        long total = TOTALS[s];
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(p * total));
+        long seen = 0;
+        long[] counts = COUNTS[s];
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), MAXES[s]);
+            }
+        }
+
+        return MAXES[s];
+    }
+
+    public static long count(Stage stage) {
+        return TOTALS[stage.ordinal()];
+    }
+
+    public static long max(Stage stage) {
+        return MAXES[stage.ordinal()];
+    }
+
+    public static void reset() {
+        for (int s = 0; s < STAGES.length; s++) {
+            Arrays.fill(COUNTS[s], 0);
+            TOTALS[s] = 0;
+            MAXES[s] = 0;
+        }
+    }
+
+    /**
+     * Adds every stage's percentiles to {@code p}, at most once every {@link Params#publishPeriodMs}.
+     */
+    public static void publish(TelemetryPacket p) {
+        if (!PARAMS.enabled) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        if (now - lastPublishNanos < PARAMS.publishPeriodMs * 1_000_000) {
+            return;
+        }
+        lastPublishNanos = now;
+
+        for (Stage stage : STAGES) {
+            if (count(stage) == 0) {
+                continue;
+            }
+
+            p.put(stage.p50Key, percentile(stage, 0.5) * 1e-3);
+            p.put(stage.p95Key, percentile(stage, 0.95) * 1e-3);
+            p.put(stage.p99Key, percentile(stage, 0.99) * 1e-3);
+            p.put(stage.maxKey, max(stage) * 1e-3);
+        }
+    }
+
+    /**
+     * @return a table of every recorded stage's count and percentiles (in microseconds)
+     */
+    public static String summary() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.US,
+                "%-12s %10s %10s %10s %10s %10s", "stage", "count", "p50", "p95", "p99", "max"));
+        for (Stage stage : STAGES) {
+            if (count(stage) == 0) {
+                continue;
+            }
+
+            sb.append('\n').append(String.format(Locale.US, "%-12s %10d %10.1f %10.1f %10.1f %10.1f",
+                    stage.label, count(stage),
+                    percentile(stage, 0.5) * 1e-3, percentile(stage, 0.95) * 1e-3,
+                    percentile(stage, 0.99) * 1e-3, max(stage) * 1e-3));
+        }
+
+        return sb.toString();
+    }
+
+    @OnCreateEventLoop
+    public static void attachEventLoop(Context context, FtcEventLoop eventLoop) {
+        eventLoop.getOpModeManager().registerListener(new OpModeManagerNotifier.Notifications() {
+            @Override
+            public void onOpModePreInit(OpMode opMode) {
+                reset();
+            }
+
+            @Override
+            public void onOpModePreStart(OpMode opMode) {
+            }
+
+            @Override
+            public void onOpModePostStop(OpMode opMode) {
+                boolean recorded = false;
+                for (Stage stage : STAGES) {
+                    recorded |= count(stage) > 0;
+                }
+
+                if (recorded) {
+                    RobotLog.ii("LoopProfiler", "%s\n%s", opMode.getClass().getSimpleName(), summary());
+                }
+            }
+        });
+    }
+}
@@ -8,7 +8,6 @@ import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
 import com.acmerobotics.roadrunner.*;
 import com.acmerobotics.roadrunner.AngularVelConstraint;
 import com.acmerobotics.roadrunner.DualNum;
-import com.acmerobotics.roadrunner.HolonomicController;
 import com.acmerobotics.roadrunner.MecanumKinematics;
 import com.acmerobotics.roadrunner.MinVelConstraint;
 import com.acmerobotics.roadrunner.MotorFeedforward;
@@ -19,9 +18,10 @@ import com.acmerobotics.roadrunner.Time;
 import com.acmerobotics.roadrunner.TimeTrajectory;
 import com.acmerobotics.roadrunner.TimeTurn;
 import com.acmerobotics.roadrunner.TrajectoryActionBuilder;
+import com.acmerobotics.roadrunner.TrajectoryActionFactory;
+import com.acmerobotics.roadrunner.TurnActionFactory;
 import com.acmerobotics.roadrunner.TurnConstraints;
 import com.acmerobotics.roadrunner.VelConstraint;
-import com.acmerobotics.roadrunner.ftc.DownsampledWriter;
 import com.acmerobotics.roadrunner.ftc.Encoder;
 import com.acmerobotics.roadrunner.ftc.FlightRecorder;
 import com.acmerobotics.roadrunner.ftc.LazyImu;
@@ -29,7 +29,6 @@ import com.acmerobotics.roadrunner.ftc.LynxFirmware;
 import com.acmerobotics.roadrunner.ftc.OverflowEncoder;
 import com.acmerobotics.roadrunner.ftc.PositionVelocityPair;
 import com.acmerobotics.roadrunner.ftc.RawEncoder;
-import com.qualcomm.hardware.lynx.LynxModule;
 import com.qualcomm.hardware.rev.RevHubOrientationOnRobot;
 import com.qualcomm.robotcore.hardware.DcMotor;
 import com.qualcomm.robotcore.hardware.DcMotorSimple;
@@ -40,15 +39,18 @@ import com.qualcomm.robotcore.hardware.VoltageSensor;
 
 import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
 import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
+import org.firstinspires.ftc.teamcode.hardwareSystems.MotorOutputLayer;
 import org.firstinspires.ftc.teamcode.messages.DriveCommandMessage;
+import org.firstinspires.ftc.teamcode.messages.LogRatePolicy;
 import org.firstinspires.ftc.teamcode.messages.MecanumCommandMessage;
 import org.firstinspires.ftc.teamcode.messages.MecanumLocalizerInputsMessage;
+import org.firstinspires.ftc.teamcode.messages.PooledWriter;
 import org.firstinspires.ftc.teamcode.messages.PoseMessage;
 
 import java.lang.Math;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.function.LongSupplier;
 
 @Config
 public final class MecanumDrive {
@@ -89,6 +91,37 @@ public final class MecanumDrive {
         public double axialVelGain = 0.0;
         public double lateralVelGain = 0.0;
         public double headingVelGain = 0.0; // shared with turn
+
+        // pose history (in poses, drawn while following)
+        public int poseHistoryCapacity = 100;
+        public int poseHistoryDrawPoints = 100;
+
+        // how often DriveLocalizer reads the IMU (in milliseconds); 0 reads it every tick
+        // between reads, heading is propagated from the wheels and corrected at the next read
+        public double imuPeriodMs = 0;
+        // read the IMU on a background thread (see AsyncImu) instead of in the loop; overrides imuPeriodMs
+        public boolean asyncImu = false;
+        // run DriveLocalizer on its own thread (see LocalizationThread) instead of once per loop
+        public boolean localizationThread = false;
+        // localize with a SparkFun OTOS (see OtosLocalizer) instead of the wheels; it polls on its own thread,
+        // so localizationThread is ignored
+        public boolean otosLocalizer = false;
+
+        // wheel slip (see DriveLocalizer); tune the thresholds with LocalizationTest before enabling rejection
+        // rejection needs the IMU heading rate, so it does nothing with imuPeriodMs > 0 unless asyncImu is set
+        public double slipResidualThreshold = 10.0; // in in/s
+        public double slipHeadingRateThreshold = 0.5; // in rad/s
+        public boolean slipRejection = false;
+
+        // motor power changes at or below this are not sent to the hub
+        public double motorPowerEpsilon = 1e-3;
+
+        // sampled trajectory tables (see SampledTrajectory)
+        public double sampleMaxDt = 0.05; // in seconds
+        public double samplePositionTolerance = 0.01; // in inches
+        public double sampleHeadingTolerance = 0.001; // in radians
+        public double sampleVelocityTolerance = 0.1; // in inches per second
+        public double sampleAngVelTolerance = 0.01; // in radians per second
     }
 
     public static Params PARAMS = new Params();
@@ -108,39 +141,110 @@ public final class MecanumDrive {
 
     public final DcMotorEx leftFront, leftBack, rightBack, rightFront;
 
+    public final MotorOutputLayer motorOutputs;
+    private final MotorOutputLayer.MotorOutput leftFrontOutput, leftBackOutput, rightBackOutput, rightFrontOutput;
+
+    public final LoopClock loopClock;
+
     public final VoltageSensor voltageSensor;
+    public final VoltageMonitor voltageMonitor;
 
     public final LazyImu lazyImu;
 
-    public final Localizer localizer;
-    private final LinkedList<Pose2d> poseHistory = new LinkedList<>();
+    // may be replaced with a wrapping localizer, e.g. FusionLocalizer, before following anything
+    public Localizer localizer;
+    // null unless PARAMS.localizationThread was set (and PARAMS.otosLocalizer wasn't) when the drive was created
+    public final LocalizationThread localizationThread;
+    private final PoseHistory poseHistory = new PoseHistory(PARAMS.poseHistoryCapacity);
+    private final PoseHistory.DrawBuffers poseHistoryPoints = new PoseHistory.DrawBuffers(PARAMS.poseHistoryDrawPoints);
+
+    // pooled so the drive actions don't allocate in steady state
+    private final PooledWriter<PoseMessage> estimatedPoseWriter =
+            new PooledWriter<>("ESTIMATED_POSE", 50_000_000, PoseMessage::new);
+    private final PooledWriter<PoseMessage> targetPoseWriter =
+            new PooledWriter<>("TARGET_POSE", 50_000_000, PooledWriter.Priority.CRITICAL,
+                    PoseMessage::new);
+    private final PooledWriter<DriveCommandMessage> driveCommandWriter =
+            new PooledWriter<>("DRIVE_COMMAND", 50_000_000, DriveCommandMessage::new);
+    private final PooledWriter<MecanumCommandMessage> mecanumCommandWriter =
+            new PooledWriter<>("MECANUM_COMMAND", 50_000_000, PooledWriter.Priority.LOW,
+                    MecanumCommandMessage::new);
+
+    // the last target, drawn every tick whether or not it was logged
+    private double targetX, targetY, targetHeading;
+
+    // rebuilt by refreshControllers() only when PARAMS changes
+    private PrimitiveHolonomicController controller;
+    private MotorFeedforward feedforward;
+    private double feedforwardKS = Double.NaN, feedforwardKV = Double.NaN, feedforwardKA = Double.NaN,
+            feedforwardInPerTick = Double.NaN;
+    private final double[] wheelPowers = new double[4];
+
+    /**
+     * Mecanum wheel odometry, with the heading from the IMU.
+     * <p>
+     * Four wheels over-determine the three axes of motion, so a slipping wheel shows up as a nonzero
+     * consistency residual, and as a mismatch between the wheel and IMU heading rates. Both are exposed as
+     * metrics; with {@link Params#slipRejection} set, the slipping wheel is down-weighted on ticks where the
+     * IMU heading rate pins the rotation down. That rate comes from reading the IMU every tick, or from the
+     * {@link AsyncImu} samples; IMU reads decimated with {@link Params#imuPeriodMs} leave no rate to check against,
+     * so slip rejection is unavailable with them (see {@link #isSlipReferenceAvailable()}).
+     */
+    public static class DriveLocalizer implements Localizer {
+        public static final int LEFT_FRONT = 0, LEFT_BACK = 1, RIGHT_BACK = 2, RIGHT_FRONT = 3;
 
-    private final DownsampledWriter estimatedPoseWriter = new DownsampledWriter("ESTIMATED_POSE", 50_000_000);
-    private final DownsampledWriter targetPoseWriter = new DownsampledWriter("TARGET_POSE", 50_000_000);
-    private final DownsampledWriter driveCommandWriter = new DownsampledWriter("DRIVE_COMMAND", 50_000_000);
-    private final DownsampledWriter mecanumCommandWriter = new DownsampledWriter("MECANUM_COMMAND", 50_000_000);
-
-    public class DriveLocalizer implements Localizer {
         public final Encoder leftFront, leftBack, rightBack, rightFront;
         public final IMU imu;
+        // null unless PARAMS.asyncImu was set when the localizer was created
+        public final AsyncImu asyncImu;
+
+        private final MecanumKinematics kinematics;
+        private final LongSupplier clock;
 
         private int lastLeftFrontPos, lastLeftBackPos, lastRightBackPos, lastRightFrontPos;
         private Rotation2d lastHeading;
         private boolean initialized;
         private Pose2d pose;
 
-        public DriveLocalizer(Pose2d pose) {
-            leftFront = new OverflowEncoder(new RawEncoder(MecanumDrive.this.leftFront));
-            leftBack = new OverflowEncoder(new RawEncoder(MecanumDrive.this.leftBack));
-            rightBack = new OverflowEncoder(new RawEncoder(MecanumDrive.this.rightBack));
-            rightFront = new OverflowEncoder(new RawEncoder(MecanumDrive.this.rightFront));
+        private YawPitchRollAngles lastAngles;
+        private long lastImuNanos, lastImuSequence;
+        private long lastUpdateNanos;
 
-            imu = lazyImu.get();
+        private final PooledWriter<MecanumLocalizerInputsMessage> inputsWriter =
+                new PooledWriter<>("MECANUM_LOCALIZER_INPUTS", 0, MecanumLocalizerInputsMessage::new);
 
-            // TODO: reverse encoders if needed
-            //   leftFront.setDirection(DcMotorSimple.Direction.REVERSE);
+        private final double[] wheelWeights = {1.0, 1.0, 1.0, 1.0};
+        private boolean slipping, slipReferenceAvailable;
+        private long slipTicks;
+        private double slipResidual, slipHeadingRateResidual;
+
+        /**
+         * Takes its encoders and IMU rather than the drive's motors, so it can also run on recorded inputs.
+         */
+        public DriveLocalizer(Encoder leftFront, Encoder leftBack, Encoder rightBack, Encoder rightFront,
+                              IMU imu, Pose2d pose) {
+            this(leftFront, leftBack, rightBack, rightFront, imu, pose, System::nanoTime);
+        }
+
+        /**
+         * @param clock The time of each update (in nanoseconds), which the slip rates and IMU decimation are
+         *              computed from; a replay passes the recorded timestamps so it computes what the robot did.
+         */
+        public DriveLocalizer(Encoder leftFront, Encoder leftBack, Encoder rightBack, Encoder rightFront,
+                              IMU imu, Pose2d pose, LongSupplier clock) {
+            this.leftFront = leftFront;
+            this.leftBack = leftBack;
+            this.rightBack = rightBack;
+            this.rightFront = rightFront;
+
+            this.imu = imu;
+            asyncImu = PARAMS.asyncImu ? new AsyncImu(imu) : null;
+
+            kinematics = new MecanumKinematics(
+                    PARAMS.inPerTick * PARAMS.trackWidthTicks, PARAMS.inPerTick / PARAMS.lateralInPerTick);
 
             this.pose = pose;
+            this.clock = clock;
         }
 
         @Override
@@ -155,15 +259,45 @@ public final class MecanumDrive {
 
         @Override
         public PoseVelocity2d update() {
+            long t = LoopProfiler.start();
             PositionVelocityPair leftFrontPosVel = leftFront.getPositionAndVelocity();
             PositionVelocityPair leftBackPosVel = leftBack.getPositionAndVelocity();
             PositionVelocityPair rightBackPosVel = rightBack.getPositionAndVelocity();
             PositionVelocityPair rightFrontPosVel = rightFront.getPositionAndVelocity();
+            t = LoopProfiler.lap(LoopProfiler.Stage.ENCODERS, t);
+
+            long now = clock.getAsLong();
+            boolean decimated, readImu;
+            YawPitchRollAngles angles;
+            // the IMU's own heading rate, only read from the background thread's samples
+            double sampleHeadingRate = 0.0;
+            if (asyncImu != null) {
+                // a sample counts as a read only the first time it's seen; in between, propagate as when decimated
+                AsyncImu.Sample sample = asyncImu.getLatest();
+                decimated = true;
+                readImu = !initialized || sample.sequence != lastImuSequence;
+                lastImuSequence = sample.sequence;
+                angles = sample.angles;
+                sampleHeadingRate = sample.angularVelocity.zRotationRate;
+            } else {
+                decimated = PARAMS.imuPeriodMs > 0;
+                readImu = !initialized || !decimated || now - lastImuNanos >= PARAMS.imuPeriodMs * 1e6;
+                if (readImu) {
+                    angles = imu.getRobotYawPitchRollAngles();
+                    lastAngles = angles;
+                    lastImuNanos = now;
+                } else {
+                    angles = lastAngles;
+                }
+            }
+            t = LoopProfiler.lap(LoopProfiler.Stage.IMU, t);
 
-            YawPitchRollAngles angles = imu.getRobotYawPitchRollAngles();
-
-            FlightRecorder.write("MECANUM_LOCALIZER_INPUTS", new MecanumLocalizerInputsMessage(
-                    leftFrontPosVel, leftBackPosVel, rightBackPosVel, rightFrontPosVel, angles));
+            MecanumLocalizerInputsMessage inputs = inputsWriter.acquire();
+            if (inputs != null) {
+                inputsWriter.write(inputs.fill(now,
+                        leftFrontPosVel, leftBackPosVel, rightBackPosVel, rightFrontPosVel, angles, readImu));
+            }
+            LoopProfiler.record(LoopProfiler.Stage.LOGGING, t);
 
             Rotation2d heading = Rotation2d.exp(angles.getYaw(AngleUnit.RADIANS));
 
@@ -176,52 +310,165 @@ public final class MecanumDrive {
                 lastRightFrontPos = rightFrontPosVel.position;
 
                 lastHeading = heading;
+                lastUpdateNanos = now;
 
                 return new PoseVelocity2d(new Vector2d(0.0, 0.0), 0.0);
             }
 
-            double headingDelta = heading.minus(lastHeading);
-            Twist2dDual<Time> twist = kinematics.forward(new MecanumKinematics.WheelIncrements<>(
-                    new DualNum<Time>(new double[]{
-                            (leftFrontPosVel.position - lastLeftFrontPos),
-                            leftFrontPosVel.velocity,
-                    }).times(PARAMS.inPerTick),
-                    new DualNum<Time>(new double[]{
-                            (leftBackPosVel.position - lastLeftBackPos),
-                            leftBackPosVel.velocity,
-                    }).times(PARAMS.inPerTick),
-                    new DualNum<Time>(new double[]{
-                            (rightBackPosVel.position - lastRightBackPos),
-                            rightBackPosVel.velocity,
-                    }).times(PARAMS.inPerTick),
-                    new DualNum<Time>(new double[]{
-                            (rightFrontPosVel.position - lastRightFrontPos),
-                            rightFrontPosVel.velocity,
-                    }).times(PARAMS.inPerTick)
-            ));
+            double leftFrontDelta = (leftFrontPosVel.position - lastLeftFrontPos) * PARAMS.inPerTick;
+            double leftBackDelta = (leftBackPosVel.position - lastLeftBackPos) * PARAMS.inPerTick;
+            double rightBackDelta = (rightBackPosVel.position - lastRightBackPos) * PARAMS.inPerTick;
+            double rightFrontDelta = (rightFrontPosVel.position - lastRightFrontPos) * PARAMS.inPerTick;
+            double leftFrontVel = leftFrontPosVel.velocity * PARAMS.inPerTick;
+            double leftBackVel = leftBackPosVel.velocity * PARAMS.inPerTick;
+            double rightBackVel = rightBackPosVel.velocity * PARAMS.inPerTick;
+            double rightFrontVel = rightFrontPosVel.velocity * PARAMS.inPerTick;
 
             lastLeftFrontPos = leftFrontPosVel.position;
             lastLeftBackPos = leftBackPosVel.position;
             lastRightBackPos = rightBackPosVel.position;
             lastRightFrontPos = rightFrontPosVel.position;
 
-            lastHeading = heading;
+            double dt = Math.max(1e-6, (now - lastUpdateNanos) * 1e-9);
+            lastUpdateNanos = now;
+
+            // same as kinematics.forward()
+            double trackWidth = kinematics.trackWidth;
+            double wheelAngle = (-leftFrontDelta - leftBackDelta + rightBackDelta + rightFrontDelta)
+                    * 0.25 / trackWidth;
+            double wheelAngVel = (-leftFrontVel - leftBackVel + rightBackVel + rightFrontVel)
+                    * 0.25 / trackWidth;
+
+            // the IMU heading rate to check the wheels against: the heading change when the IMU is read every tick,
+            // the sample's rate with the background thread, and none when reads are decimated in the loop
+            slipReferenceAvailable = !decimated || asyncImu != null;
+            double imuHeadingRate = !decimated ? heading.minus(lastHeading) / dt : sampleHeadingRate;
+
+            // four wheels over-determine three axes; this is zero unless a wheel slips
+            slipResidual = (leftFrontDelta - leftBackDelta - rightBackDelta + rightFrontDelta) * 0.25 / dt;
+            slipHeadingRateResidual = slipReferenceAvailable ? wheelAngle / dt - imuHeadingRate : 0.0;
+
+            slipping = Math.abs(slipResidual) > PARAMS.slipResidualThreshold
+                    || Math.abs(slipHeadingRateResidual) > PARAMS.slipHeadingRateThreshold;
+            if (slipping) {
+                slipTicks++;
+            }
+
+            // with the rotation taken out, each diagonal pair of wheels should move the same
+            double rotation = trackWidth * (slipReferenceAvailable ? imuHeadingRate * dt : wheelAngle);
+            double rotationVel = trackWidth * (slipReferenceAvailable ? imuHeadingRate : wheelAngVel);
+            double leftFrontLine = leftFrontDelta + rotation, rightBackLine = rightBackDelta - rotation;
+            double leftBackLine = leftBackDelta + rotation, rightFrontLine = rightFrontDelta - rotation;
+
+            Arrays.fill(wheelWeights, 1.0);
+            boolean rejecting = slipping && slipReferenceAvailable && PARAMS.slipRejection;
+            if (rejecting) {
+                weighPair(LEFT_FRONT, leftFrontLine, RIGHT_BACK, rightBackLine, dt);
+                weighPair(LEFT_BACK, leftBackLine, RIGHT_FRONT, rightFrontLine, dt);
+            }
+
+            double headingDelta, headingCorrection = 0.0;
+            if (!decimated) {
+                headingDelta = heading.minus(lastHeading);
+            } else {
+                // propagate from the wheels (or the IMU rate while they slip),
+                // and fold any drift into the heading when the IMU is read
+                headingDelta = rejecting ? imuHeadingRate * dt : wheelAngle;
+                if (readImu) {
+                    headingCorrection = heading.minus(lastHeading.plus(headingDelta));
+                }
+            }
 
+            lastHeading = readImu ? heading : lastHeading.plus(headingDelta);
+
+            // x - lateralMultiplier * y from one pair, x + lateralMultiplier * y from the other
+            double minus = weightedMean(LEFT_FRONT, leftFrontLine, RIGHT_BACK, rightBackLine);
+            double plus = weightedMean(LEFT_BACK, leftBackLine, RIGHT_FRONT, rightFrontLine);
+            double minusVel = weightedMean(LEFT_FRONT, leftFrontVel + rotationVel, RIGHT_BACK, rightBackVel - rotationVel);
+            double plusVel = weightedMean(LEFT_BACK, leftBackVel + rotationVel, RIGHT_FRONT, rightFrontVel - rotationVel);
+
+            double lateralMultiplier = kinematics.lateralMultiplier;
             pose = pose.plus(new Twist2d(
-                    twist.line.value(),
+                    new Vector2d((minus + plus) * 0.5, (plus - minus) * 0.5 / lateralMultiplier),
                     headingDelta
             ));
+            if (headingCorrection != 0.0) {
+                pose = new Pose2d(pose.position, pose.heading.plus(headingCorrection));
+            }
+
+            return new PoseVelocity2d(
+                    new Vector2d((minusVel + plusVel) * 0.5, (plusVel - minusVel) * 0.5 / lateralMultiplier),
+                    wheelAngVel);
+        }
+
+        /**
+         * Down-weights the wheel of a diagonal pair that runs ahead of the other, if they disagree by more than
+         * {@link Params#slipResidualThreshold}. A slipping wheel spins faster than the ground moves under it,
+         * so the one with the larger motion is taken to be the one slipping.
+         */
+        private void weighPair(int i, double iLine, int j, double jLine, double dt) {
+            double residual = Math.abs(iLine - jLine) * 0.5 / dt;
+            if (residual <= PARAMS.slipResidualThreshold) {
+                return;
+            }
+
+            int wheel = Math.abs(iLine) > Math.abs(jLine) ? i : j;
+            wheelWeights[wheel] = PARAMS.slipResidualThreshold / residual;
+        }
+
+        private double weightedMean(int i, double iValue, int j, double jValue) {
+            return (wheelWeights[i] * iValue + wheelWeights[j] * jValue) / (wheelWeights[i] + wheelWeights[j]);
+        }
+
+        /**
+         * @return whether the last update saw a wheel slip
+         */
+        public boolean isSlipping() {
+            return slipping;
+        }
+
+        /**
+         * @return whether the last update had an IMU heading rate to check the wheels against; without one,
+         * only the kinematic residual detects slip and {@link Params#slipRejection} has no effect
+         */
+        public boolean isSlipReferenceAvailable() {
+            return slipReferenceAvailable;
+        }
 
-            return twist.velocity().value();
+        /**
+         * @return how many updates have seen a wheel slip
+         */
+        public long getSlipTicks() {
+            return slipTicks;
+        }
+
+        /**
+         * @return the last kinematic consistency residual (in inches per second)
+         */
+        public double getSlipResidual() {
+            return slipResidual;
+        }
+
+        /**
+         * @return the last difference between the wheel and IMU heading rates (in radians per second),
+         * or 0 if there was no IMU heading rate that tick
+         */
+        public double getSlipHeadingRateResidual() {
+            return slipHeadingRateResidual;
+        }
+
+        /**
+         * @return the weight the last update gave a wheel, from 0 to 1; index with {@link #LEFT_FRONT} etc.
+         */
+        public double getWheelWeight(int wheel) {
+            return wheelWeights[wheel];
         }
     }
 
     public MecanumDrive(HardwareMap hardwareMap, Pose2d pose) {
         LynxFirmware.throwIfModulesAreOutdated(hardwareMap);
 
-        for (LynxModule module : hardwareMap.getAll(LynxModule.class)) {
-            module.setBulkCachingMode(LynxModule.BulkCachingMode.AUTO);
-        }
+        loopClock = LoopClock.get(hardwareMap);
 
         // TODO: make sure your config has motors with these names (or change them)
         //   see https://ftc-docs.firstinspires.org/en/latest/hardware_and_software_configuration/configuring/index.html
@@ -235,6 +482,12 @@ public final class MecanumDrive {
         rightBack.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
         rightFront.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
 
+        motorOutputs = new MotorOutputLayer(PARAMS.motorPowerEpsilon);
+        leftFrontOutput = motorOutputs.add(leftFront);
+        leftBackOutput = motorOutputs.add(leftBack);
+        rightBackOutput = motorOutputs.add(rightBack);
+        rightFrontOutput = motorOutputs.add(rightFront);
+
         // TODO: reverse motor directions if needed
         //   leftFront.setDirection(DcMotorSimple.Direction.REVERSE);
 
@@ -244,8 +497,28 @@ public final class MecanumDrive {
                 PARAMS.logoFacingDirection, PARAMS.usbFacingDirection));
 
         voltageSensor = hardwareMap.voltageSensor.iterator().next();
+        voltageMonitor = new VoltageMonitor(voltageSensor);
+
+        Encoder leftFrontEncoder = new OverflowEncoder(new RawEncoder(leftFront));
+        Encoder leftBackEncoder = new OverflowEncoder(new RawEncoder(leftBack));
+        Encoder rightBackEncoder = new OverflowEncoder(new RawEncoder(rightBack));
+        Encoder rightFrontEncoder = new OverflowEncoder(new RawEncoder(rightFront));
+
+        // TODO: reverse encoders if needed
+        //   leftFrontEncoder.setDirection(DcMotorSimple.Direction.REVERSE);
 
-        localizer = new DriveLocalizer(pose);
+        if (PARAMS.otosLocalizer) {
+            localizer = new OtosLocalizer(hardwareMap, pose);
+        } else {
+            localizer = new DriveLocalizer(leftFrontEncoder, leftBackEncoder, rightBackEncoder, rightFrontEncoder,
+                    lazyImu.get(), pose);
+        }
+        if (PARAMS.localizationThread && !PARAMS.otosLocalizer) {
+            localizationThread = new LocalizationThread(localizer, loopClock);
+            localizer = localizationThread;
+        } else {
+            localizationThread = null;
+        }
 
         FlightRecorder.write("MECANUM_PARAMS", PARAMS);
     }
@@ -259,10 +532,25 @@ public final class MecanumDrive {
             maxPowerMag = Math.max(maxPowerMag, power.value());
         }
 
-        leftFront.setPower(wheelVels.leftFront.get(0) / maxPowerMag);
-        leftBack.setPower(wheelVels.leftBack.get(0) / maxPowerMag);
-        rightBack.setPower(wheelVels.rightBack.get(0) / maxPowerMag);
-        rightFront.setPower(wheelVels.rightFront.get(0) / maxPowerMag);
+        setMotorPowers(
+                wheelVels.leftFront.get(0) / maxPowerMag,
+                wheelVels.leftBack.get(0) / maxPowerMag,
+                wheelVels.rightBack.get(0) / maxPowerMag,
+                wheelVels.rightFront.get(0) / maxPowerMag
+        );
+    }
+
+    /**
+     * Sets the wheel powers and sends whichever of them changed to the hubs.
+     */
+    private void setMotorPowers(double leftFrontPower, double leftBackPower, double rightBackPower, double rightFrontPower) {
+        leftFrontOutput.setPower(leftFrontPower);
+        leftBackOutput.setPower(leftBackPower);
+        rightBackOutput.setPower(rightBackPower);
+        rightFrontOutput.setPower(rightFrontPower);
+
+        motorOutputs.setPowerEpsilon(PARAMS.motorPowerEpsilon);
+        motorOutputs.flush();
     }
 
     public final class FollowTrajectoryAction implements Action {
@@ -297,59 +585,33 @@ public final class MecanumDrive {
             }
 
             if (t >= timeTrajectory.duration) {
-                leftFront.setPower(0);
-                leftBack.setPower(0);
-                rightBack.setPower(0);
-                rightFront.setPower(0);
+                setMotorPowers(0, 0, 0, 0);
 
                 return false;
             }
 
             Pose2dDual<Time> txWorldTarget = timeTrajectory.get(t);
-            targetPoseWriter.write(new PoseMessage(txWorldTarget.value()));
+            writeTargetPose(txWorldTarget);
 
             PoseVelocity2d robotVelRobot = updatePoseEstimate();
 
-            PoseVelocity2dDual<Time> command = new HolonomicController(
-                    PARAMS.axialGain, PARAMS.lateralGain, PARAMS.headingGain,
-                    PARAMS.axialVelGain, PARAMS.lateralVelGain, PARAMS.headingVelGain
-            )
-                    .compute(txWorldTarget, localizer.getPose(), robotVelRobot);
-            driveCommandWriter.write(new DriveCommandMessage(command));
-
-            MecanumKinematics.WheelVelocities<Time> wheelVels = kinematics.inverse(command);
-            double voltage = voltageSensor.getVoltage();
-
-            final MotorFeedforward feedforward = new MotorFeedforward(PARAMS.kS,
-                    PARAMS.kV / PARAMS.inPerTick, PARAMS.kA / PARAMS.inPerTick);
-            double leftFrontPower = feedforward.compute(wheelVels.leftFront) / voltage;
-            double leftBackPower = feedforward.compute(wheelVels.leftBack) / voltage;
-            double rightBackPower = feedforward.compute(wheelVels.rightBack) / voltage;
-            double rightFrontPower = feedforward.compute(wheelVels.rightFront) / voltage;
-            mecanumCommandWriter.write(new MecanumCommandMessage(
-                    voltage, leftFrontPower, leftBackPower, rightBackPower, rightFrontPower
-            ));
-
-            leftFront.setPower(leftFrontPower);
-            leftBack.setPower(leftBackPower);
-            rightBack.setPower(rightBackPower);
-            rightFront.setPower(rightFrontPower);
+            followTarget(txWorldTarget, robotVelRobot);
 
             p.put("x", localizer.getPose().position.x);
             p.put("y", localizer.getPose().position.y);
             p.put("heading (deg)", Math.toDegrees(localizer.getPose().heading.toDouble()));
 
-            Pose2d error = txWorldTarget.value().minusExp(localizer.getPose());
-            p.put("xError", error.position.x);
-            p.put("yError", error.position.y);
-            p.put("headingError (deg)", Math.toDegrees(error.heading.toDouble()));
+            p.put("xError", controller.errorX);
+            p.put("yError", controller.errorY);
+            p.put("headingError (deg)", Math.toDegrees(controller.errorHeading));
 
             // only draw when active; only one drive action should be active at a time
+            long drawStart = LoopProfiler.start();
             Canvas c = p.fieldOverlay();
             drawPoseHistory(c);
 
             c.setStroke("#4CAF50");
-            Drawing.drawRobot(c, txWorldTarget.value());
+            Drawing.drawRobot(c, targetX, targetY, targetHeading);
 
             c.setStroke("#3F51B5");
             Drawing.drawRobot(c, localizer.getPose());
@@ -358,6 +620,9 @@ public final class MecanumDrive {
             c.setStrokeWidth(1);
             c.strokePolyline(xPoints, yPoints);
 
+            LoopProfiler.record(LoopProfiler.Stage.DRAWING, drawStart);
+            LoopProfiler.publish(p);
+
             return true;
         }
 
@@ -389,48 +654,24 @@ public final class MecanumDrive {
             }
 
             if (t >= turn.duration) {
-                leftFront.setPower(0);
-                leftBack.setPower(0);
-                rightBack.setPower(0);
-                rightFront.setPower(0);
+                setMotorPowers(0, 0, 0, 0);
 
                 return false;
             }
 
             Pose2dDual<Time> txWorldTarget = turn.get(t);
-            targetPoseWriter.write(new PoseMessage(txWorldTarget.value()));
+            writeTargetPose(txWorldTarget);
 
             PoseVelocity2d robotVelRobot = updatePoseEstimate();
 
-            PoseVelocity2dDual<Time> command = new HolonomicController(
-                    PARAMS.axialGain, PARAMS.lateralGain, PARAMS.headingGain,
-                    PARAMS.axialVelGain, PARAMS.lateralVelGain, PARAMS.headingVelGain
-            )
-                    .compute(txWorldTarget, localizer.getPose(), robotVelRobot);
-            driveCommandWriter.write(new DriveCommandMessage(command));
-
-            MecanumKinematics.WheelVelocities<Time> wheelVels = kinematics.inverse(command);
-            double voltage = voltageSensor.getVoltage();
-            final MotorFeedforward feedforward = new MotorFeedforward(PARAMS.kS,
-                    PARAMS.kV / PARAMS.inPerTick, PARAMS.kA / PARAMS.inPerTick);
-            double leftFrontPower = feedforward.compute(wheelVels.leftFront) / voltage;
-            double leftBackPower = feedforward.compute(wheelVels.leftBack) / voltage;
-            double rightBackPower = feedforward.compute(wheelVels.rightBack) / voltage;
-            double rightFrontPower = feedforward.compute(wheelVels.rightFront) / voltage;
-            mecanumCommandWriter.write(new MecanumCommandMessage(
-                    voltage, leftFrontPower, leftBackPower, rightBackPower, rightFrontPower
-            ));
-
-            leftFront.setPower(feedforward.compute(wheelVels.leftFront) / voltage);
-            leftBack.setPower(feedforward.compute(wheelVels.leftBack) / voltage);
-            rightBack.setPower(feedforward.compute(wheelVels.rightBack) / voltage);
-            rightFront.setPower(feedforward.compute(wheelVels.rightFront) / voltage);
+            followTarget(txWorldTarget, robotVelRobot);
 
+            long drawStart = LoopProfiler.start();
             Canvas c = p.fieldOverlay();
             drawPoseHistory(c);
 
             c.setStroke("#4CAF50");
-            Drawing.drawRobot(c, txWorldTarget.value());
+            Drawing.drawRobot(c, targetX, targetY, targetHeading);
 
             c.setStroke("#3F51B5");
             Drawing.drawRobot(c, localizer.getPose());
@@ -438,6 +679,9 @@ public final class MecanumDrive {
             c.setStroke("#7C4DFFFF");
             c.fillCircle(turn.beginPose.position.x, turn.beginPose.position.y, 2);
 
+            LoopProfiler.record(LoopProfiler.Stage.DRAWING, drawStart);
+            LoopProfiler.publish(p);
+
             return true;
         }
 
@@ -448,41 +692,308 @@ public final class MecanumDrive {
         }
     }
 
+    /**
+     * Follows a {@link SampledTrajectory}, e.g. one loaded by {@link TrajectoryCache},
+     * with the same controller as {@link FollowTrajectoryAction} and {@link TurnAction}.
+     */
+    public final class FollowSampledTrajectoryAction implements Action {
+        public final SampledTrajectory trajectory;
+        private double beginTs = -1;
+
+        private final double[] xPoints, yPoints;
+
+        public FollowSampledTrajectoryAction(SampledTrajectory trajectory) {
+            this.trajectory = trajectory;
+
+            // roughly one point every two inches, like FollowTrajectoryAction
+            int n = trajectory.size();
+            double length = 0;
+            for (int i = 1; i < n; i++) {
+                length += Math.hypot(trajectory.getX(i) - trajectory.getX(i - 1),
+                        trajectory.getY(i) - trajectory.getY(i - 1));
+            }
+            int points = Math.min(n, Math.max(2, (int) Math.ceil(length / 2)));
+
+            xPoints = new double[points];
+            yPoints = new double[points];
+            for (int j = 0; j < points; j++) {
+                int i = (int) ((long) j * (n - 1) / (points - 1));
+                xPoints[j] = trajectory.getX(i);
+                yPoints[j] = trajectory.getY(i);
+            }
+        }
+
+        @Override
+        public boolean run(@NonNull TelemetryPacket p) {
+            double t;
+            if (beginTs < 0) {
+                beginTs = Actions.now();
+                t = 0;
+            } else {
+                t = Actions.now() - beginTs;
+            }
+
+            if (t >= trajectory.duration) {
+                setMotorPowers(0, 0, 0, 0);
+
+                return false;
+            }
+
+            trajectory.get(t);
+            writeTargetPose(trajectory.x, trajectory.y, trajectory.heading);
+
+            PoseVelocity2d robotVelRobot = updatePoseEstimate();
+
+            followTarget(trajectory, robotVelRobot);
+
+            p.put("x", localizer.getPose().position.x);
+            p.put("y", localizer.getPose().position.y);
+            p.put("heading (deg)", Math.toDegrees(localizer.getPose().heading.toDouble()));
+
+            p.put("xError", controller.errorX);
+            p.put("yError", controller.errorY);
+            p.put("headingError (deg)", Math.toDegrees(controller.errorHeading));
+
+            long drawStart = LoopProfiler.start();
+            Canvas c = p.fieldOverlay();
+            drawPoseHistory(c);
+
+            c.setStroke("#4CAF50");
+            Drawing.drawRobot(c, targetX, targetY, targetHeading);
+
+            c.setStroke("#3F51B5");
+            Drawing.drawRobot(c, localizer.getPose());
+
+            preview(c, "#7C4DFFFF", "#4CAF50FF");
+
+            LoopProfiler.record(LoopProfiler.Stage.DRAWING, drawStart);
+            LoopProfiler.publish(p);
+
+            return true;
+        }
+
+        @Override
+        public void preview(Canvas c) {
+            preview(c, "#7C4DFF7A", "#4CAF507A");
+        }
+
+        private void preview(Canvas c, String turnStroke, String pathStroke) {
+            if (trajectory.kind == SampledTrajectory.Kind.TURN) {
+                c.setStroke(turnStroke);
+                c.fillCircle(trajectory.getX(0), trajectory.getY(0), 2);
+            } else {
+                c.setStroke(pathStroke);
+                c.setStrokeWidth(1);
+                c.strokePolyline(xPoints, yPoints);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the controller and feedforward if the gains in PARAMS changed since the last tick.
+     */
+    private void refreshControllers() {
+        if (controller == null || !controller.hasGains(
+                PARAMS.axialGain, PARAMS.lateralGain, PARAMS.headingGain,
+                PARAMS.axialVelGain, PARAMS.lateralVelGain, PARAMS.headingVelGain)) {
+            controller = new PrimitiveHolonomicController(
+                    PARAMS.axialGain, PARAMS.lateralGain, PARAMS.headingGain,
+                    PARAMS.axialVelGain, PARAMS.lateralVelGain, PARAMS.headingVelGain
+            );
+        }
+
+        if (feedforward == null || feedforwardKS != PARAMS.kS || feedforwardKV != PARAMS.kV
+                || feedforwardKA != PARAMS.kA || feedforwardInPerTick != PARAMS.inPerTick) {
+            feedforwardKS = PARAMS.kS;
+            feedforwardKV = PARAMS.kV;
+            feedforwardKA = PARAMS.kA;
+            feedforwardInPerTick = PARAMS.inPerTick;
+
+            feedforward = new MotorFeedforward(PARAMS.kS,
+                    PARAMS.kV / PARAMS.inPerTick, PARAMS.kA / PARAMS.inPerTick);
+        }
+    }
+
+    private void writeTargetPose(Pose2dDual<Time> txWorldTarget) {
+        writeTargetPose(txWorldTarget.position.x.get(0), txWorldTarget.position.y.get(0), Math.atan2(
+                txWorldTarget.heading.imag.get(0), txWorldTarget.heading.real.get(0)));
+    }
+
+    private void writeTargetPose(double x, double y, double heading) {
+        long t = LoopProfiler.start();
+        targetX = x;
+        targetY = y;
+        targetHeading = heading;
+
+        PoseMessage m = targetPoseWriter.acquire();
+        if (m != null) {
+            targetPoseWriter.write(m.fill(System.nanoTime(), x, y, heading));
+        }
+        LoopProfiler.record(LoopProfiler.Stage.LOGGING, t);
+    }
+
+    /**
+     * Runs the feedback controller, inverse kinematics and feedforward for one tick
+     * and sets the motor powers, all without allocating.
+     */
+    private void followTarget(Pose2dDual<Time> txWorldTarget, PoseVelocity2d robotVelRobot) {
+        long t = LoopProfiler.start();
+        refreshControllers();
+
+        controller.compute(txWorldTarget, localizer.getPose(), robotVelRobot);
+        LoopProfiler.record(LoopProfiler.Stage.CONTROLLER, t);
+
+        driveWithControllerCommand();
+    }
+
+    /**
+     * Same as {@link #followTarget(Pose2dDual, PoseVelocity2d)}, but for the target last read from {@code trajectory}.
+     */
+    private void followTarget(SampledTrajectory trajectory, PoseVelocity2d robotVelRobot) {
+        long t = LoopProfiler.start();
+        refreshControllers();
+
+        controller.compute(
+                trajectory.x, trajectory.y, trajectory.heading,
+                trajectory.xVel, trajectory.yVel, trajectory.angVel,
+                trajectory.xAccel, trajectory.yAccel, trajectory.angAccel,
+                localizer.getPose(), robotVelRobot);
+        LoopProfiler.record(LoopProfiler.Stage.CONTROLLER, t);
+
+        driveWithControllerCommand();
+    }
+
+    /**
+     * Runs the inverse kinematics and feedforward for the controller's last command, without allocating,
+     * and writes the left front, left back, right back and right front powers into {@code powers}.
+     */
+    static void computeWheelPowers(PrimitiveHolonomicController controller, MecanumKinematics kinematics,
+                                   MotorFeedforward feedforward, double voltage, double[] powers) {
+        // same as kinematics.inverse(command)
+        double lateralVel = controller.linearVelY * kinematics.lateralMultiplier;
+        double lateralAccel = controller.linearAccelY * kinematics.lateralMultiplier;
+        double angularVel = controller.angVel * kinematics.trackWidth;
+        double angularAccel = controller.angAccel * kinematics.trackWidth;
+
+        powers[0] = feedforward.compute(
+                controller.linearVelX - lateralVel - angularVel,
+                controller.linearAccelX - lateralAccel - angularAccel) / voltage;
+        powers[1] = feedforward.compute(
+                controller.linearVelX + lateralVel - angularVel,
+                controller.linearAccelX + lateralAccel - angularAccel) / voltage;
+        powers[2] = feedforward.compute(
+                controller.linearVelX - lateralVel + angularVel,
+                controller.linearAccelX - lateralAccel + angularAccel) / voltage;
+        powers[3] = feedforward.compute(
+                controller.linearVelX + lateralVel + angularVel,
+                controller.linearAccelX + lateralAccel + angularAccel) / voltage;
+    }
+
+    private void driveWithControllerCommand() {
+        long t = LoopProfiler.start();
+        DriveCommandMessage driveCommand = driveCommandWriter.acquire();
+        if (driveCommand != null) {
+            driveCommandWriter.write(driveCommand.fill(System.nanoTime(),
+                    controller.linearVelX, controller.linearAccelX,
+                    controller.linearVelY, controller.linearAccelY,
+                    controller.angVel, controller.angAccel));
+        }
+        t = LoopProfiler.lap(LoopProfiler.Stage.LOGGING, t);
+
+        double voltage = voltageMonitor.getVoltage();
+        computeWheelPowers(controller, kinematics, feedforward, voltage, wheelPowers);
+        double leftFrontPower = wheelPowers[0], leftBackPower = wheelPowers[1],
+                rightBackPower = wheelPowers[2], rightFrontPower = wheelPowers[3];
+        t = LoopProfiler.lap(LoopProfiler.Stage.CONTROLLER, t);
+
+        MecanumCommandMessage mecanumCommand = mecanumCommandWriter.acquire();
+        if (mecanumCommand != null) {
+            mecanumCommandWriter.write(mecanumCommand.fill(System.nanoTime(),
+                    voltage, leftFrontPower, leftBackPower, rightBackPower, rightFrontPower));
+        }
+        t = LoopProfiler.lap(LoopProfiler.Stage.LOGGING, t);
+
+        setMotorPowers(leftFrontPower, leftBackPower, rightBackPower, rightFrontPower);
+        LoopProfiler.record(LoopProfiler.Stage.MOTORS, t);
+    }
+
+    /**
+     * Updates the localizer, or with {@link Params#localizationThread} set, picks up the thread's latest pose.
+     */
     public PoseVelocity2d updatePoseEstimate() {
+        LogRatePolicy.update(loopClock.getLastPeriodNanos());
+
         PoseVelocity2d vel = localizer.update();
-        poseHistory.add(localizer.getPose());
-        
-        while (poseHistory.size() > 100) {
-            poseHistory.removeFirst();
+
+        // with the thread, stamp the pose with when its inputs were read
+        long now = localizationThread == null ? System.nanoTime() : localizationThread.getSnapshot().timestamp;
+        Pose2d pose = localizer.getPose();
+        poseHistory.add(now, pose);
+
+        long t = LoopProfiler.start();
+        PoseMessage m = estimatedPoseWriter.acquire();
+        if (m != null) {
+            estimatedPoseWriter.write(m.fill(now, pose.position.x, pose.position.y, pose.heading.toDouble()));
         }
+        LoopProfiler.record(LoopProfiler.Stage.LOGGING, t);
 
-        estimatedPoseWriter.write(new PoseMessage(localizer.getPose()));
-        
-        
         return vel;
     }
 
     private void drawPoseHistory(Canvas c) {
-        double[] xPoints = new double[poseHistory.size()];
-        double[] yPoints = new double[poseHistory.size()];
-
-        int i = 0;
-        for (Pose2d t : poseHistory) {
-            xPoints[i] = t.position.x;
-            yPoints[i] = t.position.y;
-
-            i++;
+        if (poseHistory.isEmpty()) {
+            return;
         }
 
+        poseHistoryPoints.sample(poseHistory);
+
         c.setStrokeWidth(1);
         c.setStroke("#3F51B5");
-        c.strokePolyline(xPoints, yPoints);
+        c.strokePolyline(poseHistoryPoints.getX(), poseHistoryPoints.getY());
     }
 
+    /**
+     * Samples each trajectory and turn into a table when it's built and follows it with
+     * {@link FollowSampledTrajectoryAction}, which looks the target up instead of evaluating
+     * the path and profile on every tick, so the target and controller part of the tick doesn't allocate.
+     */
     public TrajectoryActionBuilder actionBuilder(Pose2d beginPose) {
+        return actionBuilder(beginPose,
+                turn -> new FollowSampledTrajectoryAction(sample(turn)),
+                trajectory -> new FollowSampledTrajectoryAction(sample(trajectory)));
+    }
+
+    /**
+     * Same as {@link #actionBuilder(Pose2d)}, but follows with {@link FollowTrajectoryAction} and {@link TurnAction},
+     * which evaluate the path and profile on every tick. Skips the sampling at build time, but allocates every tick.
+     */
+    public TrajectoryActionBuilder exactActionBuilder(Pose2d beginPose) {
+        return actionBuilder(beginPose, TurnAction::new, FollowTrajectoryAction::new);
+    }
+
+    public SampledTrajectory sample(TimeTrajectory trajectory) {
+        return SampledTrajectory.sample(trajectory,
+                PARAMS.sampleMaxDt, PARAMS.samplePositionTolerance, PARAMS.sampleHeadingTolerance,
+                PARAMS.sampleVelocityTolerance, PARAMS.sampleAngVelTolerance);
+    }
+
+    public SampledTrajectory sample(TimeTurn turn) {
+        return SampledTrajectory.sample(turn,
+                PARAMS.sampleMaxDt, PARAMS.samplePositionTolerance, PARAMS.sampleHeadingTolerance,
+                PARAMS.sampleVelocityTolerance, PARAMS.sampleAngVelTolerance);
+    }
+
+    /**
+     * Same as {@link #actionBuilder(Pose2d)}, but with custom factories for the turn and trajectory actions.
+     */
+    public TrajectoryActionBuilder actionBuilder(
+            Pose2d beginPose,
+            TurnActionFactory turnActionFactory,
+            TrajectoryActionFactory trajectoryActionFactory
+    ) {
         return new TrajectoryActionBuilder(
-                TurnAction::new,
-                FollowTrajectoryAction::new,
+                turnActionFactory,
+                trajectoryActionFactory,
                 new TrajectoryBuilderParams(
                         1e-6,
                         new ProfileParams(
@@ -0,0 +1,46 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.qualcomm.hardware.digitalchickenlabs.OctoQuad;
+
+/**
+ * Reads all eight OctoQuad channels with one {@link OctoQuad#readAllEncoderData} call.
+ */
+public final class OctoQuadEncoderSource implements EncoderSource {
+    public final OctoQuad octoquad;
+
+    private final OctoQuad.EncoderDataBlock block = new OctoQuad.EncoderDataBlock();
+    // the OctoQuad reports velocity in ticks per sample interval
+    private final double velocityScale;
+
+    /**
+     * @param reversed                 Whether each channel's direction is reversed; missing channels are forward.
+     * @param velocitySampleIntervalMs The OctoQuad's velocity sample interval for every channel (in milliseconds).
+     */
+    public OctoQuadEncoderSource(OctoQuad octoquad, boolean[] reversed, int velocitySampleIntervalMs) {
+        this.octoquad = octoquad;
+
+        octoquad.setChannelBankConfig(OctoQuad.ChannelBankConfig.ALL_QUADRATURE);
+        for (int i = 0; i < OctoQuad.NUM_ENCODERS; i++) {
+            octoquad.setSingleEncoderDirection(i, i < reversed.length && reversed[i]
+                    ? OctoQuad.EncoderDirection.REVERSE : OctoQuad.EncoderDirection.FORWARD);
+        }
+        octoquad.setAllVelocitySampleIntervals(velocitySampleIntervalMs);
+
+        velocityScale = 1000.0 / velocitySampleIntervalMs;
+    }
+
+    @Override
+    public int channelCount() {
+        return OctoQuad.NUM_ENCODERS;
+    }
+
+    @Override
+    public void read(int[] positions, double[] velocities) {
+        octoquad.readAllEncoderData(block);
+
+        for (int i = 0; i < OctoQuad.NUM_ENCODERS; i++) {
+            positions[i] = block.positions[i];
+            velocities[i] = block.velocities[i] * velocityScale;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+import com.acmerobotics.roadrunner.Vector2d;
+import com.acmerobotics.roadrunner.ftc.FlightRecorder;
+import com.qualcomm.hardware.digitalchickenlabs.OctoQuad;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+/**
+ * Three-dead-wheel odometry read from an {@link EncoderSource} such as an OctoQuad,
+ * so all three encoders come from one bulk read instead of one hub call each.
+ * <p>
+ * With {@link Params#threadPeriodMicros} at 0 the pose is integrated in {@link #update()}, like
+ * {@link ThreeDeadWheelLocalizer}. Otherwise a background thread reads and integrates at that period,
+ * which keeps each arc short while turning, and {@link #update()} only picks up its latest result.
+ * Like {@link VoltageMonitor}, the thread stops by itself once the thread that created it dies;
+ * iterative op modes should call {@link #close()} in {@code stop()}.
+ */
+@Config
+public final class OctoQuadLocalizer implements Localizer {
+    public static class Params {
+        // OctoQuad channels of each encoder
+        public int par0Channel = 0;
+        public int par1Channel = 1;
+        public int perpChannel = 2;
+
+        public double par0YTicks = 0.0; // y position of the first parallel encoder (in tick units)
+        public double par1YTicks = 1.0; // y position of the second parallel encoder (in tick units)
+        public double perpXTicks = 0.0; // x position of the perpendicular encoder (in tick units)
+
+        // how often the background thread integrates (in microseconds); 0 integrates in update() instead
+        public long threadPeriodMicros = 0;
+    }
+
+    public static Params PARAMS = new Params();
+
+    public final EncoderSource source;
+    public final double inPerTick;
+
+    private final int[] positions;
+    private final double[] velocities;
+
+    // guarded by this; shared between the integrating thread and setPose()
+    private final PrimitivePose pose;
+    private int lastPar0Pos, lastPar1Pos, lastPerpPos;
+    private boolean initialized;
+    private double lineXVel, lineYVel, angVel;
+    private long integrations;
+
+    private final Thread owner;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    public OctoQuadLocalizer(HardwareMap hardwareMap, double inPerTick, Pose2d pose) {
+        // TODO: make sure your config has an OctoQuad with this name (or change it)
+        //   reverse channels and change the velocity sample interval here if needed
+        this(new OctoQuadEncoderSource(hardwareMap.get(OctoQuad.class, "octoquad"), new boolean[0], 25),
+                inPerTick, pose);
+    }
+
+    public OctoQuadLocalizer(EncoderSource source, double inPerTick, Pose2d pose) {
+        this.source = source;
+        this.inPerTick = inPerTick;
+        this.pose = new PrimitivePose(pose);
+
+        positions = new int[source.channelCount()];
+        velocities = new double[source.channelCount()];
+
+        FlightRecorder.write("OCTOQUAD_LOCALIZER_PARAMS", PARAMS);
+
+        owner = Thread.currentThread();
+        if (PARAMS.threadPeriodMicros > 0) {
+            // read once here so the pose is valid before the first update()
+            integrate();
+
+            thread = new Thread(this::run, "OctoQuadLocalizer");
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            thread = null;
+        }
+    }
+
+    @Override
+    public synchronized void setPose(Pose2d pose) {
+        this.pose.set(pose);
+    }
+
+    @Override
+    public synchronized Pose2d getPose() {
+        return pose.toPose2d();
+    }
+
+    @Override
+    public PoseVelocity2d update() {
+        if (thread == null) {
+            long t = LoopProfiler.start();
+            integrate();
+            LoopProfiler.record(LoopProfiler.Stage.ENCODERS, t);
+        }
+
+        synchronized (this) {
+            return new PoseVelocity2d(new Vector2d(lineXVel, lineYVel), angVel);
+        }
+    }
+
+    /**
+     * @return how many times the pose has been integrated; shows the background thread's rate
+     */
+    public synchronized long getIntegrations() {
+        return integrations;
+    }
+
+    /**
+     * Stops the background thread, if any. The pose stops changing.
+     */
+    public void close() {
+        closed = true;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void run() {
+        long periodNanos = PARAMS.threadPeriodMicros * 1000;
+        long next = System.nanoTime();
+        while (!closed && owner.isAlive()) {
+            next += periodNanos;
+            long sleepNanos = next - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    Thread.sleep(sleepNanos / 1_000_000, (int) (sleepNanos % 1_000_000));
+                } catch (InterruptedException e) {
+                    break;
+                }
+            } else {
+                // fell behind; don't try to catch up
+                next = System.nanoTime();
+            }
+
+            integrate();
+        }
+    }
+
+    private void integrate() {
+        // the read is the slow part, so it happens outside the lock
+        source.read(positions, velocities);
+
+        int par0Pos = positions[PARAMS.par0Channel];
+        int par1Pos = positions[PARAMS.par1Channel];
+        int perpPos = positions[PARAMS.perpChannel];
+        double par0Vel = velocities[PARAMS.par0Channel];
+        double par1Vel = velocities[PARAMS.par1Channel];
+        double perpVel = velocities[PARAMS.perpChannel];
+
+        synchronized (this) {
+            integrations++;
+
+            if (!initialized) {
+                initialized = true;
+
+                lastPar0Pos = par0Pos;
+                lastPar1Pos = par1Pos;
+                lastPerpPos = perpPos;
+                return;
+            }
+
+            int par0PosDelta = par0Pos - lastPar0Pos;
+            int par1PosDelta = par1Pos - lastPar1Pos;
+            int perpPosDelta = perpPos - lastPerpPos;
+
+            // same as ThreeDeadWheelLocalizer
+            double parYTicksDiff = PARAMS.par0YTicks - PARAMS.par1YTicks;
+            double lineX = (PARAMS.par0YTicks * par1PosDelta - PARAMS.par1YTicks * par0PosDelta) / parYTicksDiff * inPerTick;
+            double lineY = (PARAMS.perpXTicks / parYTicksDiff * (par1PosDelta - par0PosDelta) + perpPosDelta) * inPerTick;
+            double angle = (par0PosDelta - par1PosDelta) / parYTicksDiff;
+
+            lineXVel = (PARAMS.par0YTicks * par1Vel - PARAMS.par1YTicks * par0Vel) / parYTicksDiff * inPerTick;
+            lineYVel = (PARAMS.perpXTicks / parYTicksDiff * (par1Vel - par0Vel) + perpVel) * inPerTick;
+            angVel = (par0Vel - par1Vel) / parYTicksDiff;
+
+            lastPar0Pos = par0Pos;
+            lastPar1Pos = par1Pos;
+            lastPerpPos = perpPos;
+
+            pose.plus(lineX, lineY, angle);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+import com.acmerobotics.roadrunner.Vector2d;
+import com.acmerobotics.roadrunner.ftc.FlightRecorder;
+import com.qualcomm.hardware.sparkfun.SparkFunOTOS;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.DistanceUnit;
+
+/**
+ * Localizes with a SparkFun OTOS, which tracks the pose on-chip.
+ * <p>
+ * A background thread reads position and velocity in one burst and publishes them,
+ * so {@link #update()} never waits on I2C. {@link #setPose(Pose2d)} writes the pose to the sensor;
+ * reads and writes are serialized so a read in flight can't undo it.
+ * <p>
+ * The sensor works in inches and radians, with the mounting offset and scalars from {@link Params}
+ * applied when the localizer is created. Like {@link VoltageMonitor}, the thread stops by itself
+ * once the thread that created it dies; iterative op modes should call {@link #close()} in {@code stop()}.
+ */
+@Config
+public final class OtosLocalizer implements Localizer {
+    public static class Params {
+        // position of the sensor on the robot (in inches and degrees); see the SensorSparkFunOTOS sample
+        public double offsetX = 0.0;
+        public double offsetY = 0.0;
+        public double offsetHeadingDeg = 0.0;
+
+        // measured distance / reported distance, and the same for rotation
+        public double linearScalar = 1.0;
+        public double angularScalar = 1.0;
+
+        // time between the starts of reads (in milliseconds), about the loop period;
+        // reading faster keeps the hub's I2C bus busy for poses the loop never sees, and 0 reads back to back
+        public long pollPeriodMs = 10;
+    }
+
+    public static Params PARAMS = new Params();
+
+    public final SparkFunOTOS otos;
+
+    // reused by the polling thread
+    private final SparkFunOTOS.Pose2D position = new SparkFunOTOS.Pose2D();
+    private final SparkFunOTOS.Pose2D velocity = new SparkFunOTOS.Pose2D();
+    private final SparkFunOTOS.Pose2D acceleration = new SparkFunOTOS.Pose2D();
+    // the last published reading; NaN until the first one
+    private double lastX = Double.NaN, lastY = Double.NaN, lastHeading = Double.NaN;
+
+    private volatile Pose2d pose;
+    private volatile PoseVelocity2d vel = new PoseVelocity2d(new Vector2d(0.0, 0.0), 0.0);
+    private volatile long lastReadNanos;
+    private volatile long readCount;
+
+    private final Thread owner;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    public OtosLocalizer(HardwareMap hardwareMap, Pose2d pose) {
+        // TODO: make sure your config has a SparkFun OTOS with this name (or change it)
+        otos = hardwareMap.get(SparkFunOTOS.class, "sensor_otos");
+
+        otos.setLinearUnit(DistanceUnit.INCH);
+        otos.setAngularUnit(AngleUnit.RADIANS);
+        otos.setOffset(new SparkFunOTOS.Pose2D(
+                PARAMS.offsetX, PARAMS.offsetY, Math.toRadians(PARAMS.offsetHeadingDeg)));
+        otos.setLinearScalar(PARAMS.linearScalar);
+        otos.setAngularScalar(PARAMS.angularScalar);
+
+        // the robot must be still while this runs
+        otos.calibrateImu();
+        otos.resetTracking();
+
+        FlightRecorder.write("OTOS_PARAMS", PARAMS);
+
+        setPose(pose);
+        lastReadNanos = System.nanoTime();
+
+        owner = Thread.currentThread();
+        thread = new Thread(this::run, "OtosLocalizer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void setPose(Pose2d pose) {
+        synchronized (otos) {
+            otos.setPosition(new SparkFunOTOS.Pose2D(pose.position.x, pose.position.y, pose.heading.toDouble()));
+            this.pose = pose;
+        }
+    }
+
+    @Override
+    public Pose2d getPose() {
+        return pose;
+    }
+
+    @Override
+    public PoseVelocity2d update() {
+        return vel;
+    }
+
+    /**
+     * @return how many times the sensor has been read
+     */
+    public long getReadCount() {
+        return readCount;
+    }
+
+    /**
+     * @return how long ago the published pose was read (in nanoseconds)
+     */
+    public long getStalenessNanos() {
+        return System.nanoTime() - lastReadNanos;
+    }
+
+    /**
+     * Stops the polling thread. The pose stops changing.
+     */
+    public void close() {
+        closed = true;
+        thread.interrupt();
+    }
+
+    private void run() {
+        long readStart = System.nanoTime();
+
+        while (!closed && owner.isAlive()) {
+            // count the read itself toward the period
+            long waitNanos = readStart + PARAMS.pollPeriodMs * 1_000_000 - System.nanoTime();
+            if (waitNanos > 0) {
+                try {
+                    Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+            readStart = System.nanoTime();
+
+            synchronized (otos) {
+                otos.getPosVelAcc(position, velocity, acceleration);
+
+                // while the robot sits still, keep publishing the same objects instead of allocating new ones
+                if (velocity.x != 0.0 || velocity.y != 0.0 || velocity.h != 0.0
+                        || position.x != lastX || position.y != lastY || position.h != lastHeading) {
+                    lastX = position.x;
+                    lastY = position.y;
+                    lastHeading = position.h;
+
+                    // the sensor reports velocity in the field frame; localizers report it in the robot frame
+                    double c = Math.cos(position.h), s = Math.sin(position.h);
+                    vel = new PoseVelocity2d(
+                            new Vector2d(c * velocity.x + s * velocity.y, -s * velocity.x + c * velocity.y),
+                            velocity.h);
+                    pose = new Pose2d(position.x, position.y, position.h);
+                }
+            }
+
+            lastReadNanos = System.nanoTime();
+            readCount++;
+        }
+    }
+}
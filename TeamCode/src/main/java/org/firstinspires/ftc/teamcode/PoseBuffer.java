@@ -0,0 +1,199 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+import com.acmerobotics.roadrunner.Vector2d;
+
+/**
+ * Fixed window of timestamped poses and velocities backed by primitive arrays, queryable by time.
+ * <p>
+ * Like {@link PoseHistory}, adding never allocates and the oldest entry is overwritten once full.
+ * {@link #sample(long)} binary searches the timestamps and interpolates between the two surrounding entries
+ * along the constant-twist arc joining them (the same arc {@code Pose2d.plus(Twist2d)} follows), so it stays
+ * accurate while turning. Velocities are in the robot frame and interpolated linearly.
+ * <p>
+ * Timestamps are {@link System#nanoTime()} values and must be added in increasing order.
+ */
+public final class PoseBuffer {
+    // same as RoadRunner's, to avoid dividing by zero at zero rotation
+    private static final double EPS = 2.2e-15;
+
+    private final long[] timestamps;
+    private final double[] xs, ys, headings;
+    private final double[] xVels, yVels, angVels;
+
+    private int start;
+    private int size;
+
+    // output of the last successful sample() call
+    public double x, y, heading;
+    public double xVel, yVel, angVel;
+
+    public PoseBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+
+        timestamps = new long[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        headings = new double[capacity];
+        xVels = new double[capacity];
+        yVels = new double[capacity];
+        angVels = new double[capacity];
+    }
+
+    public int capacity() {
+        return timestamps.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        start = 0;
+        size = 0;
+    }
+
+    public void add(long timestampNanos, Pose2d pose, PoseVelocity2d vel) {
+        add(timestampNanos, pose.position.x, pose.position.y, pose.heading.toDouble(),
+                vel.linearVel.x, vel.linearVel.y, vel.angVel);
+    }
+
+    public void add(long timestampNanos, double x, double y, double heading,
+                    double xVel, double yVel, double angVel) {
+        int i;
+        if (size < timestamps.length) {
+            i = physicalIndex(size);
+            size++;
+        } else {
+            i = start;
+            start = physicalIndex(1);
+        }
+
+        timestamps[i] = timestampNanos;
+        xs[i] = x;
+        ys[i] = y;
+        headings[i] = heading;
+        xVels[i] = xVel;
+        yVels[i] = yVel;
+        angVels[i] = angVel;
+    }
+
+    /**
+     * @return the timestamp of the oldest entry
+     */
+    public long getOldestTimestamp() {
+        checkNotEmpty();
+        return timestamps[start];
+    }
+
+    /**
+     * @return the timestamp of the newest entry
+     */
+    public long getNewestTimestamp() {
+        checkNotEmpty();
+        return timestamps[physicalIndex(size - 1)];
+    }
+
+    /**
+     * @return the pose at {@code timestampNanos}, or null if that's outside the window
+     */
+    public Pose2d getPoseAt(long timestampNanos) {
+        return sample(timestampNanos) ? new Pose2d(x, y, heading) : null;
+    }
+
+    /**
+     * @return the robot-frame velocity at {@code timestampNanos}, or null if that's outside the window
+     */
+    public PoseVelocity2d getVelocityAt(long timestampNanos) {
+        return sample(timestampNanos) ? new PoseVelocity2d(new Vector2d(xVel, yVel), angVel) : null;
+    }
+
+    /**
+     * Interpolates the pose and velocity at {@code timestampNanos} into the public fields, in O(log n).
+     *
+     * @return false, leaving the fields unchanged, if {@code timestampNanos} is outside the window
+     */
+    public boolean sample(long timestampNanos) {
+        if (size == 0
+                || timestampNanos - timestamps[start] < 0
+                || timestampNanos - timestamps[physicalIndex(size - 1)] > 0) {
+            return false;
+        }
+
+        // newest entry at or before the timestamp
+        int lo = 0, hi = size - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (timestamps[physicalIndex(mid)] - timestampNanos <= 0) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+
+        int i = physicalIndex(lo);
+        if (lo == size - 1 || timestamps[i] == timestampNanos) {
+            x = xs[i];
+            y = ys[i];
+            heading = headings[i];
+            xVel = xVels[i];
+            yVel = yVels[i];
+            angVel = angVels[i];
+            return true;
+        }
+
+        int j = physicalIndex(lo + 1);
+        double f = (double) (timestampNanos - timestamps[i]) / (timestamps[j] - timestamps[i]);
+
+        // log of the relative pose from i to j, in i's frame
+        double c0 = Math.cos(headings[i]), s0 = Math.sin(headings[i]);
+        double dxWorld = xs[j] - xs[i], dyWorld = ys[j] - ys[i];
+        double rx = c0 * dxWorld + s0 * dyWorld;
+        double ry = -s0 * dxWorld + c0 * dyWorld;
+        double theta = Math.atan2(Math.sin(headings[j] - headings[i]), Math.cos(headings[j] - headings[i]));
+
+        double halfU = 0.5 * theta + snz(theta);
+        double v = halfU / Math.tan(halfU);
+        double lineX = v * rx + halfU * ry;
+        double lineY = -halfU * rx + v * ry;
+
+        // exp of the scaled twist, composed onto i
+        double angle = f * theta;
+        double u = angle + snz(angle);
+        double c = 1 - Math.cos(u), s = Math.sin(u);
+        double px = (s * f * lineX - c * f * lineY) / u;
+        double py = (c * f * lineX + s * f * lineY) / u;
+
+        x = xs[i] + c0 * px - s0 * py;
+        y = ys[i] + s0 * px + c0 * py;
+        heading = headings[i] + angle;
+        heading = Math.atan2(Math.sin(heading), Math.cos(heading));
+
+        xVel = xVels[i] + f * (xVels[j] - xVels[i]);
+        yVel = yVels[i] + f * (yVels[j] - yVels[i]);
+        angVel = angVels[i] + f * (angVels[j] - angVels[i]);
+        return true;
+    }
+
+    private static double snz(double x) {
+        return x >= 0.0 ? EPS : -EPS;
+    }
+
+    private void checkNotEmpty() {
+        if (size == 0) {
+            throw new IllegalStateException("buffer is empty");
+        }
+    }
+
+    private int physicalIndex(int i) {
+        int k = start + i;
+        return k >= timestamps.length ? k - timestamps.length : k;
+    }
+}
@@ -0,0 +1,46 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+
+/**
+ * Records every pose and velocity of a {@link Localizer} into a {@link PoseBuffer},
+ * so anything holding the drive can ask where the robot was at a given time.
+ * The wrapped localizer's math is untouched.
+ */
+public final class PoseBufferLocalizer implements Localizer {
+    public final Localizer localizer;
+    public final PoseBuffer buffer;
+
+    public PoseBufferLocalizer(Localizer localizer, int capacity) {
+        this.localizer = localizer;
+        buffer = new PoseBuffer(capacity);
+    }
+
+    @Override
+    public void setPose(Pose2d pose) {
+        localizer.setPose(pose);
+        // older entries are in the old frame
+        buffer.clear();
+    }
+
+    @Override
+    public Pose2d getPose() {
+        return localizer.getPose();
+    }
+
+    @Override
+    public PoseVelocity2d update() {
+        PoseVelocity2d vel = localizer.update();
+        buffer.add(System.nanoTime(), localizer.getPose(), vel);
+        return vel;
+    }
+
+    /**
+     * @return the pose at {@code timestampNanos}, or null if that's outside the buffer
+     * @see PoseBuffer#getPoseAt(long)
+     */
+    public Pose2d getPoseAt(long timestampNanos) {
+        return buffer.getPoseAt(timestampNanos);
+    }
+}
@@ -0,0 +1,173 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.roadrunner.Pose2d;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-capacity ring buffer of timestamped poses backed by primitive arrays.
+ * Adding a pose never allocates; once full, the oldest pose is overwritten.
+ * Index 0 is the oldest pose and {@code size() - 1} the newest.
+ */
+public final class PoseHistory {
+    private final double[] xs, ys, headings;
+    private final long[] timestamps;
+
+    // index of the oldest pose in the arrays
+    private int start;
+    private int size;
+
+    public PoseHistory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+
+        xs = new double[capacity];
+        ys = new double[capacity];
+        headings = new double[capacity];
+        timestamps = new long[capacity];
+    }
+
+    public int capacity() {
+        return xs.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        start = 0;
+        size = 0;
+    }
+
+    public void add(long timestampNanos, Pose2d pose) {
+        add(timestampNanos, pose.position.x, pose.position.y, pose.heading.toDouble());
+    }
+
+    public void add(long timestampNanos, double x, double y, double heading) {
+        int i;
+        if (size < xs.length) {
+            i = physicalIndex(size);
+            size++;
+        } else {
+            i = start;
+            start = physicalIndex(1);
+        }
+
+        xs[i] = x;
+        ys[i] = y;
+        headings[i] = heading;
+        timestamps[i] = timestampNanos;
+    }
+
+    public long getTimestamp(int i) {
+        return timestamps[checkedIndex(i)];
+    }
+
+    public double getX(int i) {
+        return xs[checkedIndex(i)];
+    }
+
+    public double getY(int i) {
+        return ys[checkedIndex(i)];
+    }
+
+    public double getHeading(int i) {
+        return headings[checkedIndex(i)];
+    }
+
+    /**
+     * Copies the positions into {@code xPoints} and {@code yPoints}, evenly sampled from oldest to newest.
+     * Both arrays are always filled completely (repeating poses if the history is shorter than them).
+     * Arrays handed to a dashboard packet must not be refilled before the packet is sent; see {@link DrawBuffers}.
+     */
+    public void samplePositions(double[] xPoints, double[] yPoints) {
+        int n = Math.min(xPoints.length, yPoints.length);
+        if (n == 0 || size == 0) {
+            return;
+        }
+
+        for (int j = 0; j < n; j++) {
+            int i = n == 1 ? size - 1 : (int) ((long) j * (size - 1) / (n - 1));
+            int k = physicalIndex(i);
+            xPoints[j] = xs[k];
+            yPoints[j] = ys[k];
+        }
+    }
+
+    private int checkedIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("index " + i + " out of bounds for size " + size);
+        }
+
+        return physicalIndex(i);
+    }
+
+    private int physicalIndex(int i) {
+        int k = start + i;
+        return k >= xs.length ? k - xs.length : k;
+    }
+
+    /**
+     * A few pairs of arrays for drawing a history, handed out so no pair is refilled while a packet may still hold it.
+     * <p>
+     * A dashboard packet keeps its arrays until the dashboard serializes the queued packets on its own thread,
+     * every 100 ms by default, so at a 5-10 ms loop a whole batch of packets points at the arrays handed out over
+     * that interval. A pair is only refilled once it hasn't been handed out for {@link #HOLD_NANOS}, three
+     * transmission intervals; until the next pair is free, {@link #sample(PoseHistory)} keeps handing out the
+     * current one unchanged. The drawn history then updates every {@code HOLD_NANOS / (DEPTH - 1)} (100 ms),
+     * about as often as the dashboard shows it, whatever the loop period.
+     */
+    public static final class DrawBuffers {
+        public static final int DEPTH = 4;
+        // three times the dashboard's default telemetry transmission interval, for a slow serializer thread
+        public static final long HOLD_NANOS = 300_000_000;
+
+        private final double[][] xPoints, yPoints;
+        // System.nanoTime() when each pair was last handed out
+        private final long[] handedOutNanos = new long[DEPTH];
+        private int current;
+        private long filledNanos;
+
+        public DrawBuffers(int points) {
+            xPoints = new double[DEPTH][points];
+            yPoints = new double[DEPTH][points];
+            // no packet holds any of them yet
+            long now = System.nanoTime();
+            Arrays.fill(handedOutNanos, now - HOLD_NANOS);
+            filledNanos = now - HOLD_NANOS;
+        }
+
+        /**
+         * Hands out a pair of arrays, which {@link #getX()} and {@link #getY()} then return: the next pair refilled
+         * from {@code history} if no packet can still hold it, or else the current pair as it is.
+         */
+        public void sample(PoseHistory history) {
+            sample(history, System.nanoTime());
+        }
+
+        void sample(PoseHistory history, long now) {
+            int next = (current + 1) % DEPTH;
+            // refilling no faster than the pairs free up keeps the updates evenly spaced
+            if (now - handedOutNanos[next] >= HOLD_NANOS && now - filledNanos >= HOLD_NANOS / (DEPTH - 1)) {
+                current = next;
+                filledNanos = now;
+                history.samplePositions(xPoints[current], yPoints[current]);
+            }
+            handedOutNanos[current] = now;
+        }
+
+        public double[] getX() {
+            return xPoints[current];
+        }
+
+        public double[] getY() {
+            return yPoints[current];
+        }
+    }
+}
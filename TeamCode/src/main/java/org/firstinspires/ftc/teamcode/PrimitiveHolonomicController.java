@@ -0,0 +1,125 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.roadrunner.DualNum;
+import com.acmerobotics.roadrunner.HolonomicController;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.Pose2dDual;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+import com.acmerobotics.roadrunner.Time;
+
+/**
+ * Allocation-free equivalent of {@link HolonomicController}.
+ * Performs the same operations in the same order on plain doubles,
+ * and leaves the command (in the robot frame) and the pose error in public fields
+ * instead of returning new objects.
+ * Instances are not thread-safe; give each control loop its own.
+ */
+public final class PrimitiveHolonomicController {
+    public final double axialPosGain, lateralPosGain, headingGain;
+    public final double axialVelGain, lateralVelGain, headingVelGain;
+
+    // command velocity and acceleration (robot frame) from the last compute() call
+    public double linearVelX, linearVelY, angVel;
+    public double linearAccelX, linearAccelY, angAccel;
+
+    // error of the target relative to the actual pose from the last compute() call
+    public double errorX, errorY, errorHeading;
+
+    public PrimitiveHolonomicController(
+            double axialPosGain, double lateralPosGain, double headingGain,
+            double axialVelGain, double lateralVelGain, double headingVelGain
+    ) {
+        this.axialPosGain = axialPosGain;
+        this.lateralPosGain = lateralPosGain;
+        this.headingGain = headingGain;
+
+        this.axialVelGain = axialVelGain;
+        this.lateralVelGain = lateralVelGain;
+        this.headingVelGain = headingVelGain;
+    }
+
+    /**
+     * @return whether this controller was built with exactly these gains
+     */
+    public boolean hasGains(
+            double axialPosGain, double lateralPosGain, double headingGain,
+            double axialVelGain, double lateralVelGain, double headingVelGain
+    ) {
+        return this.axialPosGain == axialPosGain && this.lateralPosGain == lateralPosGain
+                && this.headingGain == headingGain && this.axialVelGain == axialVelGain
+                && this.lateralVelGain == lateralVelGain && this.headingVelGain == headingVelGain;
+    }
+
+    /**
+     * Computes the command for a target pose with at least two derivatives.
+     * Mirrors {@link HolonomicController#compute(Pose2dDual, Pose2d, PoseVelocity2d)}.
+     */
+    public void compute(Pose2dDual<Time> targetPose, Pose2d actualPose, PoseVelocity2d actualVelActual) {
+        DualNum<Time> x = targetPose.position.x, y = targetPose.position.y;
+        DualNum<Time> real = targetPose.heading.real, imag = targetPose.heading.imag;
+
+        double tReal = real.get(0), tImag = imag.get(0);
+
+        // target velocity in the world frame (Pose2dDual.velocity())
+        double targetAngVel = tReal * imag.get(1) - tImag * real.get(1);
+        double targetAngAccel = (tReal * imag.get(2) + real.get(1) * imag.get(1))
+                - (tImag * real.get(2) + imag.get(1) * real.get(1));
+
+        compute(x.get(0), y.get(0), tReal, tImag,
+                x.get(1), y.get(1), targetAngVel,
+                x.get(2), y.get(2), targetAngAccel,
+                actualPose, actualVelActual);
+    }
+
+    /**
+     * Computes the command for a target given as plain values in the world frame,
+     * e.g. from a {@link SampledTrajectory}.
+     */
+    public void compute(
+            double targetX, double targetY, double targetHeading,
+            double worldVelX, double worldVelY, double targetAngVel,
+            double worldAccelX, double worldAccelY, double targetAngAccel,
+            Pose2d actualPose, PoseVelocity2d actualVelActual
+    ) {
+        compute(targetX, targetY, Math.cos(targetHeading), Math.sin(targetHeading),
+                worldVelX, worldVelY, targetAngVel,
+                worldAccelX, worldAccelY, targetAngAccel,
+                actualPose, actualVelActual);
+    }
+
+    private void compute(
+            double tx, double ty, double tReal, double tImag,
+            double worldVelX, double worldVelY, double targetAngVel,
+            double worldAccelX, double worldAccelY, double targetAngAccel,
+            Pose2d actualPose, PoseVelocity2d actualVelActual
+    ) {
+        // rotate into the target frame (txTargetWorld * targetVelWorld)
+        double invImag = -tImag;
+        double targetVelX = tReal * worldVelX - invImag * worldVelY;
+        double targetVelY = invImag * worldVelX + tReal * worldVelY;
+        double targetAccelX = tReal * worldAccelX - invImag * worldAccelY;
+        double targetAccelY = invImag * worldAccelX + tReal * worldAccelY;
+
+        double velErrorX = targetVelX - actualVelActual.linearVel.x;
+        double velErrorY = targetVelY - actualVelActual.linearVel.y;
+        double velErrorAng = targetAngVel - actualVelActual.angVel;
+
+        // error = actualPose.inverse() * targetPose
+        double aReal = actualPose.heading.real, aImag = -actualPose.heading.imag;
+        double aX = -actualPose.position.x, aY = -actualPose.position.y;
+        double invX = aReal * aX - aImag * aY;
+        double invY = aImag * aX + aReal * aY;
+
+        errorX = (aReal * tx - aImag * ty) + invX;
+        errorY = (aImag * tx + aReal * ty) + invY;
+        errorHeading = Math.atan2(aReal * tImag + aImag * tReal, aReal * tReal - aImag * tImag);
+
+        linearVelX = (targetVelX + axialPosGain * errorX) + axialVelGain * velErrorX;
+        linearVelY = (targetVelY + lateralPosGain * errorY) + lateralVelGain * velErrorY;
+        angVel = (targetAngVel + headingGain * errorHeading) + headingVelGain * velErrorAng;
+
+        linearAccelX = targetAccelX;
+        linearAccelY = targetAccelY;
+        angAccel = targetAngAccel;
+    }
+}
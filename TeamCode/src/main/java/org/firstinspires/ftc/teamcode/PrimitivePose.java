@@ -0,0 +1,75 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.Rotation2d;
+import com.acmerobotics.roadrunner.Vector2d;
+
+/**
+ * A mutable pose held in plain doubles, for localizers that integrate every tick.
+ * <p>
+ * {@link #plus(double, double, double)} and {@link #rotate(double)} do exactly the arithmetic of
+ * {@code Pose2d.plus(Twist2d)} and {@code Rotation2d.plus(double)}, in the same order, so results match
+ * RoadRunner's to the bit. The heading is kept as a unit complex number like {@link Rotation2d}.
+ * {@link #toPose2d()} only allocates when the pose has changed since the last call.
+ */
+public final class PrimitivePose {
+    // RoadRunner's, so that plus() matches Pose2d.exp()
+    private static final double EPS = 2.2e-15;
+
+    public double x, y;
+    public double headingReal = 1.0, headingImag = 0.0;
+
+    private Pose2d pose;
+
+    public PrimitivePose(Pose2d pose) {
+        set(pose);
+    }
+
+    public void set(Pose2d pose) {
+        x = pose.position.x;
+        y = pose.position.y;
+        headingReal = pose.heading.real;
+        headingImag = pose.heading.imag;
+        this.pose = pose;
+    }
+
+    /**
+     * Applies a robot-frame twist, like {@code pose.plus(new Twist2d(new Vector2d(lineX, lineY), angle))}.
+     */
+    public void plus(double lineX, double lineY, double angle) {
+        // Pose2d.exp
+        double u = angle + (angle >= 0.0 ? EPS : -EPS);
+        double c = 1 - Math.cos(u);
+        double s = Math.sin(u);
+        double tx = (s * lineX - c * lineY) / u;
+        double ty = (c * lineX + s * lineY) / u;
+
+        // Pose2d.times
+        x = (headingReal * tx - headingImag * ty) + x;
+        y = (headingImag * tx + headingReal * ty) + y;
+        rotate(angle);
+    }
+
+    /**
+     * Rotates the heading in place, like {@code new Pose2d(pose.position, pose.heading.plus(angle))}.
+     */
+    public void rotate(double angle) {
+        double rotReal = Math.cos(angle), rotImag = Math.sin(angle);
+        double real = headingReal * rotReal - headingImag * rotImag;
+        headingImag = headingReal * rotImag + headingImag * rotReal;
+        headingReal = real;
+        pose = null;
+    }
+
+    public double heading() {
+        return Math.atan2(headingImag, headingReal);
+    }
+
+    public Pose2d toPose2d() {
+        if (pose == null) {
+            pose = new Pose2d(new Vector2d(x, y), new Rotation2d(headingReal, headingImag));
+        }
+
+        return pose;
+    }
+}
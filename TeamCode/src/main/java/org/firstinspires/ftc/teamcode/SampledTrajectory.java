@@ -0,0 +1,352 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.roadrunner.DualNum;
+import com.acmerobotics.roadrunner.Pose2dDual;
+import com.acmerobotics.roadrunner.Time;
+import com.acmerobotics.roadrunner.TimeTrajectory;
+import com.acmerobotics.roadrunner.TimeTurn;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.function.DoubleFunction;
+
+/**
+ * A trajectory or turn pre-sampled into primitive arrays,
+ * holding everything the follower needs: the target pose and its first two derivatives in the world frame.
+ * <p>
+ * Samples are placed adaptively: each interval of at most {@code maxDt} is halved until linearly interpolating
+ * its endpoints is within tolerance of the exact pose and velocity at its midpoint, so straight, steady sections
+ * need few samples. Acceleration isn't bounded: the profile's acceleration jumps between phases, and an interval
+ * spanning a jump blends the two values, which only affects the small acceleration feedforward term for that interval.
+ * Lookups binary search the sample times and interpolate, in O(log n) without allocating.
+ * Heading is stored unwrapped so that interpolating across +/- pi works.
+ */
+public final class SampledTrajectory {
+    public enum Kind {
+        TRAJECTORY,
+        TURN
+    }
+
+    // intervals are never split below this (in seconds)
+    private static final double MIN_DT = 1e-4;
+
+    // number of values per sample: t, x, y, heading, xVel, yVel, angVel, xAccel, yAccel, angAccel
+    private static final int STRIDE = 10;
+
+    public final Kind kind;
+    public final double duration;
+
+    /**
+     * The largest position error (in inches) and heading error (in radians) measured at the midpoint
+     * of any interval while sampling, i.e. how far interpolation can be expected to stray from the exact target.
+     */
+    public final double maxPositionError, maxHeadingError;
+
+    /**
+     * Same as {@link #maxPositionError} and {@link #maxHeadingError}, for the linear velocity (in inches per second)
+     * and angular velocity (in radians per second).
+     */
+    public final double maxVelocityError, maxAngVelError;
+
+    private final double[] times;
+    private final double[] xs, ys, headings;
+    private final double[] xVels, yVels, angVels;
+    private final double[] xAccels, yAccels, angAccels;
+
+    // output of the last get() call
+    public double x, y, heading;
+    public double xVel, yVel, angVel;
+    public double xAccel, yAccel, angAccel;
+
+    private SampledTrajectory(Kind kind, double duration, int count, double maxPositionError, double maxHeadingError,
+                              double maxVelocityError, double maxAngVelError) {
+        this.kind = kind;
+        this.duration = duration;
+        this.maxPositionError = maxPositionError;
+        this.maxHeadingError = maxHeadingError;
+        this.maxVelocityError = maxVelocityError;
+        this.maxAngVelError = maxAngVelError;
+
+        times = new double[count];
+        xs = new double[count];
+        ys = new double[count];
+        headings = new double[count];
+        xVels = new double[count];
+        yVels = new double[count];
+        angVels = new double[count];
+        xAccels = new double[count];
+        yAccels = new double[count];
+        angAccels = new double[count];
+    }
+
+    /**
+     * @param maxDt             The longest allowed interval between samples (in seconds).
+     * @param positionTolerance The allowed interpolation error in position (in inches).
+     * @param headingTolerance  The allowed interpolation error in heading (in radians).
+     * @param velocityTolerance The allowed interpolation error in linear velocity (in inches per second).
+     * @param angVelTolerance   The allowed interpolation error in angular velocity (in radians per second).
+     */
+    public static SampledTrajectory sample(
+            TimeTrajectory trajectory, double maxDt, double positionTolerance, double headingTolerance,
+            double velocityTolerance, double angVelTolerance
+    ) {
+        return new Sampler(trajectory::get, maxDt, positionTolerance, headingTolerance,
+                velocityTolerance, angVelTolerance)
+                .sample(Kind.TRAJECTORY, trajectory.duration);
+    }
+
+    /**
+     * @see #sample(TimeTrajectory, double, double, double, double, double)
+     */
+    public static SampledTrajectory sample(
+            TimeTurn turn, double maxDt, double positionTolerance, double headingTolerance,
+            double velocityTolerance, double angVelTolerance
+    ) {
+        return new Sampler(turn::get, maxDt, positionTolerance, headingTolerance,
+                velocityTolerance, angVelTolerance)
+                .sample(Kind.TURN, turn.duration);
+    }
+
+    public int size() {
+        return times.length;
+    }
+
+    public double getTime(int i) {
+        return times[i];
+    }
+
+    public double getX(int i) {
+        return xs[i];
+    }
+
+    public double getY(int i) {
+        return ys[i];
+    }
+
+    public double getHeading(int i) {
+        return headings[i];
+    }
+
+    /**
+     * Interpolates the target at time {@code t} (clamped to the trajectory) into the public fields.
+     */
+    public void get(double t) {
+        int last = times.length - 1;
+        int i, j;
+        double f;
+        if (t <= times[0] || last == 0) {
+            i = j = 0;
+            f = 0.0;
+        } else if (t >= times[last]) {
+            i = j = last;
+            f = 0.0;
+        } else {
+            // largest i with times[i] <= t
+            int lo = 0, hi = last;
+            while (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                if (times[mid] <= t) {
+                    lo = mid;
+                } else {
+                    hi = mid;
+                }
+            }
+
+            i = lo;
+            j = hi;
+            f = (t - times[i]) / (times[j] - times[i]);
+        }
+
+        x = lerp(xs, i, j, f);
+        y = lerp(ys, i, j, f);
+        heading = lerp(headings, i, j, f);
+        xVel = lerp(xVels, i, j, f);
+        yVel = lerp(yVels, i, j, f);
+        angVel = lerp(angVels, i, j, f);
+        xAccel = lerp(xAccels, i, j, f);
+        yAccel = lerp(yAccels, i, j, f);
+        angAccel = lerp(angAccels, i, j, f);
+    }
+
+    private static double lerp(double[] values, int i, int j, double f) {
+        return values[i] + f * (values[j] - values[i]);
+    }
+
+    private double[][] columns() {
+        return new double[][]{times, xs, ys, headings, xVels, yVels, angVels, xAccels, yAccels, angAccels};
+    }
+
+    public void write(DataOutputStream out) throws IOException {
+        out.writeByte(kind.ordinal());
+        out.writeDouble(duration);
+        out.writeDouble(maxPositionError);
+        out.writeDouble(maxHeadingError);
+        out.writeDouble(maxVelocityError);
+        out.writeDouble(maxAngVelError);
+        out.writeInt(times.length);
+
+        for (double[] values : columns()) {
+            for (double v : values) {
+                out.writeDouble(v);
+            }
+        }
+    }
+
+    /**
+     * Reads a table written by {@link #write(DataOutputStream)}.
+     * The sample count is checked against {@code in.available()} before anything is allocated,
+     * so {@code in} should know exactly how much is left, e.g. read from a byte array.
+     *
+     * @throws IOException if the table is truncated or corrupt
+     */
+    public static SampledTrajectory read(DataInputStream in) throws IOException {
+        int kind = in.readUnsignedByte();
+        if (kind >= Kind.values().length) {
+            throw new IOException("unknown trajectory kind: " + kind);
+        }
+
+        double duration = in.readDouble();
+        double maxPositionError = in.readDouble();
+        double maxHeadingError = in.readDouble();
+        double maxVelocityError = in.readDouble();
+        double maxAngVelError = in.readDouble();
+        int count = in.readInt();
+        if (count < 1 || count > in.available() / (STRIDE * Double.BYTES) || !(duration >= 0)) {
+            throw new IOException("corrupt trajectory header");
+        }
+
+        SampledTrajectory s = new SampledTrajectory(Kind.values()[kind], duration, count,
+                maxPositionError, maxHeadingError, maxVelocityError, maxAngVelError);
+        for (double[] values : s.columns()) {
+            for (int i = 0; i < count; i++) {
+                values[i] = in.readDouble();
+            }
+        }
+
+        for (int i = 1; i < count; i++) {
+            if (!(s.times[i] > s.times[i - 1])) {
+                throw new IOException("sample times aren't increasing");
+            }
+        }
+
+        return s;
+    }
+
+    /**
+     * Builds a table by recursively splitting intervals, appending samples in time order.
+     */
+    private static final class Sampler {
+        private final DoubleFunction<Pose2dDual<Time>> target;
+        private final double maxDt, positionTolerance, headingTolerance, velocityTolerance, angVelTolerance;
+
+        private double[] samples = new double[64 * STRIDE];
+        private int count;
+        private double maxPositionError, maxHeadingError, maxVelocityError, maxAngVelError;
+
+        Sampler(DoubleFunction<Pose2dDual<Time>> target, double maxDt,
+                double positionTolerance, double headingTolerance, double velocityTolerance, double angVelTolerance) {
+            if (!(maxDt > 0)) {
+                throw new IllegalArgumentException("maxDt must be positive: " + maxDt);
+            }
+
+            this.target = target;
+            this.maxDt = maxDt;
+            this.positionTolerance = positionTolerance;
+            this.headingTolerance = headingTolerance;
+            this.velocityTolerance = velocityTolerance;
+            this.angVelTolerance = angVelTolerance;
+        }
+
+        SampledTrajectory sample(Kind kind, double duration) {
+            double[] a = evaluate(0.0, Double.NaN);
+            append(a);
+
+            int intervals = Math.max(1, (int) Math.ceil(duration / maxDt));
+            for (int k = 1; k <= intervals; k++) {
+                double t = k == intervals ? duration : duration * k / intervals;
+                double[] b = evaluate(t, a[3]);
+                refine(a, b);
+                a = b;
+            }
+
+            SampledTrajectory s = new SampledTrajectory(kind, duration, count,
+                    maxPositionError, maxHeadingError, maxVelocityError, maxAngVelError);
+            double[][] columns = s.columns();
+            for (int i = 0; i < count; i++) {
+                for (int c = 0; c < STRIDE; c++) {
+                    columns[c][i] = samples[i * STRIDE + c];
+                }
+            }
+
+            return s;
+        }
+
+        /**
+         * Appends the samples after {@code a}, up to and including {@code b}.
+         */
+        private void refine(double[] a, double[] b) {
+            if (b[0] <= a[0]) {
+                return;
+            }
+
+            double[] m = evaluate(0.5 * (a[0] + b[0]), a[3]);
+            double positionError = Math.hypot(0.5 * (a[1] + b[1]) - m[1], 0.5 * (a[2] + b[2]) - m[2]);
+            double headingError = Math.abs(0.5 * (a[3] + b[3]) - m[3]);
+            double velocityError = Math.hypot(0.5 * (a[4] + b[4]) - m[4], 0.5 * (a[5] + b[5]) - m[5]);
+            double angVelError = Math.abs(0.5 * (a[6] + b[6]) - m[6]);
+
+            if ((positionError > positionTolerance || headingError > headingTolerance
+                    || velocityError > velocityTolerance || angVelError > angVelTolerance)
+                    && b[0] - a[0] > 2 * MIN_DT) {
+                refine(a, m);
+                refine(m, b);
+            } else {
+                maxPositionError = Math.max(maxPositionError, positionError);
+                maxHeadingError = Math.max(maxHeadingError, headingError);
+                maxVelocityError = Math.max(maxVelocityError, velocityError);
+                maxAngVelError = Math.max(maxAngVelError, angVelError);
+                append(b);
+            }
+        }
+
+        /**
+         * @param previousHeading Unwrap the heading to within pi of this, unless {@code NaN}.
+         */
+        private double[] evaluate(double t, double previousHeading) {
+            Pose2dDual<Time> pose = target.apply(t);
+            DualNum<Time> real = pose.heading.real, imag = pose.heading.imag;
+            double r = real.get(0), im = imag.get(0);
+
+            double heading = Math.atan2(im, r);
+            if (!Double.isNaN(previousHeading)) {
+                heading -= 2 * Math.PI * Math.round((heading - previousHeading) / (2 * Math.PI));
+            }
+
+            return new double[]{
+                    t,
+                    pose.position.x.get(0),
+                    pose.position.y.get(0),
+                    heading,
+                    pose.position.x.get(1),
+                    pose.position.y.get(1),
+                    // same as Pose2dDual.velocity() and its derivative
+                    r * imag.get(1) - im * real.get(1),
+                    pose.position.x.get(2),
+                    pose.position.y.get(2),
+                    (r * imag.get(2) + real.get(1) * imag.get(1)) - (im * real.get(2) + imag.get(1) * real.get(1))
+            };
+        }
+
+        private void append(double[] sample) {
+            if ((count + 1) * STRIDE > samples.length) {
+                double[] grown = new double[samples.length * 2];
+                System.arraycopy(samples, 0, grown, 0, count * STRIDE);
+                samples = grown;
+            }
+
+            System.arraycopy(sample, 0, samples, count * STRIDE, STRIDE);
+            count++;
+        }
+    }
+}
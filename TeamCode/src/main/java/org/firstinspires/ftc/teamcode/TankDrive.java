@@ -31,7 +31,6 @@ import com.acmerobotics.roadrunner.Twist2dDual;
 import com.acmerobotics.roadrunner.Vector2d;
 import com.acmerobotics.roadrunner.Vector2dDual;
 import com.acmerobotics.roadrunner.VelConstraint;
-import com.acmerobotics.roadrunner.ftc.DownsampledWriter;
 import com.acmerobotics.roadrunner.ftc.Encoder;
 import com.acmerobotics.roadrunner.ftc.FlightRecorder;
 import com.acmerobotics.roadrunner.ftc.LazyImu;
@@ -39,7 +38,6 @@ import com.acmerobotics.roadrunner.ftc.LynxFirmware;
 import com.acmerobotics.roadrunner.ftc.OverflowEncoder;
 import com.acmerobotics.roadrunner.ftc.PositionVelocityPair;
 import com.acmerobotics.roadrunner.ftc.RawEncoder;
-import com.qualcomm.hardware.lynx.LynxModule;
 import com.qualcomm.hardware.rev.RevHubOrientationOnRobot;
 import com.qualcomm.robotcore.hardware.DcMotor;
 import com.qualcomm.robotcore.hardware.DcMotorSimple;
@@ -47,7 +45,10 @@ import com.qualcomm.robotcore.hardware.DcMotorEx;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 import com.qualcomm.robotcore.hardware.VoltageSensor;
 
+import org.firstinspires.ftc.teamcode.hardwareSystems.MotorOutputLayer;
 import org.firstinspires.ftc.teamcode.messages.DriveCommandMessage;
+import org.firstinspires.ftc.teamcode.messages.LogRatePolicy;
+import org.firstinspires.ftc.teamcode.messages.PooledWriter;
 import org.firstinspires.ftc.teamcode.messages.PoseMessage;
 import org.firstinspires.ftc.teamcode.messages.TankCommandMessage;
 import org.firstinspires.ftc.teamcode.messages.TankLocalizerInputsMessage;
@@ -55,7 +56,6 @@ import org.firstinspires.ftc.teamcode.messages.TankLocalizerInputsMessage;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 
 @Config
@@ -94,6 +94,16 @@ public final class TankDrive {
         // turn controller gains
         public double turnGain = 0.0;
         public double turnVelGain = 0.0;
+
+        // pose history (in poses, drawn while following)
+        public int poseHistoryCapacity = 100;
+        public int poseHistoryDrawPoints = 100;
+
+        // motor power changes at or below this are not sent to the hub
+        public double motorPowerEpsilon = 1e-3;
+
+        // localize with a SparkFun OTOS (see OtosLocalizer) instead of the wheels
+        public boolean otosLocalizer = false;
     }
 
     public static Params PARAMS = new Params();
@@ -112,18 +122,32 @@ public final class TankDrive {
 
     public final List<DcMotorEx> leftMotors, rightMotors;
 
+    public final MotorOutputLayer motorOutputs;
+    private final List<MotorOutputLayer.MotorOutput> leftOutputs, rightOutputs;
+
     public final LazyImu lazyImu;
 
+    public final LoopClock loopClock;
+
     public final VoltageSensor voltageSensor;
+    public final VoltageMonitor voltageMonitor;
 
-    public final Localizer localizer;
-    private final LinkedList<Pose2d> poseHistory = new LinkedList<>();
+    // may be replaced with a wrapping localizer, e.g. FusionLocalizer, before following anything
+    public Localizer localizer;
+    private final PoseHistory poseHistory = new PoseHistory(PARAMS.poseHistoryCapacity);
+    private final PoseHistory.DrawBuffers poseHistoryPoints = new PoseHistory.DrawBuffers(PARAMS.poseHistoryDrawPoints);
 
-    private final DownsampledWriter estimatedPoseWriter = new DownsampledWriter("ESTIMATED_POSE", 50_000_000);
-    private final DownsampledWriter targetPoseWriter = new DownsampledWriter("TARGET_POSE", 50_000_000);
-    private final DownsampledWriter driveCommandWriter = new DownsampledWriter("DRIVE_COMMAND", 50_000_000);
+    private final PooledWriter<PoseMessage> estimatedPoseWriter =
+            new PooledWriter<>("ESTIMATED_POSE", 50_000_000, PoseMessage::new);
+    private final PooledWriter<PoseMessage> targetPoseWriter =
+            new PooledWriter<>("TARGET_POSE", 50_000_000, PooledWriter.Priority.CRITICAL,
+                    PoseMessage::new);
+    private final PooledWriter<DriveCommandMessage> driveCommandWriter =
+            new PooledWriter<>("DRIVE_COMMAND", 50_000_000, DriveCommandMessage::new);
 
-    private final DownsampledWriter tankCommandWriter = new DownsampledWriter("TANK_COMMAND", 50_000_000);
+    private final PooledWriter<TankCommandMessage> tankCommandWriter =
+            new PooledWriter<>("TANK_COMMAND", 50_000_000, PooledWriter.Priority.LOW,
+                    TankCommandMessage::new);
 
     public class DriveLocalizer implements Localizer {
         public final List<Encoder> leftEncs, rightEncs;
@@ -132,6 +156,8 @@ public final class TankDrive {
         private double lastLeftPos, lastRightPos;
         private boolean initialized;
 
+        private final PooledWriter<TankLocalizerInputsMessage> inputsWriter;
+
         public DriveLocalizer(Pose2d pose) {
             {
                 List<Encoder> leftEncs = new ArrayList<>();
@@ -154,6 +180,9 @@ public final class TankDrive {
             // TODO: reverse encoder directions if needed
             //   leftEncs.get(0).setDirection(DcMotorSimple.Direction.REVERSE);
 
+            inputsWriter = new PooledWriter<>("TANK_LOCALIZER_INPUTS", 0,
+                    () -> new TankLocalizerInputsMessage(leftEncs.size(), rightEncs.size()));
+
             this.pose = pose;
         }
 
@@ -171,6 +200,7 @@ public final class TankDrive {
         public PoseVelocity2d update() {
             Twist2dDual<Time> delta;
 
+            long t = LoopProfiler.start();
             List<PositionVelocityPair> leftReadings = new ArrayList<>(), rightReadings = new ArrayList<>();
             double meanLeftPos = 0.0, meanLeftVel = 0.0;
             for (Encoder e : leftEncs) {
@@ -191,9 +221,13 @@ public final class TankDrive {
             }
             meanRightPos /= rightEncs.size();
             meanRightVel /= rightEncs.size();
+            t = LoopProfiler.lap(LoopProfiler.Stage.ENCODERS, t);
 
-            FlightRecorder.write("TANK_LOCALIZER_INPUTS",
-                     new TankLocalizerInputsMessage(leftReadings, rightReadings));
+            TankLocalizerInputsMessage inputs = inputsWriter.acquire();
+            if (inputs != null) {
+                inputsWriter.write(inputs.fill(System.nanoTime(), leftReadings, rightReadings));
+            }
+            LoopProfiler.record(LoopProfiler.Stage.LOGGING, t);
 
             if (!initialized) {
                 initialized = true;
@@ -228,9 +262,7 @@ public final class TankDrive {
     public TankDrive(HardwareMap hardwareMap, Pose2d pose) {
         LynxFirmware.throwIfModulesAreOutdated(hardwareMap);
 
-        for (LynxModule module : hardwareMap.getAll(LynxModule.class)) {
-            module.setBulkCachingMode(LynxModule.BulkCachingMode.AUTO);
-        }
+        loopClock = LoopClock.get(hardwareMap);
 
         // TODO: make sure your config has motors with these names (or change them)
         //   add additional motors on each side if you have them
@@ -245,6 +277,23 @@ public final class TankDrive {
             m.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
         }
 
+        motorOutputs = new MotorOutputLayer(PARAMS.motorPowerEpsilon);
+        {
+            List<MotorOutputLayer.MotorOutput> leftOutputs = new ArrayList<>();
+            for (DcMotorEx m : leftMotors) {
+                leftOutputs.add(motorOutputs.add(m));
+            }
+            this.leftOutputs = Collections.unmodifiableList(leftOutputs);
+        }
+
+        {
+            List<MotorOutputLayer.MotorOutput> rightOutputs = new ArrayList<>();
+            for (DcMotorEx m : rightMotors) {
+                rightOutputs.add(motorOutputs.add(m));
+            }
+            this.rightOutputs = Collections.unmodifiableList(rightOutputs);
+        }
+
         // TODO: reverse motor directions if needed
         //   leftMotors.get(0).setDirection(DcMotorSimple.Direction.REVERSE);
 
@@ -254,8 +303,13 @@ public final class TankDrive {
                 PARAMS.logoFacingDirection, PARAMS.usbFacingDirection));
 
         voltageSensor = hardwareMap.voltageSensor.iterator().next();
+        voltageMonitor = new VoltageMonitor(voltageSensor);
 
-        localizer = new DriveLocalizer(pose);
+        if (PARAMS.otosLocalizer) {
+            localizer = new OtosLocalizer(hardwareMap, pose);
+        } else {
+            localizer = new DriveLocalizer(pose);
+        }
 
         FlightRecorder.write("TANK_PARAMS", PARAMS);
     }
@@ -269,12 +323,22 @@ public final class TankDrive {
             maxPowerMag = Math.max(maxPowerMag, power.value());
         }
 
-        for (DcMotorEx m : leftMotors) {
-            m.setPower(wheelVels.left.get(0) / maxPowerMag);
+        setMotorPowers(wheelVels.left.get(0) / maxPowerMag, wheelVels.right.get(0) / maxPowerMag);
+    }
+
+    /**
+     * Sets the powers of each side and sends whichever of them changed to the hubs.
+     */
+    private void setMotorPowers(double leftPower, double rightPower) {
+        for (int i = 0; i < leftOutputs.size(); i++) {
+            leftOutputs.get(i).setPower(leftPower);
         }
-        for (DcMotorEx m : rightMotors) {
-            m.setPower(wheelVels.right.get(0) / maxPowerMag);
+        for (int i = 0; i < rightOutputs.size(); i++) {
+            rightOutputs.get(i).setPower(rightPower);
         }
+
+        motorOutputs.setPowerEpsilon(PARAMS.motorPowerEpsilon);
+        motorOutputs.flush();
     }
 
     public final class FollowTrajectoryAction implements Action {
@@ -309,12 +373,7 @@ public final class TankDrive {
             }
 
             if (t >= timeTrajectory.duration) {
-                for (DcMotorEx m : leftMotors) {
-                    m.setPower(0);
-                }
-                for (DcMotorEx m : rightMotors) {
-                    m.setPower(0);
-                }
+                setMotorPowers(0, 0);
 
                 return false;
             }
@@ -322,28 +381,40 @@ public final class TankDrive {
             DualNum<Time> x = timeTrajectory.profile.get(t);
 
             Pose2dDual<Arclength> txWorldTarget = timeTrajectory.path.get(x.value(), 3);
-            targetPoseWriter.write(new PoseMessage(txWorldTarget.value()));
+            long stageStart = LoopProfiler.start();
+            PoseMessage targetPose = targetPoseWriter.acquire();
+            if (targetPose != null) {
+                targetPoseWriter.write(targetPose.fill(System.nanoTime(), txWorldTarget.value()));
+            }
+            LoopProfiler.record(LoopProfiler.Stage.LOGGING, stageStart);
 
             updatePoseEstimate();
 
+            stageStart = LoopProfiler.start();
             PoseVelocity2dDual<Time> command = new RamseteController(kinematics.trackWidth, PARAMS.ramseteZeta, PARAMS.ramseteBBar)
                     .compute(x, txWorldTarget, localizer.getPose());
-            driveCommandWriter.write(new DriveCommandMessage(command));
+            stageStart = LoopProfiler.lap(LoopProfiler.Stage.CONTROLLER, stageStart);
+            DriveCommandMessage driveCommand = driveCommandWriter.acquire();
+            if (driveCommand != null) {
+                driveCommandWriter.write(driveCommand.fill(System.nanoTime(), command));
+            }
+            stageStart = LoopProfiler.lap(LoopProfiler.Stage.LOGGING, stageStart);
 
             TankKinematics.WheelVelocities<Time> wheelVels = kinematics.inverse(command);
-            double voltage = voltageSensor.getVoltage();
+            double voltage = voltageMonitor.getVoltage();
             final MotorFeedforward feedforward = new MotorFeedforward(PARAMS.kS,
                     PARAMS.kV / PARAMS.inPerTick, PARAMS.kA / PARAMS.inPerTick);
             double leftPower = feedforward.compute(wheelVels.left) / voltage;
             double rightPower = feedforward.compute(wheelVels.right) / voltage;
-            tankCommandWriter.write(new TankCommandMessage(voltage, leftPower, rightPower));
-
-            for (DcMotorEx m : leftMotors) {
-                m.setPower(leftPower);
-            }
-            for (DcMotorEx m : rightMotors) {
-                m.setPower(rightPower);
+            stageStart = LoopProfiler.lap(LoopProfiler.Stage.CONTROLLER, stageStart);
+            TankCommandMessage tankCommand = tankCommandWriter.acquire();
+            if (tankCommand != null) {
+                tankCommandWriter.write(tankCommand.fill(System.nanoTime(), voltage, leftPower, rightPower));
             }
+            stageStart = LoopProfiler.lap(LoopProfiler.Stage.LOGGING, stageStart);
+
+            setMotorPowers(leftPower, rightPower);
+            LoopProfiler.record(LoopProfiler.Stage.MOTORS, stageStart);
 
             p.put("x", localizer.getPose().position.x);
             p.put("y", localizer.getPose().position.y);
@@ -355,6 +426,7 @@ public final class TankDrive {
             p.put("headingError (deg)", Math.toDegrees(error.heading.toDouble()));
 
             // only draw when active; only one drive action should be active at a time
+            long drawStart = LoopProfiler.start();
             Canvas c = p.fieldOverlay();
             drawPoseHistory(c);
 
@@ -368,6 +440,9 @@ public final class TankDrive {
             c.setStrokeWidth(1);
             c.strokePolyline(xPoints, yPoints);
 
+            LoopProfiler.record(LoopProfiler.Stage.DRAWING, drawStart);
+            LoopProfiler.publish(p);
+
             return true;
         }
 
@@ -399,21 +474,22 @@ public final class TankDrive {
             }
 
             if (t >= turn.duration) {
-                for (DcMotorEx m : leftMotors) {
-                    m.setPower(0);
-                }
-                for (DcMotorEx m : rightMotors) {
-                    m.setPower(0);
-                }
+                setMotorPowers(0, 0);
 
                 return false;
             }
 
             Pose2dDual<Time> txWorldTarget = turn.get(t);
-            targetPoseWriter.write(new PoseMessage(txWorldTarget.value()));
+            long stageStart = LoopProfiler.start();
+            PoseMessage targetPose = targetPoseWriter.acquire();
+            if (targetPose != null) {
+                targetPoseWriter.write(targetPose.fill(System.nanoTime(), txWorldTarget.value()));
+            }
+            LoopProfiler.record(LoopProfiler.Stage.LOGGING, stageStart);
 
             PoseVelocity2d robotVelRobot = updatePoseEstimate();
 
+            stageStart = LoopProfiler.start();
             PoseVelocity2dDual<Time> command = new PoseVelocity2dDual<>(
                     Vector2dDual.constant(new Vector2d(0, 0), 3),
                     txWorldTarget.heading.velocity().plus(
@@ -421,23 +497,30 @@ public final class TankDrive {
                             PARAMS.turnVelGain * (robotVelRobot.angVel - txWorldTarget.heading.velocity().value())
                     )
             );
-            driveCommandWriter.write(new DriveCommandMessage(command));
+            stageStart = LoopProfiler.lap(LoopProfiler.Stage.CONTROLLER, stageStart);
+            DriveCommandMessage driveCommand = driveCommandWriter.acquire();
+            if (driveCommand != null) {
+                driveCommandWriter.write(driveCommand.fill(System.nanoTime(), command));
+            }
+            stageStart = LoopProfiler.lap(LoopProfiler.Stage.LOGGING, stageStart);
 
             TankKinematics.WheelVelocities<Time> wheelVels = kinematics.inverse(command);
-            double voltage = voltageSensor.getVoltage();
+            double voltage = voltageMonitor.getVoltage();
             final MotorFeedforward feedforward = new MotorFeedforward(PARAMS.kS,
                     PARAMS.kV / PARAMS.inPerTick, PARAMS.kA / PARAMS.inPerTick);
             double leftPower = feedforward.compute(wheelVels.left) / voltage;
             double rightPower = feedforward.compute(wheelVels.right) / voltage;
-            tankCommandWriter.write(new TankCommandMessage(voltage, leftPower, rightPower));
-
-            for (DcMotorEx m : leftMotors) {
-                m.setPower(leftPower);
-            }
-            for (DcMotorEx m : rightMotors) {
-                m.setPower(rightPower);
+            stageStart = LoopProfiler.lap(LoopProfiler.Stage.CONTROLLER, stageStart);
+            TankCommandMessage tankCommand = tankCommandWriter.acquire();
+            if (tankCommand != null) {
+                tankCommandWriter.write(tankCommand.fill(System.nanoTime(), voltage, leftPower, rightPower));
             }
+            stageStart = LoopProfiler.lap(LoopProfiler.Stage.LOGGING, stageStart);
+
+            setMotorPowers(leftPower, rightPower);
+            LoopProfiler.record(LoopProfiler.Stage.MOTORS, stageStart);
 
+            long drawStart = LoopProfiler.start();
             Canvas c = p.fieldOverlay();
             drawPoseHistory(c);
 
@@ -450,6 +533,9 @@ public final class TankDrive {
             c.setStroke("#7C4DFFFF");
             c.fillCircle(turn.beginPose.position.x, turn.beginPose.position.y, 2);
 
+            LoopProfiler.record(LoopProfiler.Stage.DRAWING, drawStart);
+            LoopProfiler.publish(p);
+
             return true;
         }
 
@@ -461,34 +547,31 @@ public final class TankDrive {
     }
 
     public PoseVelocity2d updatePoseEstimate() {
+        LogRatePolicy.update(loopClock.getLastPeriodNanos());
+
         PoseVelocity2d vel = localizer.update();
-        poseHistory.add(localizer.getPose());
+        poseHistory.add(System.nanoTime(), localizer.getPose());
 
-        while (poseHistory.size() > 100) {
-            poseHistory.removeFirst();
+        long t = LoopProfiler.start();
+        PoseMessage m = estimatedPoseWriter.acquire();
+        if (m != null) {
+            estimatedPoseWriter.write(m.fill(System.nanoTime(), localizer.getPose()));
         }
-
-        estimatedPoseWriter.write(new PoseMessage(localizer.getPose()));
-
+        LoopProfiler.record(LoopProfiler.Stage.LOGGING, t);
 
         return vel;
     }
 
     private void drawPoseHistory(Canvas c) {
-        double[] xPoints = new double[poseHistory.size()];
-        double[] yPoints = new double[poseHistory.size()];
-
-        int i = 0;
-        for (Pose2d t : poseHistory) {
-            xPoints[i] = t.position.x;
-            yPoints[i] = t.position.y;
-
-            i++;
+        if (poseHistory.isEmpty()) {
+            return;
         }
 
+        poseHistoryPoints.sample(poseHistory);
+
         c.setStrokeWidth(1);
         c.setStroke("#3F51B5");
-        c.strokePolyline(xPoints, yPoints);
+        c.strokePolyline(poseHistoryPoints.getX(), poseHistoryPoints.getY());
     }
 
     public TrajectoryActionBuilder actionBuilder(Pose2d beginPose) {
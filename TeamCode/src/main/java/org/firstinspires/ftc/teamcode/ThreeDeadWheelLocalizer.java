@@ -1,13 +1,9 @@
 package org.firstinspires.ftc.teamcode;
 
 import com.acmerobotics.dashboard.config.Config;
-import com.acmerobotics.roadrunner.DualNum;
 import com.acmerobotics.roadrunner.Pose2d;
 import com.acmerobotics.roadrunner.PoseVelocity2d;
-import com.acmerobotics.roadrunner.Time;
-import com.acmerobotics.roadrunner.Twist2dDual;
 import com.acmerobotics.roadrunner.Vector2d;
-import com.acmerobotics.roadrunner.Vector2dDual;
 import com.acmerobotics.roadrunner.ftc.Encoder;
 import com.acmerobotics.roadrunner.ftc.FlightRecorder;
 import com.acmerobotics.roadrunner.ftc.OverflowEncoder;
@@ -16,6 +12,7 @@ import com.acmerobotics.roadrunner.ftc.RawEncoder;
 import com.qualcomm.robotcore.hardware.DcMotorEx;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 
+import org.firstinspires.ftc.teamcode.messages.PooledWriter;
 import org.firstinspires.ftc.teamcode.messages.ThreeDeadWheelInputsMessage;
 
 @Config
@@ -34,43 +31,62 @@ public final class ThreeDeadWheelLocalizer implements Localizer {
 
     private int lastPar0Pos, lastPar1Pos, lastPerpPos;
     private boolean initialized;
-    private Pose2d pose;
+    private final PrimitivePose pose;
+
+    private final PooledWriter<ThreeDeadWheelInputsMessage> inputsWriter =
+            new PooledWriter<>("THREE_DEAD_WHEEL_INPUTS", 0, ThreeDeadWheelInputsMessage::new);
 
     public ThreeDeadWheelLocalizer(HardwareMap hardwareMap, double inPerTick, Pose2d pose) {
         // TODO: make sure your config has **motors** with these names (or change them)
         //   the encoders should be plugged into the slot matching the named motor
         //   see https://ftc-docs.firstinspires.org/en/latest/hardware_and_software_configuration/configuring/index.html
-        par0 = new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "par0")));
-        par1 = new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "par1")));
-        perp = new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "perp")));
+        this(new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "par0"))),
+                new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "par1"))),
+                new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "perp"))),
+                inPerTick, pose);
 
         // TODO: reverse encoder directions if needed
         //   par0.setDirection(DcMotorSimple.Direction.REVERSE);
+    }
+
+    /**
+     * Takes its encoders directly, so it can also run on recorded inputs.
+     */
+    public ThreeDeadWheelLocalizer(Encoder par0, Encoder par1, Encoder perp, double inPerTick, Pose2d pose) {
+        this.par0 = par0;
+        this.par1 = par1;
+        this.perp = perp;
 
         this.inPerTick = inPerTick;
 
         FlightRecorder.write("THREE_DEAD_WHEEL_PARAMS", PARAMS);
 
-        this.pose = pose;
+        this.pose = new PrimitivePose(pose);
     }
 
     @Override
     public void setPose(Pose2d pose) {
-        this.pose = pose;
+        this.pose.set(pose);
     }
 
     @Override
     public Pose2d getPose() {
-        return pose;
+        return pose.toPose2d();
     }
 
     @Override
     public PoseVelocity2d update() {
+        long t = LoopProfiler.start();
         PositionVelocityPair par0PosVel = par0.getPositionAndVelocity();
         PositionVelocityPair par1PosVel = par1.getPositionAndVelocity();
         PositionVelocityPair perpPosVel = perp.getPositionAndVelocity();
+        t = LoopProfiler.lap(LoopProfiler.Stage.ENCODERS, t);
 
-        FlightRecorder.write("THREE_DEAD_WHEEL_INPUTS", new ThreeDeadWheelInputsMessage(par0PosVel, par1PosVel, perpPosVel));
+        ThreeDeadWheelInputsMessage inputs = inputsWriter.acquire();
+        if (inputs != null) {
+            inputsWriter.write(inputs.fill(System.nanoTime(), par0PosVel, par1PosVel, perpPosVel));
+        }
+        LoopProfiler.record(LoopProfiler.Stage.LOGGING, t);
 
         if (!initialized) {
             initialized = true;
@@ -86,28 +102,20 @@ public final class ThreeDeadWheelLocalizer implements Localizer {
         int par1PosDelta = par1PosVel.position - lastPar1Pos;
         int perpPosDelta = perpPosVel.position - lastPerpPos;
 
-        Twist2dDual<Time> twist = new Twist2dDual<>(
-                new Vector2dDual<>(
-                        new DualNum<Time>(new double[] {
-                                (PARAMS.par0YTicks * par1PosDelta - PARAMS.par1YTicks * par0PosDelta) / (PARAMS.par0YTicks - PARAMS.par1YTicks),
-                                (PARAMS.par0YTicks * par1PosVel.velocity - PARAMS.par1YTicks * par0PosVel.velocity) / (PARAMS.par0YTicks - PARAMS.par1YTicks),
-                        }).times(inPerTick),
-                        new DualNum<Time>(new double[] {
-                                (PARAMS.perpXTicks / (PARAMS.par0YTicks - PARAMS.par1YTicks) * (par1PosDelta - par0PosDelta) + perpPosDelta),
-                                (PARAMS.perpXTicks / (PARAMS.par0YTicks - PARAMS.par1YTicks) * (par1PosVel.velocity - par0PosVel.velocity) + perpPosVel.velocity),
-                        }).times(inPerTick)
-                ),
-                new DualNum<>(new double[] {
-                        (par0PosDelta - par1PosDelta) / (PARAMS.par0YTicks - PARAMS.par1YTicks),
-                        (par0PosVel.velocity - par1PosVel.velocity) / (PARAMS.par0YTicks - PARAMS.par1YTicks),
-                })
-        );
+        // Twist2dDual arithmetic on plain doubles, in the same order, so nothing is allocated
+        double parYTicksDiff = PARAMS.par0YTicks - PARAMS.par1YTicks;
+        double lineX = (PARAMS.par0YTicks * par1PosDelta - PARAMS.par1YTicks * par0PosDelta) / parYTicksDiff * inPerTick;
+        double lineXVel = (PARAMS.par0YTicks * par1PosVel.velocity - PARAMS.par1YTicks * par0PosVel.velocity) / parYTicksDiff * inPerTick;
+        double lineY = (PARAMS.perpXTicks / parYTicksDiff * (par1PosDelta - par0PosDelta) + perpPosDelta) * inPerTick;
+        double lineYVel = (PARAMS.perpXTicks / parYTicksDiff * (par1PosVel.velocity - par0PosVel.velocity) + perpPosVel.velocity) * inPerTick;
+        double angle = (par0PosDelta - par1PosDelta) / parYTicksDiff;
+        double angVel = (par0PosVel.velocity - par1PosVel.velocity) / parYTicksDiff;
 
         lastPar0Pos = par0PosVel.position;
         lastPar1Pos = par1PosVel.position;
         lastPerpPos = perpPosVel.position;
 
-        pose = pose.plus(twist.value());
-        return twist.velocity().value();
+        pose.plus(lineX, lineY, angle);
+        return new PoseVelocity2d(new Vector2d(lineXVel, lineYVel), angVel);
     }
 }
@@ -0,0 +1,439 @@
+package org.firstinspires.ftc.teamcode;
+
+import android.os.Environment;
+
+import androidx.annotation.NonNull;
+
+import com.acmerobotics.dashboard.telemetry.TelemetryPacket;
+import com.acmerobotics.roadrunner.Action;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.SequentialAction;
+import com.acmerobotics.roadrunner.SleepAction;
+import com.acmerobotics.roadrunner.TrajectoryActionBuilder;
+import com.acmerobotics.roadrunner.Vector2d;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles autonomous paths into {@link SampledTrajectory} tables once and stores them on the robot,
+ * so later op mode inits load a file instead of regenerating every path and profile.
+ * <p>
+ * A path's steps are given as {@link Steps}, which records every call and its arguments.
+ * A compiled path is keyed by a hash of its name, the begin pose, those recorded steps and the fields of
+ * {@link MecanumDrive#PARAMS} that shape the path and profile (the drive model, the velocity and acceleration
+ * limits, and the sampling tolerances), so editing the steps or retuning those recompiles it automatically;
+ * retuning gains doesn't. Saving a recompiled path deletes the copies saved under its old keys.
+ * Loaded tables are also checked to start at the begin pose and to be continuous, as a guard against corrupt files.
+ * <p>
+ * Only trajectories, turns and waits can be compiled.
+ * Run markers and other actions alongside the loaded action instead.
+ */
+public final class TrajectoryCache {
+    /**
+     * The directory that compiled trajectories are saved to.
+     */
+    private static final String DIRECTORY =
+            Environment.getExternalStorageDirectory().getAbsolutePath() + "/FTC/trajectories/";
+
+    /**
+     * Bump when the file format or the way paths are built changes.
+     */
+    private static final int FORMAT_VERSION = 3;
+
+    /**
+     * Files larger than this are taken to be corrupt rather than read into memory.
+     */
+    private static final long MAX_FILE_BYTES = 16 * 1024 * 1024;
+
+    private static final String TAG = "TrajectoryCache";
+
+    private static final int SEGMENT_WAIT = 0;
+    private static final int SEGMENT_SAMPLED = 1;
+
+    /**
+     * How far apart (in inches and radians) the begin pose and a loaded table, or two consecutive tables, may be.
+     */
+    private static final double CONTINUITY_TOLERANCE = 1e-3;
+
+    private TrajectoryCache() {}
+
+    /**
+     * Loads a compiled path, compiling and saving it first if there is no up-to-date copy on the robot.
+     *
+     * @param drive     The drive that will follow the path.
+     * @param name      A unique name for the path.
+     * @param beginPose The pose the path starts at.
+     * @param steps     The path's steps, e.g. {@code new Steps().splineTo(...).turn(...)}.
+     * @return An action that follows the compiled path.
+     */
+    public static Action load(MecanumDrive drive, String name, Pose2d beginPose, Steps steps) {
+        if (steps.isEmpty()) {
+            throw new IllegalArgumentException("path " + name + " has no steps");
+        }
+
+        File file = new File(DIRECTORY, name + "-" + key(name, beginPose, steps) + ".bin");
+
+        List<Action> actions = null;
+        if (file.isFile()) {
+            try {
+                actions = read(drive, file, beginPose);
+            } catch (IOException | RuntimeException e) {
+                RobotLog.ww(TAG, e, "couldn't read %s, recompiling", file);
+            }
+        }
+
+        if (actions == null) {
+            List<Object> segments = compile(drive, beginPose, steps);
+            try {
+                write(file, segments);
+                deleteStale(name, file);
+            } catch (IOException e) {
+                // still usable this time, it just won't be cached
+                RobotLog.ww(TAG, e, "couldn't save %s", file);
+            }
+
+            actions = toActions(drive, segments);
+        }
+
+        return new SequentialAction(actions);
+    }
+
+    /**
+     * Deletes every compiled path stored on the robot.
+     */
+    public static void clear() {
+        File[] files = new File(DIRECTORY).listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.getName().endsWith(".bin")) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Deletes the copies of a path saved under keys other than the current one.
+     */
+    private static void deleteStale(String name, File current) {
+        File[] files = current.getParentFile().listFiles();
+        if (files == null) {
+            return;
+        }
+
+        Pattern pattern = Pattern.compile(Pattern.quote(name) + "-[0-9a-f]{16}\\.bin");
+        for (File file : files) {
+            if (!file.equals(current) && pattern.matcher(file.getName()).matches()) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Runs the builder with factories that capture each trajectory and turn instead of making follower actions.
+     *
+     * @return The segments in order: a {@link SampledTrajectory} or a {@code Double} wait (in seconds).
+     */
+    private static List<Object> compile(MecanumDrive drive, Pose2d beginPose, Steps steps) {
+        Action built = steps.applyTo(drive.actionBuilder(
+                beginPose,
+                turn -> new CapturedSegment(drive.sample(turn)),
+                trajectory -> new CapturedSegment(drive.sample(trajectory))
+        )).build();
+
+        List<Object> segments = new ArrayList<>();
+        flatten(built, segments);
+        return segments;
+    }
+
+    private static void flatten(Action action, List<Object> segments) {
+        if (action instanceof SequentialAction) {
+            for (Action a : ((SequentialAction) action).getInitialActions()) {
+                flatten(a, segments);
+            }
+        } else if (action instanceof CapturedSegment) {
+            segments.add(((CapturedSegment) action).trajectory);
+        } else if (action instanceof SleepAction) {
+            segments.add(((SleepAction) action).getDt());
+        } else {
+            throw new IllegalArgumentException(
+                    "can't compile " + action.getClass().getSimpleName() + "; only trajectories, turns and waits are supported");
+        }
+    }
+
+    private static List<Action> toActions(MecanumDrive drive, List<Object> segments) {
+        List<Action> actions = new ArrayList<>(segments.size());
+        for (Object segment : segments) {
+            if (segment instanceof SampledTrajectory) {
+                actions.add(drive.new FollowSampledTrajectoryAction((SampledTrajectory) segment));
+            } else {
+                actions.add(new SleepAction((Double) segment));
+            }
+        }
+
+        return actions;
+    }
+
+    private static void write(File file, List<Object> segments) throws IOException {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("couldn't create " + directory);
+        }
+
+        // write to a temporary file first so an interrupted write never leaves a truncated cache
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(segments.size());
+            for (Object segment : segments) {
+                if (segment instanceof SampledTrajectory) {
+                    out.writeByte(SEGMENT_SAMPLED);
+                    ((SampledTrajectory) segment).write(out);
+                } else {
+                    out.writeByte(SEGMENT_WAIT);
+                    out.writeDouble((Double) segment);
+                }
+            }
+        }
+
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("couldn't rename " + tmp + " to " + file);
+        }
+    }
+
+    private static List<Action> read(MecanumDrive drive, File file, Pose2d beginPose) throws IOException {
+        long length = file.length();
+        if (length > MAX_FILE_BYTES) {
+            throw new IOException("file too large: " + length + " bytes");
+        }
+
+        byte[] bytes = new byte[(int) length];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(bytes);
+        }
+
+        // counts are checked against available(), which is exact for a byte array
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("unsupported format version");
+        }
+
+        int count = in.readInt();
+        // every segment takes at least a type byte and a double
+        if (count < 0 || count > in.available() / (1 + Double.BYTES)) {
+            throw new IOException("corrupt segment count: " + count);
+        }
+
+        List<Object> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int type = in.readUnsignedByte();
+            if (type == SEGMENT_SAMPLED) {
+                segments.add(SampledTrajectory.read(in));
+            } else if (type == SEGMENT_WAIT) {
+                segments.add(in.readDouble());
+            } else {
+                throw new IOException("unknown segment type: " + type);
+            }
+        }
+
+        if (in.available() != 0) {
+            throw new IOException(in.available() + " trailing bytes");
+        }
+
+        checkContinuity(segments, beginPose);
+
+        return toActions(drive, segments);
+    }
+
+    /**
+     * Checks that the first table starts at {@code beginPose} and that each table starts where the previous one ended.
+     */
+    private static void checkContinuity(List<Object> segments, Pose2d beginPose) throws IOException {
+        double x = beginPose.position.x, y = beginPose.position.y, heading = beginPose.heading.toDouble();
+        for (Object segment : segments) {
+            if (!(segment instanceof SampledTrajectory)) {
+                continue;
+            }
+
+            SampledTrajectory s = (SampledTrajectory) segment;
+            double headingError = s.getHeading(0) - heading;
+            headingError -= 2 * Math.PI * Math.round(headingError / (2 * Math.PI));
+            if (Math.hypot(s.getX(0) - x, s.getY(0) - y) > CONTINUITY_TOLERANCE
+                    || Math.abs(headingError) > CONTINUITY_TOLERANCE) {
+                throw new IOException(String.format("table starts at (%.3f, %.3f, %.3f), expected (%.3f, %.3f, %.3f)",
+                        s.getX(0), s.getY(0), s.getHeading(0), x, y, heading));
+            }
+
+            int last = s.size() - 1;
+            x = s.getX(last);
+            y = s.getY(last);
+            heading = s.getHeading(last);
+        }
+    }
+
+    /**
+     * @return A hex hash of everything that affects the compiled path.
+     */
+    private static String key(String name, Pose2d beginPose, Steps steps) {
+        StringBuilder sb = new StringBuilder()
+                .append(FORMAT_VERSION).append('|')
+                .append(name).append('|')
+                .append(beginPose.position.x).append(',')
+                .append(beginPose.position.y).append(',')
+                .append(beginPose.heading.toDouble()).append('|')
+                .append(steps.description);
+
+        // only what shapes the path and profile, and how they're sampled; gains and the like don't affect the table
+        MecanumDrive.Params params = MecanumDrive.PARAMS;
+        for (double value : new double[]{
+                params.inPerTick, params.lateralInPerTick, params.trackWidthTicks,
+                params.maxWheelVel, params.minProfileAccel, params.maxProfileAccel,
+                params.maxAngVel, params.maxAngAccel,
+                params.sampleMaxDt, params.samplePositionTolerance, params.sampleHeadingTolerance,
+                params.sampleVelocityTolerance, params.sampleAngVelTolerance
+        }) {
+            sb.append('|').append(value);
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The steps of a path, recorded so they can be hashed into its key and replayed onto a builder when compiling.
+     * Mirrors the {@link TrajectoryActionBuilder} methods of the same names, with the default constraints.
+     */
+    public static final class Steps {
+        private final StringBuilder description = new StringBuilder();
+        private final List<UnaryOperator<TrajectoryActionBuilder>> steps = new ArrayList<>();
+
+        public Steps setTangent(double tangent) {
+            return add(b -> b.setTangent(tangent), "setTangent", tangent);
+        }
+
+        public Steps setReversed(boolean reversed) {
+            return add(b -> b.setReversed(reversed), "setReversed", reversed);
+        }
+
+        public Steps turn(double angle) {
+            return add(b -> b.turn(angle), "turn", angle);
+        }
+
+        public Steps turnTo(double heading) {
+            return add(b -> b.turnTo(heading), "turnTo", heading);
+        }
+
+        public Steps lineToX(double posX) {
+            return add(b -> b.lineToX(posX), "lineToX", posX);
+        }
+
+        public Steps lineToXLinearHeading(double posX, double heading) {
+            return add(b -> b.lineToXLinearHeading(posX, heading), "lineToXLinearHeading", posX, heading);
+        }
+
+        public Steps lineToY(double posY) {
+            return add(b -> b.lineToY(posY), "lineToY", posY);
+        }
+
+        public Steps lineToYLinearHeading(double posY, double heading) {
+            return add(b -> b.lineToYLinearHeading(posY, heading), "lineToYLinearHeading", posY, heading);
+        }
+
+        public Steps strafeTo(Vector2d pos) {
+            return add(b -> b.strafeTo(pos), "strafeTo", pos.x, pos.y);
+        }
+
+        public Steps strafeToLinearHeading(Vector2d pos, double heading) {
+            return add(b -> b.strafeToLinearHeading(pos, heading), "strafeToLinearHeading", pos.x, pos.y, heading);
+        }
+
+        public Steps splineTo(Vector2d pos, double tangent) {
+            return add(b -> b.splineTo(pos, tangent), "splineTo", pos.x, pos.y, tangent);
+        }
+
+        public Steps splineToConstantHeading(Vector2d pos, double tangent) {
+            return add(b -> b.splineToConstantHeading(pos, tangent), "splineToConstantHeading",
+                    pos.x, pos.y, tangent);
+        }
+
+        public Steps splineToLinearHeading(Pose2d pose, double tangent) {
+            return add(b -> b.splineToLinearHeading(pose, tangent), "splineToLinearHeading",
+                    pose.position.x, pose.position.y, pose.heading.toDouble(), tangent);
+        }
+
+        public Steps splineToSplineHeading(Pose2d pose, double tangent) {
+            return add(b -> b.splineToSplineHeading(pose, tangent), "splineToSplineHeading",
+                    pose.position.x, pose.position.y, pose.heading.toDouble(), tangent);
+        }
+
+        public Steps waitSeconds(double t) {
+            return add(b -> b.waitSeconds(t), "waitSeconds", t);
+        }
+
+        boolean isEmpty() {
+            return steps.isEmpty();
+        }
+
+        TrajectoryActionBuilder applyTo(TrajectoryActionBuilder builder) {
+            for (UnaryOperator<TrajectoryActionBuilder> step : steps) {
+                builder = step.apply(builder);
+            }
+
+            return builder;
+        }
+
+        private Steps add(UnaryOperator<TrajectoryActionBuilder> step, String name, Object... args) {
+            description.append(name).append('(');
+            for (int i = 0; i < args.length; i++) {
+                description.append(i == 0 ? "" : ",").append(args[i]);
+            }
+            description.append(");");
+
+            steps.add(step);
+            return this;
+        }
+    }
+
+    /**
+     * Stands in for a follower action while compiling; never run.
+     */
+    private static final class CapturedSegment implements Action {
+        final SampledTrajectory trajectory;
+
+        CapturedSegment(SampledTrajectory trajectory) {
+            this.trajectory = trajectory;
+        }
+
+        @Override
+        public boolean run(@NonNull TelemetryPacket p) {
+            throw new IllegalStateException("captured segments can't be run");
+        }
+    }
+}
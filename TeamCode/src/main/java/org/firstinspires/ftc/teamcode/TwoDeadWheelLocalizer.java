@@ -1,14 +1,10 @@
 package org.firstinspires.ftc.teamcode;
 
 import com.acmerobotics.dashboard.config.Config;
-import com.acmerobotics.roadrunner.DualNum;
 import com.acmerobotics.roadrunner.Pose2d;
 import com.acmerobotics.roadrunner.PoseVelocity2d;
 import com.acmerobotics.roadrunner.Rotation2d;
-import com.acmerobotics.roadrunner.Time;
-import com.acmerobotics.roadrunner.Twist2dDual;
 import com.acmerobotics.roadrunner.Vector2d;
-import com.acmerobotics.roadrunner.Vector2dDual;
 import com.acmerobotics.roadrunner.ftc.Encoder;
 import com.acmerobotics.roadrunner.ftc.FlightRecorder;
 import com.acmerobotics.roadrunner.ftc.OverflowEncoder;
@@ -22,122 +18,237 @@ import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
 import org.firstinspires.ftc.robotcore.external.navigation.AngularVelocity;
 import org.firstinspires.ftc.robotcore.external.navigation.UnnormalizedAngleUnit;
 import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
+import org.firstinspires.ftc.teamcode.messages.PooledWriter;
 import org.firstinspires.ftc.teamcode.messages.TwoDeadWheelInputsMessage;
 
+import java.util.function.LongSupplier;
+
 @Config
 public final class TwoDeadWheelLocalizer implements Localizer {
     public static class Params {
         public double parYTicks = 0.0; // y position of the parallel encoder (in tick units)
         public double perpXTicks = 0.0; // x position of the perpendicular encoder (in tick units)
+
+        // how often the IMU is read (in milliseconds); 0 reads it every tick
+        // between reads, heading is extrapolated from the last angular velocity and corrected at the next read
+        public double imuPeriodMs = 0;
     }
 
     public static Params PARAMS = new Params();
 
     public final Encoder par, perp;
     public final IMU imu;
+    // null when reading the IMU synchronously
+    public final AsyncImu asyncImu;
 
     private int lastParPos, lastPerpPos;
-    private Rotation2d lastHeading;
+    // as a unit complex number like Rotation2d
+    private double lastHeadingReal, lastHeadingImag;
 
     private final double inPerTick;
+    private final LongSupplier clock;
 
     private double lastRawHeadingVel, headingVelOffset;
     private boolean initialized;
-    private Pose2d pose;
+    private final PrimitivePose pose;
+
+    private YawPitchRollAngles lastAngles;
+    private AngularVelocity lastAngularVelocity;
+    private double lastHeadingVel;
+    private long lastImuNanos, lastUpdateNanos, lastImuSequence;
+
+    private final PooledWriter<TwoDeadWheelInputsMessage> inputsWriter =
+            new PooledWriter<>("TWO_DEAD_WHEEL_INPUTS", 0, TwoDeadWheelInputsMessage::new);
 
     public TwoDeadWheelLocalizer(HardwareMap hardwareMap, IMU imu, double inPerTick, Pose2d pose) {
+        this(hardwareMap, imu, null, inPerTick, pose);
+    }
+
+    /**
+     * Reads the IMU through {@code asyncImu} instead of in {@link #update()}; {@link Params#imuPeriodMs} is ignored.
+     */
+    public TwoDeadWheelLocalizer(HardwareMap hardwareMap, AsyncImu asyncImu, double inPerTick, Pose2d pose) {
+        this(hardwareMap, asyncImu.imu, asyncImu, inPerTick, pose);
+    }
+
+    /**
+     * Takes its encoders directly, so it can also run on recorded inputs.
+     */
+    public TwoDeadWheelLocalizer(Encoder par, Encoder perp, IMU imu, double inPerTick, Pose2d pose) {
+        this(par, perp, imu, inPerTick, pose, System::nanoTime);
+    }
+
+    /**
+     * @param clock The time of each update (in nanoseconds), which heading extrapolation and IMU decimation are
+     *              computed from; a replay passes the recorded timestamps so it computes what the robot did.
+     */
+    public TwoDeadWheelLocalizer(Encoder par, Encoder perp, IMU imu, double inPerTick, Pose2d pose,
+                                 LongSupplier clock) {
+        this(par, perp, imu, null, inPerTick, pose, clock);
+    }
+
+    private TwoDeadWheelLocalizer(HardwareMap hardwareMap, IMU imu, AsyncImu asyncImu, double inPerTick, Pose2d pose) {
         // TODO: make sure your config has **motors** with these names (or change them)
         //   the encoders should be plugged into the slot matching the named motor
         //   see https://ftc-docs.firstinspires.org/en/latest/hardware_and_software_configuration/configuring/index.html
-        par = new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "par")));
-        perp = new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "perp")));
+        this(new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "par"))),
+                new OverflowEncoder(new RawEncoder(hardwareMap.get(DcMotorEx.class, "perp"))),
+                imu, asyncImu, inPerTick, pose, System::nanoTime);
 
         // TODO: reverse encoder directions if needed
         //   par.setDirection(DcMotorSimple.Direction.REVERSE);
+    }
+
+    private TwoDeadWheelLocalizer(Encoder par, Encoder perp, IMU imu, AsyncImu asyncImu, double inPerTick, Pose2d pose,
+                                  LongSupplier clock) {
+        this.par = par;
+        this.perp = perp;
 
         this.imu = imu;
+        this.asyncImu = asyncImu;
 
         this.inPerTick = inPerTick;
+        this.clock = clock;
 
         FlightRecorder.write("TWO_DEAD_WHEEL_PARAMS", PARAMS);
 
-        this.pose = pose;
+        this.pose = new PrimitivePose(pose);
     }
 
     @Override
     public void setPose(Pose2d pose) {
-        this.pose = pose;
+        this.pose.set(pose);
     }
 
     @Override
     public Pose2d getPose() {
-        return pose;
+        return pose.toPose2d();
     }
 
     @Override
     public PoseVelocity2d update() {
+        long t = LoopProfiler.start();
         PositionVelocityPair parPosVel = par.getPositionAndVelocity();
         PositionVelocityPair perpPosVel = perp.getPositionAndVelocity();
+        t = LoopProfiler.lap(LoopProfiler.Stage.ENCODERS, t);
+
+        long now = clock.getAsLong();
+        boolean decimated, readImu;
+        YawPitchRollAngles angles;
+        AngularVelocity angularVelocity;
+        if (asyncImu != null) {
+            AsyncImu.Sample sample = asyncImu.getLatest();
+            decimated = true;
+            readImu = !initialized || sample.sequence != lastImuSequence;
+            lastImuSequence = sample.sequence;
+            angles = sample.angles;
+            angularVelocity = sample.angularVelocity;
+        } else {
+            decimated = PARAMS.imuPeriodMs > 0;
+            readImu = !initialized || !decimated || now - lastImuNanos >= PARAMS.imuPeriodMs * 1e6;
+            if (readImu) {
+                angles = imu.getRobotYawPitchRollAngles();
+                // Use degrees here to work around https://github.com/FIRST-Tech-Challenge/FtcRobotController/issues/1070
+                AngularVelocity angularVelocityDegrees = imu.getRobotAngularVelocity(AngleUnit.DEGREES);
+                angularVelocity = new AngularVelocity(
+                        UnnormalizedAngleUnit.RADIANS,
+                        (float) Math.toRadians(angularVelocityDegrees.xRotationRate),
+                        (float) Math.toRadians(angularVelocityDegrees.yRotationRate),
+                        (float) Math.toRadians(angularVelocityDegrees.zRotationRate),
+                        angularVelocityDegrees.acquisitionTime
+                );
+
+                lastAngles = angles;
+                lastAngularVelocity = angularVelocity;
+                lastImuNanos = now;
+            } else {
+                angles = lastAngles;
+                angularVelocity = lastAngularVelocity;
+            }
+        }
+        t = LoopProfiler.lap(LoopProfiler.Stage.IMU, t);
 
-        YawPitchRollAngles angles = imu.getRobotYawPitchRollAngles();
-        // Use degrees here to work around https://github.com/FIRST-Tech-Challenge/FtcRobotController/issues/1070
-        AngularVelocity angularVelocityDegrees = imu.getRobotAngularVelocity(AngleUnit.DEGREES);
-        AngularVelocity angularVelocity = new AngularVelocity(
-                UnnormalizedAngleUnit.RADIANS,
-                (float) Math.toRadians(angularVelocityDegrees.xRotationRate),
-                (float) Math.toRadians(angularVelocityDegrees.yRotationRate),
-                (float) Math.toRadians(angularVelocityDegrees.zRotationRate),
-                angularVelocityDegrees.acquisitionTime
-        );
-
-        FlightRecorder.write("TWO_DEAD_WHEEL_INPUTS", new TwoDeadWheelInputsMessage(parPosVel, perpPosVel, angles, angularVelocity));
-
-        Rotation2d heading = Rotation2d.exp(angles.getYaw(AngleUnit.RADIANS));
-
-        // see https://github.com/FIRST-Tech-Challenge/FtcRobotController/issues/617
-        double rawHeadingVel = angularVelocity.zRotationRate;
-        if (Math.abs(rawHeadingVel - lastRawHeadingVel) > Math.PI) {
-            headingVelOffset -= Math.signum(rawHeadingVel) * 2 * Math.PI;
+        TwoDeadWheelInputsMessage inputs = inputsWriter.acquire();
+        if (inputs != null) {
+            inputsWriter.write(inputs.fill(now, parPosVel, perpPosVel, angles, angularVelocity, readImu));
         }
-        lastRawHeadingVel = rawHeadingVel;
-        double headingVel = headingVelOffset + rawHeadingVel;
+        LoopProfiler.record(LoopProfiler.Stage.LOGGING, t);
+
+        // Rotation2d and Twist2dDual arithmetic on plain doubles, in the same order, so nothing is allocated
+        double yaw = angles.getYaw(AngleUnit.RADIANS);
+        double headingReal = Math.cos(yaw), headingImag = Math.sin(yaw);
+
+        if (readImu) {
+            // see https://github.com/FIRST-Tech-Challenge/FtcRobotController/issues/617
+            double rawHeadingVel = angularVelocity.zRotationRate;
+            if (Math.abs(rawHeadingVel - lastRawHeadingVel) > Math.PI) {
+                headingVelOffset -= Math.signum(rawHeadingVel) * 2 * Math.PI;
+            }
+            lastRawHeadingVel = rawHeadingVel;
+            lastHeadingVel = headingVelOffset + rawHeadingVel;
+        }
+        double headingVel = lastHeadingVel;
 
         if (!initialized) {
             initialized = true;
 
             lastParPos = parPosVel.position;
             lastPerpPos = perpPosVel.position;
-            lastHeading = heading;
+            lastHeadingReal = headingReal;
+            lastHeadingImag = headingImag;
+            lastUpdateNanos = now;
 
             return new PoseVelocity2d(new Vector2d(0.0, 0.0), 0.0);
         }
 
         int parPosDelta = parPosVel.position - lastParPos;
         int perpPosDelta = perpPosVel.position - lastPerpPos;
-        double headingDelta = heading.minus(lastHeading);
-
-        Twist2dDual<Time> twist = new Twist2dDual<>(
-                new Vector2dDual<>(
-                        new DualNum<Time>(new double[] {
-                                parPosDelta - PARAMS.parYTicks * headingDelta,
-                                parPosVel.velocity - PARAMS.parYTicks * headingVel,
-                        }).times(inPerTick),
-                        new DualNum<Time>(new double[] {
-                                perpPosDelta - PARAMS.perpXTicks * headingDelta,
-                                perpPosVel.velocity - PARAMS.perpXTicks * headingVel,
-                        }).times(inPerTick)
-                ),
-                new DualNum<>(new double[] {
-                        headingDelta,
-                        headingVel,
-                })
-        );
+
+        // two wheels can't observe rotation, so between IMU reads extrapolate it from the last angular velocity
+        // and fold any drift into the heading at the next read
+        double headingDelta, headingCorrection = 0.0;
+        if (!decimated) {
+            headingDelta = headingMinus(headingReal, headingImag, lastHeadingReal, lastHeadingImag);
+        } else {
+            headingDelta = headingVel * (now - lastUpdateNanos) * 1e-9;
+            if (readImu) {
+                double rotReal = Math.cos(headingDelta), rotImag = Math.sin(headingDelta);
+                headingCorrection = headingMinus(headingReal, headingImag,
+                        lastHeadingReal * rotReal - lastHeadingImag * rotImag,
+                        lastHeadingReal * rotImag + lastHeadingImag * rotReal);
+            }
+        }
+        lastUpdateNanos = now;
+
+        double lineX = (parPosDelta - PARAMS.parYTicks * headingDelta) * inPerTick;
+        double lineXVel = (parPosVel.velocity - PARAMS.parYTicks * headingVel) * inPerTick;
+        double lineY = (perpPosDelta - PARAMS.perpXTicks * headingDelta) * inPerTick;
+        double lineYVel = (perpPosVel.velocity - PARAMS.perpXTicks * headingVel) * inPerTick;
 
         lastParPos = parPosVel.position;
         lastPerpPos = perpPosVel.position;
-        lastHeading = heading;
+        if (readImu) {
+            lastHeadingReal = headingReal;
+            lastHeadingImag = headingImag;
+        } else {
+            double rotReal = Math.cos(headingDelta), rotImag = Math.sin(headingDelta);
+            double real = lastHeadingReal * rotReal - lastHeadingImag * rotImag;
+            lastHeadingImag = lastHeadingReal * rotImag + lastHeadingImag * rotReal;
+            lastHeadingReal = real;
+        }
+
+        pose.plus(lineX, lineY, headingDelta);
+        if (headingCorrection != 0.0) {
+            pose.rotate(headingCorrection);
+        }
+        return new PoseVelocity2d(new Vector2d(lineXVel, lineYVel), headingVel);
+    }
 
-        pose = pose.plus(twist.value());
-        return twist.velocity().value();
+    /**
+     * @return {@code a.minus(b)} for the rotations {@code a} and {@code b}, computed like {@link Rotation2d#minus}
+     */
+    private static double headingMinus(double aReal, double aImag, double bReal, double bImag) {
+        // (b.inverse() * a).log()
+        return Math.atan2(bReal * aImag + (-bImag) * aReal, bReal * aReal - (-bImag) * aImag);
     }
 }
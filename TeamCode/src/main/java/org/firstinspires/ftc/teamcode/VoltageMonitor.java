@@ -0,0 +1,125 @@
+package org.firstinspires.ftc.teamcode;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.qualcomm.robotcore.hardware.VoltageSensor;
+
+/**
+ * Samples a {@link VoltageSensor} on a background thread and low-pass filters the result,
+ * so control loops get a smooth battery voltage from a single volatile read
+ * instead of a hub transaction every tick.
+ * <p>
+ * The sampling thread stops by itself once the thread that created the monitor dies
+ * (e.g. when a {@code LinearOpMode} ends); iterative op modes should call {@link #close()} in {@code stop()}.
+ */
+@Config
+public final class VoltageMonitor {
+    public static class Params {
+        public long samplePeriodMs = 20;
+        // time constant of the low-pass filter (in seconds)
+        public double filterTimeConstant = 0.1;
+        // raw samples below this count as a brownout (in volts)
+        public double brownoutVoltage = 7.5;
+    }
+
+    public static Params PARAMS = new Params();
+
+    public final VoltageSensor sensor;
+
+    private final Thread owner;
+    private final Thread thread;
+
+    private volatile double voltage;
+    private volatile double rawVoltage;
+    private volatile long lastSampleNanos;
+    private volatile boolean brownout;
+    private volatile int brownoutCount;
+    private volatile boolean closed;
+
+    public VoltageMonitor(VoltageSensor sensor) {
+        this.sensor = sensor;
+
+        // take the first sample synchronously so getVoltage() is valid immediately
+        rawVoltage = sensor.getVoltage();
+        voltage = rawVoltage;
+        lastSampleNanos = System.nanoTime();
+
+        owner = Thread.currentThread();
+        thread = new Thread(this::run, "VoltageMonitor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return the filtered battery voltage (in volts)
+     */
+    public double getVoltage() {
+        return voltage;
+    }
+
+    /**
+     * @return the most recent unfiltered sample (in volts)
+     */
+    public double getRawVoltage() {
+        return rawVoltage;
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} of the most recent sample
+     */
+    public long getLastSampleNanos() {
+        return lastSampleNanos;
+    }
+
+    /**
+     * @return whether the most recent sample was below {@link Params#brownoutVoltage}
+     */
+    public boolean isBrownout() {
+        return brownout;
+    }
+
+    /**
+     * @return how many times the voltage has dropped below {@link Params#brownoutVoltage}
+     */
+    public int getBrownoutCount() {
+        return brownoutCount;
+    }
+
+    /**
+     * Stops the sampling thread. {@link #getVoltage()} keeps returning the last filtered value.
+     */
+    public void close() {
+        closed = true;
+        thread.interrupt();
+    }
+
+    private void run() {
+        double filtered = voltage;
+        long lastNanos = lastSampleNanos;
+
+        while (!closed && owner.isAlive()) {
+            try {
+                Thread.sleep(Math.max(1, PARAMS.samplePeriodMs));
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            double sample = sensor.getVoltage();
+            long now = System.nanoTime();
+
+            double dt = (now - lastNanos) * 1e-9;
+            double alpha = dt / (Math.max(0.0, PARAMS.filterTimeConstant) + dt);
+            filtered += alpha * (sample - filtered);
+            lastNanos = now;
+
+            boolean isBrownout = sample < PARAMS.brownoutVoltage;
+            if (isBrownout && !brownout) {
+                brownoutCount++;
+            }
+
+            rawVoltage = sample;
+            voltage = filtered;
+            brownout = isBrownout;
+            lastSampleNanos = now;
+        }
+    }
+}
@@ -6,9 +6,22 @@ import java.util.HashSet;
 
 public abstract class Arm {
     protected final HashSet<DcMotor> MOTORS;
+    /**
+     * Buffers the writes to the arm motors; flushed at the end of each arm command.
+     */
+    protected final MotorOutputLayer MOTOR_OUTPUTS;
 
     public Arm(HashSet<DcMotor> motors) {
+        this(motors, new MotorOutputLayer(MotorOutputLayer.DEFAULT_POWER_EPSILON));
+    }
+
+    /**
+     * @param motors        The motors included in this arm system.
+     * @param motorOutputs  The output layer the arm writes through, which may be shared with other subsystems.
+     */
+    public Arm(HashSet<DcMotor> motors, MotorOutputLayer motorOutputs) {
         MOTORS = motors;
+        MOTOR_OUTPUTS = motorOutputs;
         // The arm motors will attempt to resist external forces(e.g. gravity).
         for (DcMotor motor : MOTORS) {
             motor.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.BRAKE);
@@ -23,4 +36,8 @@ public abstract class Arm {
     public HashSet<DcMotor> getMotors() {
         return MOTORS;
     }
+
+    public MotorOutputLayer getMotorOutputs() {
+        return MOTOR_OUTPUTS;
+    }
 }
\ No newline at end of file
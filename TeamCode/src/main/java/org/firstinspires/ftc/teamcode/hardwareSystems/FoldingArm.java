@@ -120,6 +120,10 @@ public class FoldingArm extends Arm {
      * The motor that rotates the arm up and down.
      */
     private final DcMotor ROTATION_MOTOR;
+    /**
+     * The buffered output of the rotation motor.
+     */
+    private final MotorOutputLayer.MotorOutput ROTATION_OUTPUT;
     /**
      * The minimum rotation of the arm in ticks.
      */
@@ -141,6 +145,10 @@ public class FoldingArm extends Arm {
      * The motor that folds and retracts the arm.
      */
     private final DcMotor FOLDING_MOTOR;
+    /**
+     * The buffered output of the folding motor.
+     */
+    private final MotorOutputLayer.MotorOutput FOLDING_OUTPUT;
     /**
      * The minimum extension of the arm in ticks.
      */
@@ -167,7 +175,19 @@ public class FoldingArm extends Arm {
      * @param foldingRange  The min extension and max extension.
      */
     public FoldingArm(MotorSet motorSet, RotationRange rotationRange, FoldingRange foldingRange) {
-        super(motorSet.MOTORS);
+        this(motorSet, rotationRange, foldingRange, new MotorOutputLayer(MotorOutputLayer.DEFAULT_POWER_EPSILON));
+    }
+
+    /**
+     * Instantiates an foldable arm that writes through a shared output layer.
+     *
+     * @param motorSet      The motors and motor types.
+     * @param rotationRange The min rotation, max rotation, and ticks per degree.
+     * @param foldingRange  The min extension and max extension.
+     * @param motorOutputs  The output layer the arm writes through.
+     */
+    public FoldingArm(MotorSet motorSet, RotationRange rotationRange, FoldingRange foldingRange, MotorOutputLayer motorOutputs) {
+        super(motorSet.MOTORS, motorOutputs);
 
         this.ROTATION_MOTOR = motorSet.ROTATION_MOTOR;
         this.MIN_ROTATION = rotationRange.MIN_ROTATION;
@@ -176,17 +196,25 @@ public class FoldingArm extends Arm {
         this.TICKS_PER_ROTATION_DEGREE = rotationRange.TICKS_PER_DEGREE;
 
         this.FOLDING_MOTOR = motorSet.FOLDING_MOTOR;
-        this.FOLDING_MOTOR.setDirection(DcMotorSimple.Direction.REVERSE);
         this.MIN_FOLDING = foldingRange.MIN_FOLDING;
         this.MAX_FOLDING = foldingRange.MAX_FOLDING;
         this.INITIAL_FOLDING_ANGLE = foldingRange.INITIAL_ANGLE;
         this.TICKS_PER_FOLDING_DEGREE = foldingRange.TICKS_PER_DEGREE;
 
-        // Reset position to 0
+        this.ROTATION_OUTPUT = MOTOR_OUTPUTS.add(ROTATION_MOTOR);
+        this.FOLDING_OUTPUT = MOTOR_OUTPUTS.add(FOLDING_MOTOR);
+
+        this.FOLDING_OUTPUT.setDirection(DcMotorSimple.Direction.REVERSE);
+
+        // Reset position to 0; each mode has to reach the motors, so flush after each
+        for (DcMotor motor: MOTORS) {
+            MOTOR_OUTPUTS.add(motor).setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
+        }
+        MOTOR_OUTPUTS.flush();
         for (DcMotor motor: MOTORS) {
-            motor.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-            motor.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
+            MOTOR_OUTPUTS.add(motor).setMode(DcMotor.RunMode.RUN_USING_ENCODER);
         }
+        MOTOR_OUTPUTS.flush();
     }
 
     public double getRotationPower() {
@@ -226,12 +254,16 @@ public class FoldingArm extends Arm {
      *                  Positive rotates it up, negative rotates it down, zero stops the motor.
      */
     public void rotate(double direction) throws IllegalStateException {
-        if (ROTATION_MOTOR.getCurrentPosition() > MAX_ROTATION || ROTATION_MOTOR.getCurrentPosition() < MIN_ROTATION) {
-            ROTATION_MOTOR.setPower(0);
+        // Read once; the position only changes between loop cycles.
+        int position = ROTATION_MOTOR.getCurrentPosition();
+        if (position > MAX_ROTATION || position < MIN_ROTATION) {
+            ROTATION_OUTPUT.setPower(0);
+            MOTOR_OUTPUTS.flush();
             throw new IllegalStateException("Arm rotation reached limits");
         }
 
-        ROTATION_MOTOR.setPower(direction * ROTATION_POWER);
+        ROTATION_OUTPUT.setPower(direction * ROTATION_POWER);
+        MOTOR_OUTPUTS.flush();
     }
 
     /**
@@ -245,16 +277,17 @@ public class FoldingArm extends Arm {
         int targetPosition = (int) -Math.round(targetDegrees * TICKS_PER_ROTATION_DEGREE);
         // Keep the target position within acceptable bounds
         targetPosition = Math.min(Math.max(targetPosition, MIN_ROTATION), MAX_ROTATION);
-        ROTATION_MOTOR.setTargetPosition(targetPosition);
+        ROTATION_OUTPUT.setTargetPosition(targetPosition);
 
         /*
          * Calculate the direction that the arm will have to rotate.
          * Negative is down, positive is up
          */
         int direction = (int) Math.signum(targetPosition - ROTATION_MOTOR.getCurrentPosition());
-        ROTATION_MOTOR.setPower(direction * ROTATION_POWER);
+        ROTATION_OUTPUT.setPower(direction * ROTATION_POWER);
 
-        ROTATION_MOTOR.setMode(DcMotor.RunMode.RUN_TO_POSITION);
+        ROTATION_OUTPUT.setMode(DcMotor.RunMode.RUN_TO_POSITION);
+        MOTOR_OUTPUTS.flush();
     }
 
     public int getFoldingTicks() {
@@ -277,12 +310,16 @@ public class FoldingArm extends Arm {
      *                  Positive values fold the arm, negative values retract it.
      */
     public void fold(double direction) throws IllegalStateException {
-        if (FOLDING_MOTOR.getCurrentPosition() > MAX_FOLDING || FOLDING_MOTOR.getCurrentPosition() < MIN_FOLDING) {
-            FOLDING_MOTOR.setPower(0);
+        // Read once; the position only changes between loop cycles.
+        int position = FOLDING_MOTOR.getCurrentPosition();
+        if (position > MAX_FOLDING || position < MIN_FOLDING) {
+            FOLDING_OUTPUT.setPower(0);
+            MOTOR_OUTPUTS.flush();
             throw new IllegalStateException("Arm folding reached limits.");
         }
 
-        FOLDING_MOTOR.setPower(direction * FOLDING_POWER);
+        FOLDING_OUTPUT.setPower(direction * FOLDING_POWER);
+        MOTOR_OUTPUTS.flush();
     }
 
     /**
@@ -295,12 +332,13 @@ public class FoldingArm extends Arm {
         int targetPosition = (int) Math.round(targetDegrees * TICKS_PER_FOLDING_DEGREE);
         // Keep the target position within acceptable bounds
         targetPosition = -Math.min(Math.max(targetPosition, MIN_FOLDING), MAX_FOLDING);
-        FOLDING_MOTOR.setTargetPosition(targetPosition);
+        FOLDING_OUTPUT.setTargetPosition(targetPosition);
 
         int direction = (int) Math.signum(targetPosition - FOLDING_MOTOR.getCurrentPosition());
-        FOLDING_MOTOR.setPower(direction * FOLDING_POWER);
+        FOLDING_OUTPUT.setPower(direction * FOLDING_POWER);
 
-        FOLDING_MOTOR.setMode(DcMotor.RunMode.RUN_TO_POSITION);
+        FOLDING_OUTPUT.setMode(DcMotor.RunMode.RUN_TO_POSITION);
+        MOTOR_OUTPUTS.flush();
     }
 
     /**
@@ -311,12 +349,13 @@ public class FoldingArm extends Arm {
     public void foldToPosition(int targetPosition) {
         // Keep the target position within acceptable bounds
         targetPosition = Math.min(Math.max(targetPosition, MIN_FOLDING), MAX_FOLDING);
-        FOLDING_MOTOR.setTargetPosition(targetPosition);
+        FOLDING_OUTPUT.setTargetPosition(targetPosition);
 
         // Get the direction of turning.
         int direction = (int) Math.signum(targetPosition - FOLDING_MOTOR.getCurrentPosition());
-        FOLDING_MOTOR.setPower(direction * FOLDING_POWER);
+        FOLDING_OUTPUT.setPower(direction * FOLDING_POWER);
 
-        FOLDING_MOTOR.setMode(DcMotor.RunMode.RUN_TO_POSITION);
+        FOLDING_OUTPUT.setMode(DcMotor.RunMode.RUN_TO_POSITION);
+        MOTOR_OUTPUTS.flush();
     }
 }
\ No newline at end of file
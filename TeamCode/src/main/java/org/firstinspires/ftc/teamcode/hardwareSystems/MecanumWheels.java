@@ -26,29 +26,55 @@ public class MecanumWheels extends Wheels {
      */
     private final DcMotor BACK_RIGHT_MOTOR;
 
+    /* The buffered outputs of the motors above */
+    private final MotorOutputLayer.MotorOutput FRONT_LEFT_OUTPUT;
+    private final MotorOutputLayer.MotorOutput FRONT_RIGHT_OUTPUT;
+    private final MotorOutputLayer.MotorOutput BACK_LEFT_OUTPUT;
+    private final MotorOutputLayer.MotorOutput BACK_RIGHT_OUTPUT;
+
     public MecanumWheels(MotorSet motorSet, WheelDistances wheelDistances, double ticksPerInch) {
-        super(motorSet.MOTORS, wheelDistances, ticksPerInch);
+        this(motorSet, wheelDistances, ticksPerInch, new MotorOutputLayer(MotorOutputLayer.DEFAULT_POWER_EPSILON));
+    }
+
+    public MecanumWheels(MotorSet motorSet, WheelDistances wheelDistances, double ticksPerInch, MotorOutputLayer motorOutputs) {
+        super(motorSet.MOTORS, wheelDistances, ticksPerInch, motorOutputs);
 
         this.FRONT_LEFT_MOTOR = motorSet.FRONT_LEFT_MOTOR;
         this.FRONT_RIGHT_MOTOR = motorSet.FRONT_RIGHT_MOTOR;
         this.BACK_LEFT_MOTOR = motorSet.BACK_LEFT_MOTOR;
         this.BACK_RIGHT_MOTOR = motorSet.BACK_RIGHT_MOTOR;
 
-        // Reset position to 0
-        for (DcMotor motor: MOTORS) {
-            motor.setMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
-            motor.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
-        }
+        this.FRONT_LEFT_OUTPUT = MOTOR_OUTPUTS.add(FRONT_LEFT_MOTOR);
+        this.FRONT_RIGHT_OUTPUT = MOTOR_OUTPUTS.add(FRONT_RIGHT_MOTOR);
+        this.BACK_LEFT_OUTPUT = MOTOR_OUTPUTS.add(BACK_LEFT_MOTOR);
+        this.BACK_RIGHT_OUTPUT = MOTOR_OUTPUTS.add(BACK_RIGHT_MOTOR);
+
+        // Reset position to 0; each mode has to reach the motors, so flush after each
+        setModes(DcMotor.RunMode.STOP_AND_RESET_ENCODER);
+        MOTOR_OUTPUTS.flush();
+        setModes(DcMotor.RunMode.RUN_USING_ENCODER);
 
         /*
          * Set the directions of the motors.
          * The right and left motors run in opposite directions of each other.
          * Positive is forward for all motors.
          */
-        FRONT_LEFT_MOTOR.setDirection(DcMotorSimple.Direction.REVERSE);
-        FRONT_RIGHT_MOTOR.setDirection(DcMotorSimple.Direction.FORWARD);
-        BACK_LEFT_MOTOR.setDirection(DcMotorSimple.Direction.REVERSE);
-        BACK_RIGHT_MOTOR.setDirection(DcMotorSimple.Direction.FORWARD);
+        FRONT_LEFT_OUTPUT.setDirection(DcMotorSimple.Direction.REVERSE);
+        FRONT_RIGHT_OUTPUT.setDirection(DcMotorSimple.Direction.FORWARD);
+        BACK_LEFT_OUTPUT.setDirection(DcMotorSimple.Direction.REVERSE);
+        BACK_RIGHT_OUTPUT.setDirection(DcMotorSimple.Direction.FORWARD);
+        MOTOR_OUTPUTS.flush();
+    }
+
+    /**
+     * Set the run mode of all four wheel motors.
+     * Takes effect at the next flush.
+     */
+    private void setModes(DcMotor.RunMode mode) {
+        FRONT_LEFT_OUTPUT.setMode(mode);
+        FRONT_RIGHT_OUTPUT.setMode(mode);
+        BACK_LEFT_OUTPUT.setMode(mode);
+        BACK_RIGHT_OUTPUT.setMode(mode);
     }
 
     public DcMotor getFrontLeftMotor() {
@@ -72,9 +98,7 @@ public class MecanumWheels extends Wheels {
      */
     @Override
     public void drive(double x, double y, double theta) {
-        for (DcMotor motor : MOTORS) {
-            motor.setMode(DcMotor.RunMode.RUN_USING_ENCODER);
-        }
+        setModes(DcMotor.RunMode.RUN_USING_ENCODER);
 
         /*
         double frontLeftPower = y + x + theta;
@@ -97,10 +121,12 @@ public class MecanumWheels extends Wheels {
             backRightPower /= max;
         }
 
-        FRONT_LEFT_MOTOR.setPower(frontLeftPower);
-        FRONT_RIGHT_MOTOR.setPower(frontRightPower);
-        BACK_LEFT_MOTOR.setPower(backLeftPower);
-        BACK_RIGHT_MOTOR.setPower(backRightPower);
+        FRONT_LEFT_OUTPUT.setPower(frontLeftPower);
+        FRONT_RIGHT_OUTPUT.setPower(frontRightPower);
+        BACK_LEFT_OUTPUT.setPower(backLeftPower);
+        BACK_RIGHT_OUTPUT.setPower(backRightPower);
+
+        MOTOR_OUTPUTS.flush();
     }
 
     /**
@@ -131,14 +157,14 @@ public class MecanumWheels extends Wheels {
         int backLeftTickPosition = BACK_LEFT_MOTOR.getCurrentPosition() + (int) ((-sidewaysDistance - forwardDistance) * TICKS_PER_INCH);
         int backRightTickPosition = BACK_RIGHT_MOTOR.getCurrentPosition() - (int) ((sidewaysDistance + forwardDistance) * TICKS_PER_INCH);
 
-        FRONT_LEFT_MOTOR.setTargetPosition(frontLeftTickPosition);
-        FRONT_RIGHT_MOTOR.setTargetPosition(frontRightTickPosition);
-        BACK_LEFT_MOTOR.setTargetPosition(backLeftTickPosition);
-        BACK_RIGHT_MOTOR.setTargetPosition(backRightTickPosition);
+        FRONT_LEFT_OUTPUT.setTargetPosition(frontLeftTickPosition);
+        FRONT_RIGHT_OUTPUT.setTargetPosition(frontRightTickPosition);
+        BACK_LEFT_OUTPUT.setTargetPosition(backLeftTickPosition);
+        BACK_RIGHT_OUTPUT.setTargetPosition(backRightTickPosition);
 
-        for (DcMotor motor : MOTORS) {
-            motor.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        }
+        setModes(DcMotor.RunMode.RUN_TO_POSITION);
+
+        MOTOR_OUTPUTS.flush();
     }
 
     /**
@@ -155,20 +181,20 @@ public class MecanumWheels extends Wheels {
         int ticks = (int) Math.round(arcLength * TICKS_PER_INCH) * 4 / 3;
 
         // Left wheels
-        FRONT_LEFT_MOTOR.setTargetPosition(FRONT_LEFT_MOTOR.getCurrentPosition() - ticks);
-        FRONT_LEFT_MOTOR.setPower(-MOTOR_POWER);
-        BACK_LEFT_MOTOR.setTargetPosition(BACK_LEFT_MOTOR.getCurrentPosition() - ticks);
-        BACK_LEFT_MOTOR.setPower(-MOTOR_POWER);
+        FRONT_LEFT_OUTPUT.setTargetPosition(FRONT_LEFT_MOTOR.getCurrentPosition() - ticks);
+        FRONT_LEFT_OUTPUT.setPower(-MOTOR_POWER);
+        BACK_LEFT_OUTPUT.setTargetPosition(BACK_LEFT_MOTOR.getCurrentPosition() - ticks);
+        BACK_LEFT_OUTPUT.setPower(-MOTOR_POWER);
 
         // Right wheels
-        FRONT_RIGHT_MOTOR.setTargetPosition(FRONT_RIGHT_MOTOR.getCurrentPosition() + ticks);
-        FRONT_RIGHT_MOTOR.setPower(MOTOR_POWER);
-        BACK_RIGHT_MOTOR.setTargetPosition(BACK_RIGHT_MOTOR.getCurrentPosition() + ticks);
-        BACK_RIGHT_MOTOR.setPower(MOTOR_POWER);
+        FRONT_RIGHT_OUTPUT.setTargetPosition(FRONT_RIGHT_MOTOR.getCurrentPosition() + ticks);
+        FRONT_RIGHT_OUTPUT.setPower(MOTOR_POWER);
+        BACK_RIGHT_OUTPUT.setTargetPosition(BACK_RIGHT_MOTOR.getCurrentPosition() + ticks);
+        BACK_RIGHT_OUTPUT.setPower(MOTOR_POWER);
 
-        for (DcMotor motor : MOTORS) {
-            motor.setMode(DcMotor.RunMode.RUN_TO_POSITION);
-        }
+        setModes(DcMotor.RunMode.RUN_TO_POSITION);
+
+        MOTOR_OUTPUTS.flush();
     }
 
     /**
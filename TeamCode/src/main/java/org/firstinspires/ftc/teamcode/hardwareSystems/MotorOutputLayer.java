@@ -0,0 +1,233 @@
+package org.firstinspires.ftc.teamcode.hardwareSystems;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.DcMotorSimple;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Coalesces motor writes so that each loop only sends the commands that actually changed.
+ * <p>
+ * Subsystems set power, mode, target position and direction on a {@link MotorOutput} as often as they like;
+ * nothing is sent to the hub until {@link #flush()}, which writes only the values that differ from
+ * what was last written. Power changes smaller than the power epsilon are dropped,
+ * except that a change to exactly zero is always written so motors reliably stop.
+ * <p>
+ * The layer only knows what it wrote itself, so a motor written directly would make it skip a needed write.
+ * Subsystems do their setup writes (modes, directions) through the layer as well, flushing between
+ * writes that must all reach the motor, like a reset followed by a run mode.
+ * Anything that can't, such as the RoadRunner tuning op modes writing the drive motors through
+ * {@code DriveView}, must call {@link MotorOutput#invalidate()} or {@link #invalidate()} afterwards.
+ */
+public final class MotorOutputLayer {
+    /**
+     * The power epsilon used by subsystems that aren't given a layer.
+     */
+    public static final double DEFAULT_POWER_EPSILON = 1e-3;
+
+    private final List<MotorOutput> outputs = new ArrayList<>();
+    private double powerEpsilon;
+
+    private int lastFlushWrites;
+    private long totalWrites;
+    private long droppedWrites;
+
+    /**
+     * @param powerEpsilon Power changes at or below this are not written.
+     */
+    public MotorOutputLayer(double powerEpsilon) {
+        this.powerEpsilon = powerEpsilon;
+    }
+
+    public double getPowerEpsilon() {
+        return powerEpsilon;
+    }
+
+    public void setPowerEpsilon(double powerEpsilon) {
+        this.powerEpsilon = powerEpsilon;
+    }
+
+    /**
+     * Get the output for a motor, adding it to this layer if it isn't already.
+     *
+     * @param motor The motor to write to.
+     * @return The {@code MotorOutput} that buffers writes to {@code motor}.
+     */
+    public MotorOutput add(DcMotor motor) {
+        for (MotorOutput output : outputs) {
+            if (output.MOTOR == motor) {
+                return output;
+            }
+        }
+
+        MotorOutput output = new MotorOutput(motor);
+        outputs.add(output);
+        return output;
+    }
+
+    /**
+     * Write every pending change to the hardware.
+     * Call once per loop, after all subsystems have set their outputs.
+     */
+    public void flush() {
+        int writes = 0;
+        for (int i = 0; i < outputs.size(); i++) {
+            writes += outputs.get(i).flush();
+        }
+
+        lastFlushWrites = writes;
+    }
+
+    /**
+     * Forget what was last written to every motor, e.g. after something wrote to them directly.
+     */
+    public void invalidate() {
+        for (int i = 0; i < outputs.size(); i++) {
+            outputs.get(i).invalidate();
+        }
+    }
+
+    /**
+     * @return How many hardware writes the last {@link #flush()} made.
+     */
+    public int getLastFlushWrites() {
+        return lastFlushWrites;
+    }
+
+    public long getTotalWrites() {
+        return totalWrites;
+    }
+
+    /**
+     * @return How many requested power, mode, target or direction changes were dropped
+     * because they matched what had already been written.
+     */
+    public long getDroppedWrites() {
+        return droppedWrites;
+    }
+
+    /**
+     * Buffers the commands for a single motor.
+     */
+    public final class MotorOutput {
+        private final DcMotor MOTOR;
+
+        private double power = Double.NaN;
+        private boolean hasPower;
+        private DcMotor.RunMode mode;
+        private boolean hasTargetPosition;
+        private int targetPosition;
+        private DcMotorSimple.Direction direction;
+
+        // what was last sent to the motor; NaN or null if unknown
+        private double writtenPower = Double.NaN;
+        private DcMotor.RunMode writtenMode;
+        private boolean hasWrittenTargetPosition;
+        private int writtenTargetPosition;
+        private DcMotorSimple.Direction writtenDirection;
+
+        private MotorOutput(DcMotor motor) {
+            MOTOR = motor;
+        }
+
+        public DcMotor getMotor() {
+            return MOTOR;
+        }
+
+        /**
+         * @return The most recently requested power, or {@code NaN} if none has been requested.
+         */
+        public double getPower() {
+            return power;
+        }
+
+        public void setPower(double power) {
+            this.power = power;
+            hasPower = true;
+        }
+
+        public void setMode(DcMotor.RunMode mode) {
+            this.mode = mode;
+        }
+
+        public void setTargetPosition(int targetPosition) {
+            this.targetPosition = targetPosition;
+            hasTargetPosition = true;
+        }
+
+        public void setDirection(DcMotorSimple.Direction direction) {
+            this.direction = direction;
+        }
+
+        /**
+         * Forget what was last written, so that the next flush writes every requested value.
+         */
+        public void invalidate() {
+            writtenPower = Double.NaN;
+            writtenMode = null;
+            hasWrittenTargetPosition = false;
+            writtenDirection = null;
+        }
+
+        /**
+         * Write this motor's pending changes.
+         * Targets are written before modes, as {@code RUN_TO_POSITION} requires.
+         *
+         * @return How many hardware writes were made.
+         */
+        private int flush() {
+            int writes = 0;
+
+            if (direction != null) {
+                if (direction != writtenDirection) {
+                    MOTOR.setDirection(direction);
+                    writtenDirection = direction;
+                    writes++;
+                } else {
+                    droppedWrites++;
+                }
+                direction = null;
+            }
+
+            if (hasTargetPosition) {
+                if (!hasWrittenTargetPosition || targetPosition != writtenTargetPosition) {
+                    MOTOR.setTargetPosition(targetPosition);
+                    writtenTargetPosition = targetPosition;
+                    hasWrittenTargetPosition = true;
+                    writes++;
+                } else {
+                    droppedWrites++;
+                }
+                hasTargetPosition = false;
+            }
+
+            if (mode != null) {
+                // a reset is an action rather than a state, so it's always sent
+                if (mode != writtenMode || mode == DcMotor.RunMode.STOP_AND_RESET_ENCODER) {
+                    MOTOR.setMode(mode);
+                    writtenMode = mode;
+                    writes++;
+                } else {
+                    droppedWrites++;
+                }
+                mode = null;
+            }
+
+            if (hasPower) {
+                boolean stopping = power == 0 && writtenPower != 0;
+                if (Double.isNaN(writtenPower) || stopping || Math.abs(power - writtenPower) > powerEpsilon) {
+                    MOTOR.setPower(power);
+                    writtenPower = power;
+                    writes++;
+                } else {
+                    droppedWrites++;
+                }
+                hasPower = false;
+            }
+
+            totalWrites += writes;
+            return writes;
+        }
+    }
+}
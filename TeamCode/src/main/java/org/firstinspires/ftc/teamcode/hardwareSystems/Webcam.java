@@ -143,6 +143,15 @@ public class Webcam {
         return APRIL_TAG.getDetections();
     }
 
+    /**
+     * Get the AprilTag detections from frames that haven't been returned by this method before.
+     *
+     * @return The new detections, or null if no frame has been processed since the last call.
+     */
+    public List<AprilTagDetection> getFreshAprilTagDetections() {
+        return APRIL_TAG.getFreshDetections();
+    }
+
     public PredominantColorProcessor getColorProcessor() {
         return COLOR_PROCESSOR;
     }
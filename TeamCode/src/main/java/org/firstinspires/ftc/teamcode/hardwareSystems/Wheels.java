@@ -57,6 +57,10 @@ public abstract class Wheels {
      * The number of ticks needed to move the robot by 1 inch.
      */
     protected final double TICKS_PER_INCH;
+    /**
+     * Buffers the writes to the wheel motors; flushed at the end of each drive command.
+     */
+    protected final MotorOutputLayer MOTOR_OUTPUTS;
 
     /**
      * Instantiate a {@code Wheels} object.
@@ -65,7 +69,19 @@ public abstract class Wheels {
      * @param ticksPerInch The number of ticks needed to move the robot by one inch.
      */
     public Wheels(HashSet<DcMotor> motors, WheelDistances wheelDistances, double ticksPerInch) {
+        this(motors, wheelDistances, ticksPerInch, new MotorOutputLayer(MotorOutputLayer.DEFAULT_POWER_EPSILON));
+    }
+
+    /**
+     * Instantiate a {@code Wheels} object.
+     *
+     * @param motors       All the motors used by the robot.
+     * @param ticksPerInch The number of ticks needed to move the robot by one inch.
+     * @param motorOutputs The output layer the wheels write through, which may be shared with other subsystems.
+     */
+    public Wheels(HashSet<DcMotor> motors, WheelDistances wheelDistances, double ticksPerInch, MotorOutputLayer motorOutputs) {
         MOTORS = motors;
+        MOTOR_OUTPUTS = motorOutputs;
         // Allow wheels to roll freely.
         for (DcMotor motor : MOTORS) {
             motor.setZeroPowerBehavior(DcMotor.ZeroPowerBehavior.FLOAT);
@@ -90,6 +106,10 @@ public abstract class Wheels {
         return MOTORS;
     }
 
+    public MotorOutputLayer getMotorOutputs() {
+        return MOTOR_OUTPUTS;
+    }
+
     /**
      * Drive forwards and backwards.
      *
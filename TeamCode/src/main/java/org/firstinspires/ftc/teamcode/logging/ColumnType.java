@@ -0,0 +1,32 @@
+package org.firstinspires.ftc.teamcode.logging;
+
+/**
+ * How a column of a columnar log is stored.
+ * Integer columns are delta-encoded within each block; doubles are stored as they are.
+ */
+public enum ColumnType {
+    // zigzag varint deltas; also used for timestamps
+    LONG(0),
+    // zigzag varint deltas; also used for enum ordinals
+    INT(1),
+    // 8 bytes each
+    DOUBLE(2),
+    // 1 byte each
+    BOOLEAN(3);
+
+    final byte tag;
+
+    ColumnType(int tag) {
+        this.tag = (byte) tag;
+    }
+
+    static ColumnType fromTag(byte tag) {
+        for (ColumnType type : values()) {
+            if (type.tag == tag) {
+                return type;
+            }
+        }
+
+        throw new IllegalArgumentException("unknown column type: " + tag);
+    }
+}
@@ -0,0 +1,121 @@
+package org.firstinspires.ftc.teamcode.logging;
+
+import android.content.Context;
+import android.os.Environment;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.qualcomm.ftccommon.FtcEventLoop;
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+import com.qualcomm.robotcore.eventloop.opmode.OpModeManagerNotifier;
+import com.qualcomm.robotcore.util.RobotLog;
+
+import org.firstinspires.ftc.ftccommon.external.OnCreateEventLoop;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The per-op-mode {@link ColumnarLogWriter} that {@link org.firstinspires.ftc.teamcode.messages.PooledWriter}
+ * channels go to instead of the RoadRunner log.
+ * <p>
+ * With {@link Params#enabled} set when an op mode is initialized, a log is opened next to the RoadRunner logs as
+ * {@code <millis>__<OpMode>.rrc}, and closed when the op mode stops. Read it back with {@link ColumnarLogReader}.
+ * Anything written while no log is open (and parameters, which aren't pooled) still goes to the RoadRunner log.
+ */
+@Config
+public final class ColumnarLog {
+    public static class Params {
+        public boolean enabled = false;
+        // rows of a channel per block; larger blocks compress deltas over more rows but lose more on a crash
+        public int chunkRows = 256;
+    }
+
+    public static Params PARAMS = new Params();
+
+    private static final String DIRECTORY =
+            Environment.getExternalStorageDirectory().getAbsolutePath() + "/FIRST/RoadRunner/logs/";
+
+    private static ColumnarLogWriter writer;
+
+    private ColumnarLog() {
+    }
+
+    /**
+     * @return whether a log is open
+     */
+    public static synchronized boolean isActive() {
+        return writer != null;
+    }
+
+    /**
+     * Adds a row to the open log.
+     *
+     * @return false if no log is open, in which case the message wasn't written
+     */
+    public static synchronized boolean write(String channel, Object message) {
+        if (writer == null) {
+            return false;
+        }
+
+        try {
+            writer.write(channel, message);
+        } catch (IOException e) {
+            RobotLog.ee("ColumnarLog", e, "write failed, closing the log");
+            close();
+        }
+        return true;
+    }
+
+    private static synchronized void open(String name) {
+        close();
+
+        File dir = new File(DIRECTORY);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            RobotLog.ee("ColumnarLog", "couldn't create %s", DIRECTORY);
+            return;
+        }
+
+        File file = new File(dir, System.currentTimeMillis() + "__" + name + ".rrc");
+        try {
+            writer = new ColumnarLogWriter(file, PARAMS.chunkRows);
+        } catch (IOException e) {
+            RobotLog.ee("ColumnarLog", e, "couldn't open %s", file);
+        }
+    }
+
+    private static synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+
+        try {
+            writer.close();
+            RobotLog.ii("ColumnarLog", "wrote %d bytes", writer.getBytesWritten());
+        } catch (IOException e) {
+            RobotLog.ee("ColumnarLog", e, "close failed");
+        } finally {
+            writer = null;
+        }
+    }
+
+    @OnCreateEventLoop
+    public static void attachEventLoop(Context context, FtcEventLoop eventLoop) {
+        eventLoop.getOpModeManager().registerListener(new OpModeManagerNotifier.Notifications() {
+            @Override
+            public void onOpModePreInit(OpMode opMode) {
+                if (PARAMS.enabled) {
+                    open(opMode.getClass().getSimpleName());
+                }
+            }
+
+            @Override
+            public void onOpModePreStart(OpMode opMode) {
+            }
+
+            @Override
+            public void onOpModePostStop(OpMode opMode) {
+                close();
+            }
+        });
+    }
+}
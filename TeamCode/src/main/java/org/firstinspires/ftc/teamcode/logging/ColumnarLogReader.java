@@ -0,0 +1,306 @@
+package org.firstinspires.ftc.teamcode.logging;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a log written by {@link ColumnarLogWriter}, a column at a time.
+ * <p>
+ * The file is memory-mapped, and opening it only walks the block headers, so even a full match opens instantly;
+ * a column is decoded when it's asked for, whole or one data block at a time, skipping every other column's bytes.
+ * A log cut off mid-block (e.g. by a power loss) reads up to the last complete block.
+ */
+public final class ColumnarLogReader implements Closeable {
+    private static final class ChannelIndex {
+        final String[] columnNames;
+        final ColumnType[] columnTypes;
+        // payload offsets and row counts of the channel's data blocks
+        final List<Integer> blockOffsets = new ArrayList<>();
+        final List<Integer> blockRows = new ArrayList<>();
+        int rows;
+
+        ChannelIndex(String[] columnNames, ColumnType[] columnTypes) {
+            this.columnNames = columnNames;
+            this.columnTypes = columnTypes;
+        }
+
+        int column(String name) {
+            for (int i = 0; i < columnNames.length; i++) {
+                if (columnNames[i].equals(name)) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("no column " + name);
+        }
+    }
+
+    private ByteBuffer data;
+    private final Map<String, ChannelIndex> channels = new LinkedHashMap<>();
+
+    public ColumnarLogReader(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (data.limit() < 8) {
+            throw new IOException("not a columnar log");
+        }
+        for (int i = 0; i < ColumnarLogWriter.MAGIC.length; i++) {
+            if (data.get(i) != ColumnarLogWriter.MAGIC[i]) {
+                throw new IOException("not a columnar log");
+            }
+        }
+        int version = data.getInt(4);
+        if (version != ColumnarLogWriter.VERSION) {
+            throw new IOException("unsupported columnar log version: " + version);
+        }
+
+        index();
+    }
+
+    private void index() throws IOException {
+        List<ChannelIndex> byId = new ArrayList<>();
+
+        int pos = 8;
+        while (pos + 5 <= data.limit()) {
+            byte type = data.get(pos);
+            int length = data.getInt(pos + 1);
+            int payload = pos + 5;
+            if (length < 0 || payload + length > data.limit()) {
+                // cut off mid-write
+                break;
+            }
+
+            if (type == ColumnarLogWriter.BLOCK_SCHEMA) {
+                int p = payload + 4;
+                String name = getString(p);
+                p += 4 + data.getInt(p);
+
+                int n = data.getInt(p);
+                p += 4;
+                String[] columnNames = new String[n];
+                ColumnType[] columnTypes = new ColumnType[n];
+                for (int i = 0; i < n; i++) {
+                    columnNames[i] = getString(p);
+                    p += 4 + data.getInt(p);
+                    columnTypes[i] = ColumnType.fromTag(data.get(p));
+                    p++;
+                }
+
+                ChannelIndex channel = new ChannelIndex(columnNames, columnTypes);
+                channels.put(name, channel);
+                byId.add(channel);
+            } else if (type == ColumnarLogWriter.BLOCK_DATA) {
+                int id = data.getInt(payload);
+                if (id < 0 || id >= byId.size()) {
+                    throw new IOException("data for unknown channel " + id);
+                }
+
+                ChannelIndex channel = byId.get(id);
+                int rows = data.getInt(payload + 4);
+                channel.blockOffsets.add(payload);
+                channel.blockRows.add(rows);
+                channel.rows += rows;
+            }
+            // skip anything else, for forward compatibility
+
+            pos = payload + length;
+        }
+    }
+
+    public List<String> getChannels() {
+        return Collections.unmodifiableList(new ArrayList<>(channels.keySet()));
+    }
+
+    public boolean hasChannel(String channel) {
+        return channels.containsKey(channel);
+    }
+
+    public List<String> getColumns(String channel) {
+        return Collections.unmodifiableList(Arrays.asList(channel(channel).columnNames));
+    }
+
+    public ColumnType getColumnType(String channel, String column) {
+        ChannelIndex index = channel(channel);
+        return index.columnTypes[index.column(column)];
+    }
+
+    public int getRowCount(String channel) {
+        return channel(channel).rows;
+    }
+
+    public int getBlockCount(String channel) {
+        return channel(channel).blockOffsets.size();
+    }
+
+    public int getBlockRowCount(String channel, int block) {
+        return channel(channel).blockRows.get(block);
+    }
+
+    /**
+     * @return every value of an integer column ({@link ColumnType#LONG}, {@link ColumnType#INT}
+     * or {@link ColumnType#BOOLEAN}), in the order they were written
+     */
+    public long[] getLongs(String channel, String column) {
+        ChannelIndex index = channel(channel);
+        int c = longColumn(index, column);
+
+        long[] values = new long[index.rows];
+        int row = 0;
+        for (int b = 0; b < index.blockOffsets.size(); b++) {
+            row += decodeLongs(index, c, b, values, row);
+        }
+
+        return values;
+    }
+
+    /**
+     * Same as {@link #getLongs(String, String)}, but only the rows of one data block, so a log can be streamed
+     * without holding a whole column.
+     *
+     * @param into Receives the block's values from index 0; must hold {@link #getBlockRowCount} of them.
+     * @return the number of rows in the block
+     */
+    public int getLongs(String channel, String column, int block, long[] into) {
+        ChannelIndex index = channel(channel);
+        return decodeLongs(index, longColumn(index, column), block, into, 0);
+    }
+
+    /**
+     * @return every value of a column as doubles, in the order they were written
+     */
+    public double[] getDoubles(String channel, String column) {
+        ChannelIndex index = channel(channel);
+        int c = index.column(column);
+
+        double[] values = new double[index.rows];
+        int row = 0;
+        for (int b = 0; b < index.blockOffsets.size(); b++) {
+            row += decodeDoubles(index, c, b, values, row);
+        }
+
+        return values;
+    }
+
+    /**
+     * Same as {@link #getDoubles(String, String)}, but only the rows of one data block.
+     *
+     * @param into Receives the block's values from index 0; must hold {@link #getBlockRowCount} of them.
+     * @return the number of rows in the block
+     */
+    public int getDoubles(String channel, String column, int block, double[] into) {
+        ChannelIndex index = channel(channel);
+        return decodeDoubles(index, index.column(column), block, into, 0);
+    }
+
+    @Override
+    public void close() {
+        // the mapping is released when it's collected
+        data = null;
+    }
+
+    private ChannelIndex channel(String name) {
+        ChannelIndex index = channels.get(name);
+        if (index == null) {
+            throw new IllegalArgumentException("no channel " + name);
+        }
+        return index;
+    }
+
+    private static int longColumn(ChannelIndex index, String column) {
+        int c = index.column(column);
+        if (index.columnTypes[c] == ColumnType.DOUBLE) {
+            throw new IllegalArgumentException(column + " is a double column");
+        }
+        return c;
+    }
+
+    /**
+     * Decodes integer column {@code c} of data block {@code b} into {@code values}, starting at {@code offset}.
+     *
+     * @return the number of rows decoded
+     */
+    private int decodeLongs(ChannelIndex index, int c, int b, long[] values, int offset) {
+        int rows = index.blockRows.get(b);
+        int p = columnStart(index.blockOffsets.get(b), c) + 4;
+        if (index.columnTypes[c] == ColumnType.BOOLEAN) {
+            for (int r = 0; r < rows; r++) {
+                values[offset + r] = data.get(p++);
+            }
+        } else {
+            long last = 0;
+            for (int r = 0; r < rows; r++) {
+                long zigzag = 0;
+                int shift = 0;
+                byte next;
+                do {
+                    next = data.get(p++);
+                    zigzag |= (long) (next & 0x7F) << shift;
+                    shift += 7;
+                } while ((next & 0x80) != 0);
+
+                last += (zigzag >>> 1) ^ -(zigzag & 1);
+                values[offset + r] = last;
+            }
+        }
+
+        return rows;
+    }
+
+    /**
+     * Decodes column {@code c} of data block {@code b} into {@code values} as doubles, starting at {@code offset}.
+     *
+     * @return the number of rows decoded
+     */
+    private int decodeDoubles(ChannelIndex index, int c, int b, double[] values, int offset) {
+        int rows = index.blockRows.get(b);
+        if (index.columnTypes[c] != ColumnType.DOUBLE) {
+            long[] longs = new long[rows];
+            decodeLongs(index, c, b, longs, 0);
+            for (int r = 0; r < rows; r++) {
+                values[offset + r] = longs[r];
+            }
+            return rows;
+        }
+
+        int p = columnStart(index.blockOffsets.get(b), c) + 4;
+        for (int r = 0; r < rows; r++) {
+            values[offset + r] = data.getDouble(p);
+            p += 8;
+        }
+
+        return rows;
+    }
+
+    /**
+     * @return the offset of column {@code c}'s byte length within the data block at {@code payload}
+     */
+    private int columnStart(int payload, int c) {
+        int p = payload + 8;
+        for (int i = 0; i < c; i++) {
+            p += 4 + data.getInt(p);
+        }
+        return p;
+    }
+
+    private String getString(int p) {
+        int length = data.getInt(p);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = data.get(p + 4 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,407 @@
+package org.firstinspires.ftc.teamcode.logging;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes messages to a channel-oriented log: rows are buffered per channel and written a block of columns at a time.
+ * <p>
+ * A log is the magic {@code "RRCL"} and a version int, followed by blocks. Each block is a type byte and an int
+ * payload length, so readers can skip what they don't need:
+ * <ul>
+ *     <li>schema (type 0): the channel id and name, then the name and {@link ColumnType} tag of every column</li>
+ *     <li>data (type 1): the channel id and row count, then each column as an int byte length and its values</li>
+ * </ul>
+ * A channel's schema comes from the class of its first message. Public primitive and enum fields become columns;
+ * object fields (such as a {@code PositionVelocityPair}) are flattened as {@code "name.field"}, and arrays as
+ * {@code "name[i]"} with the length of the first message. Integer columns are stored as zigzag varint deltas,
+ * so timestamps and encoder positions take a byte or two per row; doubles take eight.
+ * Everything is big-endian and strings are int-length-prefixed UTF-8.
+ * <p>
+ * Not thread-safe.
+ */
+public final class ColumnarLogWriter implements Closeable {
+    static final byte[] MAGIC = {'R', 'R', 'C', 'L'};
+    static final int VERSION = 1;
+
+    static final byte BLOCK_SCHEMA = 0;
+    static final byte BLOCK_DATA = 1;
+
+    private static final class Column {
+        final String name;
+        final ColumnType type;
+        // the fields from the message down to this column; an index >= 0 reads that array element
+        final Field[] fields;
+        final int[] indices;
+
+        Column(String name, ColumnType type, List<Field> fields, List<Integer> indices) {
+            this.name = name;
+            this.type = type;
+            this.fields = fields.toArray(new Field[0]);
+            this.indices = new int[indices.size()];
+            for (int i = 0; i < this.indices.length; i++) {
+                this.indices[i] = indices.get(i);
+            }
+        }
+
+        /**
+         * @return the value as a long (booleans as 0 or 1, enums as their ordinal), or 0 if a parent is null
+         */
+        long readInteger(Object message) throws IllegalAccessException {
+            Object parent = parent(message);
+            if (parent == null) {
+                return 0;
+            }
+
+            Field last = fields[fields.length - 1];
+            int index = indices[indices.length - 1];
+            Class<?> t = last.getType();
+            if (index >= 0) {
+                parent = last.get(parent);
+                if (parent == null) {
+                    return 0;
+                }
+                t = t.getComponentType();
+            }
+
+            if (t == long.class) {
+                return index >= 0 ? Array.getLong(parent, index) : last.getLong(parent);
+            } else if (t == boolean.class) {
+                return (index >= 0 ? Array.getBoolean(parent, index) : last.getBoolean(parent)) ? 1 : 0;
+            } else if (t.isEnum()) {
+                Object e = index >= 0 ? Array.get(parent, index) : last.get(parent);
+                return e == null ? -1 : ((Enum<?>) e).ordinal();
+            } else {
+                return index >= 0 ? Array.getInt(parent, index) : last.getInt(parent);
+            }
+        }
+
+        double readDouble(Object message) throws IllegalAccessException {
+            Object parent = parent(message);
+            if (parent == null) {
+                return 0.0;
+            }
+
+            Field last = fields[fields.length - 1];
+            int index = indices[indices.length - 1];
+            if (index >= 0) {
+                Object array = last.get(parent);
+                return array == null ? 0.0 : Array.getDouble(array, index);
+            }
+            return last.getDouble(parent);
+        }
+
+        private Object parent(Object message) throws IllegalAccessException {
+            Object o = message;
+            for (int i = 0; i < fields.length - 1 && o != null; i++) {
+                o = fields[i].get(o);
+                if (o != null && indices[i] >= 0) {
+                    o = Array.getLength(o) > indices[i] ? Array.get(o, indices[i]) : null;
+                }
+            }
+            return o;
+        }
+    }
+
+    private static final class ChannelState {
+        final int id;
+        final Class<?> messageClass;
+        final Column[] columns;
+        // per column, whichever matches its type
+        final long[][] integers;
+        final double[][] doubles;
+        int rows;
+
+        ChannelState(int id, Class<?> messageClass, Column[] columns, int chunkRows) {
+            this.id = id;
+            this.messageClass = messageClass;
+            this.columns = columns;
+            integers = new long[columns.length][];
+            doubles = new double[columns.length][];
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i].type == ColumnType.DOUBLE) {
+                    doubles[i] = new double[chunkRows];
+                } else {
+                    integers[i] = new long[chunkRows];
+                }
+            }
+        }
+    }
+
+    public final int chunkRows;
+
+    private final FileOutputStream out;
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+    private final Map<String, ChannelState> channels = new HashMap<>();
+    private final List<ChannelState> channelList = new ArrayList<>();
+    private long bytesWritten;
+
+    /**
+     * @param chunkRows How many rows of a channel to buffer before writing them as a block.
+     */
+    public ColumnarLogWriter(File file, int chunkRows) throws IOException {
+        if (chunkRows < 1) {
+            throw new IllegalArgumentException("chunkRows must be positive");
+        }
+        this.chunkRows = chunkRows;
+
+        out = new FileOutputStream(file);
+        channel = out.getChannel();
+
+        buffer.put(MAGIC);
+        buffer.putInt(VERSION);
+        drain();
+    }
+
+    /**
+     * Adds {@code message} as a row of {@code channelName}, writing the channel's schema first if it's new.
+     */
+    public void write(String channelName, Object message) throws IOException {
+        ChannelState state = channels.get(channelName);
+        if (state == null) {
+            state = addChannel(channelName, message);
+        } else if (message.getClass() != state.messageClass) {
+            throw new IllegalArgumentException("channel " + channelName + " holds "
+                    + state.messageClass.getName() + ", not " + message.getClass().getName());
+        }
+
+        int row = state.rows;
+        try {
+            for (int i = 0; i < state.columns.length; i++) {
+                Column column = state.columns[i];
+                if (column.type == ColumnType.DOUBLE) {
+                    state.doubles[i][row] = column.readDouble(message);
+                } else {
+                    state.integers[i][row] = column.readInteger(message);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(e);
+        }
+
+        state.rows++;
+        if (state.rows == chunkRows) {
+            writeData(state);
+        }
+    }
+
+    /**
+     * Writes every buffered row.
+     */
+    public void flush() throws IOException {
+        for (ChannelState state : channelList) {
+            if (state.rows > 0) {
+                writeData(state);
+            }
+        }
+    }
+
+    /**
+     * @return the size of the log so far, not counting buffered rows (in bytes)
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+            out.close();
+        }
+    }
+
+    private ChannelState addChannel(String name, Object message) throws IOException {
+        List<Column> columns = new ArrayList<>();
+        try {
+            flatten(message.getClass(), message, "", new ArrayList<Field>(), new ArrayList<Integer>(), columns);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(e);
+        }
+
+        ChannelState state = new ChannelState(channelList.size(), message.getClass(),
+                columns.toArray(new Column[0]), chunkRows);
+        channels.put(name, state);
+        channelList.add(state);
+
+        int start = beginBlock(BLOCK_SCHEMA);
+        buffer.putInt(state.id);
+        putString(name);
+        ensure(4);
+        buffer.putInt(state.columns.length);
+        for (Column column : state.columns) {
+            putString(column.name);
+            ensure(1);
+            buffer.put(column.type.tag);
+        }
+        endBlock(start);
+
+        return state;
+    }
+
+    private static void flatten(Class<?> cls, Object sample, String prefix, List<Field> fields,
+                                List<Integer> indices, List<Column> out) throws IllegalAccessException {
+        for (Field f : cls.getDeclaredFields()) {
+            int modifiers = f.getModifiers();
+            if (!Modifier.isPublic(modifiers) || Modifier.isStatic(modifiers)) {
+                continue;
+            }
+
+            Class<?> t = f.getType();
+            String name = prefix + f.getName();
+            Object value = sample == null ? null : f.get(sample);
+
+            fields.add(f);
+            if (t.isArray()) {
+                Class<?> component = t.getComponentType();
+                int length = value == null ? 0 : Array.getLength(value);
+                for (int i = 0; i < length; i++) {
+                    indices.add(i);
+                    String elementName = name + "[" + i + "]";
+                    ColumnType type = columnType(component);
+                    if (type != null) {
+                        out.add(new Column(elementName, type, fields, indices));
+                    } else {
+                        flatten(component, Array.get(value, i), elementName + ".", fields, indices, out);
+                    }
+                    indices.remove(indices.size() - 1);
+                }
+            } else {
+                indices.add(-1);
+                ColumnType type = columnType(t);
+                if (type != null) {
+                    out.add(new Column(name, type, fields, indices));
+                } else if (t == String.class) {
+                    throw new IllegalArgumentException("string fields aren't supported: " + name);
+                } else {
+                    flatten(t, value, name + ".", fields, indices, out);
+                }
+                indices.remove(indices.size() - 1);
+            }
+            fields.remove(fields.size() - 1);
+        }
+    }
+
+    /**
+     * @return the column type of a field of type {@code t}, or null if it has to be flattened
+     */
+    private static ColumnType columnType(Class<?> t) {
+        if (t == long.class) {
+            return ColumnType.LONG;
+        } else if (t == int.class || t == short.class || t == byte.class || t == char.class || t.isEnum()) {
+            return ColumnType.INT;
+        } else if (t == double.class || t == float.class) {
+            return ColumnType.DOUBLE;
+        } else if (t == boolean.class) {
+            return ColumnType.BOOLEAN;
+        }
+        return null;
+    }
+
+    private void writeData(ChannelState state) throws IOException {
+        int rows = state.rows;
+
+        int start = beginBlock(BLOCK_DATA);
+        buffer.putInt(state.id);
+        buffer.putInt(rows);
+        for (int i = 0; i < state.columns.length; i++) {
+            ensure(4);
+            int lengthPosition = buffer.position();
+            buffer.putInt(0);
+
+            ColumnType type = state.columns[i].type;
+            if (type == ColumnType.DOUBLE) {
+                ensure(8 * rows);
+                double[] values = state.doubles[i];
+                for (int r = 0; r < rows; r++) {
+                    buffer.putDouble(values[r]);
+                }
+            } else if (type == ColumnType.BOOLEAN) {
+                ensure(rows);
+                long[] values = state.integers[i];
+                for (int r = 0; r < rows; r++) {
+                    buffer.put((byte) values[r]);
+                }
+            } else {
+                long[] values = state.integers[i];
+                long last = 0;
+                for (int r = 0; r < rows; r++) {
+                    putVarLong(values[r] - last);
+                    last = values[r];
+                }
+            }
+
+            buffer.putInt(lengthPosition, buffer.position() - lengthPosition - 4);
+        }
+        endBlock(start);
+
+        state.rows = 0;
+    }
+
+    private int beginBlock(byte type) {
+        // with room for the channel id and one more int
+        ensure(13);
+        buffer.put(type);
+        int start = buffer.position();
+        buffer.putInt(0);
+        return start;
+    }
+
+    private void endBlock(int start) throws IOException {
+        buffer.putInt(start, buffer.position() - start - 4);
+        drain();
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        bytesWritten += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void putString(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        ensure(4 + bytes.length);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private void putVarLong(long v) {
+        ensure(10);
+        long zigzag = (v << 1) ^ (v >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        buffer.flip();
+        bigger.put(buffer);
+        buffer = bigger;
+    }
+}
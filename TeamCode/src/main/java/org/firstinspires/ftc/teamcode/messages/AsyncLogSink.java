@@ -0,0 +1,123 @@
+package org.firstinspires.ftc.teamcode.messages;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.acmerobotics.roadrunner.ftc.FlightRecorder;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Moves {@link FlightRecorder} serialization and disk writes off the control loop.
+ * <p>
+ * Every {@link PooledWriter} created while {@link Params#enabled} is set registers here; its ring becomes a
+ * lock-free queue that the loop fills and a background thread drains, serializing whatever each writer has
+ * published in one batch. A full ring drops messages and counts them rather than making the loop wait.
+ * <p>
+ * The thread holds its writers weakly and stops once they've all been collected (e.g. after the op mode
+ * that created them ends), starting again when a new one registers. Anything still queued then is lost,
+ * at most a few milliseconds of messages. Channels written directly with {@link FlightRecorder#write}
+ * (the {@code PARAMS} written at startup) stay synchronous.
+ */
+@Config
+public final class AsyncLogSink {
+    public static class Params {
+        // applies to writers created after it's set, i.e. from the next op mode on
+        public boolean enabled = false;
+        // how long the thread sleeps when every ring is empty (in milliseconds)
+        public long drainPeriodMs = 5;
+    }
+
+    public static Params PARAMS = new Params();
+
+    private static final List<WeakReference<PooledWriter<?>>> WRITERS = new CopyOnWriteArrayList<>();
+
+    // guarded by AsyncLogSink.class
+    private static Thread thread;
+
+    private static volatile long written;
+
+    private AsyncLogSink() {}
+
+    static void register(PooledWriter<?> writer) {
+        synchronized (AsyncLogSink.class) {
+            WRITERS.add(new WeakReference<>(writer));
+            if (thread == null) {
+                thread = new Thread(AsyncLogSink::run, "AsyncLogSink");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * @return how many messages the sink has serialized
+     */
+    public static long getWrittenCount() {
+        return written;
+    }
+
+    /**
+     * @return how many messages live writers have dropped because their ring was full
+     */
+    public static long getOverflowCount() {
+        long overflows = 0;
+        for (WeakReference<PooledWriter<?>> ref : WRITERS) {
+            PooledWriter<?> writer = ref.get();
+            if (writer != null) {
+                overflows += writer.getOverflows();
+            }
+        }
+
+        return overflows;
+    }
+
+    /**
+     * @return the largest {@link PooledWriter#getBacklogFraction()} of the live writers
+     */
+    public static double getMaxBacklogFraction() {
+        double max = 0.0;
+        for (WeakReference<PooledWriter<?>> ref : WRITERS) {
+            PooledWriter<?> writer = ref.get();
+            if (writer != null) {
+                max = Math.max(max, writer.getBacklogFraction());
+            }
+        }
+
+        return max;
+    }
+
+    private static void run() {
+        while (true) {
+            int drained = 0;
+            for (WeakReference<PooledWriter<?>> ref : WRITERS) {
+                PooledWriter<?> writer = ref.get();
+                if (writer == null) {
+                    WRITERS.remove(ref);
+                } else {
+                    drained += writer.drain();
+                }
+            }
+            written += drained;
+
+            synchronized (AsyncLogSink.class) {
+                if (WRITERS.isEmpty()) {
+                    thread = null;
+                    return;
+                }
+            }
+
+            // keep draining while there's a backlog
+            if (drained == 0) {
+                try {
+                    Thread.sleep(Math.max(1, PARAMS.drainPeriodMs));
+                } catch (InterruptedException e) {
+                    synchronized (AsyncLogSink.class) {
+                        thread = null;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+}
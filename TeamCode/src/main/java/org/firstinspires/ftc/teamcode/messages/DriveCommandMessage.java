@@ -12,13 +12,34 @@ public final class DriveCommandMessage {
     public double angularVelocity;
     public double angularAcceleration;
 
+    public DriveCommandMessage() {
+    }
+
     public DriveCommandMessage(PoseVelocity2dDual<Time> poseVelocity) {
-        this.timestamp = System.nanoTime();
-        this.forwardVelocity = poseVelocity.linearVel.x.get(0);
-        this.forwardAcceleration = poseVelocity.linearVel.x.get(1);
-        this.lateralVelocity = poseVelocity.linearVel.y.get(0);
-        this.lateralAcceleration = poseVelocity.linearVel.y.get(1);
-        this.angularVelocity = poseVelocity.angVel.get(0);
-        this.angularAcceleration = poseVelocity.angVel.get(1);
+        fill(System.nanoTime(), poseVelocity);
+    }
+
+    public DriveCommandMessage fill(long timestamp, PoseVelocity2dDual<Time> poseVelocity) {
+        return fill(timestamp,
+                poseVelocity.linearVel.x.get(0), poseVelocity.linearVel.x.get(1),
+                poseVelocity.linearVel.y.get(0), poseVelocity.linearVel.y.get(1),
+                poseVelocity.angVel.get(0), poseVelocity.angVel.get(1));
+    }
+
+    /**
+     * Overwrites every field, for reuse through a {@link PooledWriter}.
+     */
+    public DriveCommandMessage fill(long timestamp,
+                                    double forwardVelocity, double forwardAcceleration,
+                                    double lateralVelocity, double lateralAcceleration,
+                                    double angularVelocity, double angularAcceleration) {
+        this.timestamp = timestamp;
+        this.forwardVelocity = forwardVelocity;
+        this.forwardAcceleration = forwardAcceleration;
+        this.lateralVelocity = lateralVelocity;
+        this.lateralAcceleration = lateralAcceleration;
+        this.angularVelocity = angularVelocity;
+        this.angularAcceleration = angularAcceleration;
+        return this;
     }
 }
@@ -0,0 +1,151 @@
+package org.firstinspires.ftc.teamcode.messages;
+
+import android.content.Context;
+
+import com.acmerobotics.dashboard.config.Config;
+import com.qualcomm.ftccommon.FtcEventLoop;
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+import com.qualcomm.robotcore.eventloop.opmode.OpModeManagerNotifier;
+
+import org.firstinspires.ftc.ftccommon.external.OnCreateEventLoop;
+
+/**
+ * Adapts how often downsampled {@link PooledWriter} channels are written to how loaded the loop is.
+ * <p>
+ * With {@link Params#enabled} set, the drive reports each loop period through {@link #update(long)}. While the
+ * smoothed period and the {@link AsyncLogSink} backlog are within budget, the logging period shrinks a little
+ * every loop towards {@link Params#minPeriodMs}; once either goes over, it doubles (at most once per period)
+ * up to {@link Params#maxPeriodMs}. The period applies by {@link PooledWriter.Priority}:
+ * <ul>
+ *     <li>{@code CRITICAL} channels are written every time, whatever the load</li>
+ *     <li>{@code NORMAL} channels are written at the adaptive period</li>
+ *     <li>{@code LOW} channels are written at {@link Params#lowPriorityMultiplier} times it</li>
+ * </ul>
+ * Writers that write every message anyway (a period of 0, like the localizer inputs) aren't affected.
+ * Disabled, every writer keeps the period it was created with.
+ * <p>
+ * The period and smoothing start over when an op mode is initialized, so one op mode's load doesn't carry into
+ * the next. Only call {@link #update(long)} from the loop thread.
+ */
+@Config
+public final class LogRatePolicy {
+    public static class Params {
+        public boolean enabled = false;
+        // the fastest and slowest NORMAL channels are written (in milliseconds)
+        public double minPeriodMs = 10;
+        public double maxPeriodMs = 200;
+        // back off once the smoothed loop period exceeds this (in milliseconds)
+        public double loopBudgetMs = 20;
+        // or once any async ring is this full (0 to 1)
+        public double backlogBudget = 0.5;
+        public double lowPriorityMultiplier = 4;
+        // fraction of the period removed each loop within budget
+        public double recoveryRate = 0.02;
+    }
+
+    public static Params PARAMS = new Params();
+
+    private static final long DEFAULT_PERIOD_NANOS = 50_000_000;
+    // loop periods longer than this are pauses (e.g. between init and start), not load
+    private static final long MAX_LOOP_NANOS = 1_000_000_000;
+    private static final double LOOP_SMOOTHING = 0.1;
+
+    private static volatile long periodNanos = DEFAULT_PERIOD_NANOS;
+    private static volatile boolean overBudget;
+
+    private static double smoothedLoopNanos;
+    private static long lastBackoffNanos;
+
+    private LogRatePolicy() {}
+
+    /**
+     * Adapts the period to the length of the last loop. Does nothing while disabled.
+     */
+    public static void update(long loopPeriodNanos) {
+        if (!PARAMS.enabled || loopPeriodNanos <= 0 || loopPeriodNanos > MAX_LOOP_NANOS) {
+            return;
+        }
+
+        smoothedLoopNanos = smoothedLoopNanos == 0.0 ? loopPeriodNanos
+                : smoothedLoopNanos + LOOP_SMOOTHING * (loopPeriodNanos - smoothedLoopNanos);
+
+        long min = (long) (PARAMS.minPeriodMs * 1e6);
+        long max = Math.max(min, (long) (PARAMS.maxPeriodMs * 1e6));
+        long period = Math.min(Math.max(periodNanos, min), max);
+
+        overBudget = smoothedLoopNanos > PARAMS.loopBudgetMs * 1e6
+                || AsyncLogSink.getMaxBacklogFraction() > PARAMS.backlogBudget;
+        if (overBudget) {
+            // give the last back-off a period to take effect
+            long now = System.nanoTime();
+            if (now - lastBackoffNanos >= period) {
+                period = Math.min(period * 2, max);
+                lastBackoffNanos = now;
+            }
+        } else {
+            period = Math.max(min, (long) (period * (1.0 - PARAMS.recoveryRate)));
+        }
+
+        periodNanos = period;
+    }
+
+    /**
+     * Goes back to the default period and forgets the smoothed loop period.
+     */
+    public static void reset() {
+        periodNanos = DEFAULT_PERIOD_NANOS;
+        overBudget = false;
+        smoothedLoopNanos = 0.0;
+        lastBackoffNanos = 0;
+    }
+
+    /**
+     * @return the current period of {@code NORMAL} channels while enabled (in nanoseconds)
+     */
+    public static long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    /**
+     * @return whether the last update found the loop or the sink over budget
+     */
+    public static boolean isOverBudget() {
+        return overBudget;
+    }
+
+    /**
+     * @return the period a writer created with {@code basePeriodNanos} should use now
+     */
+    static long periodNanos(long basePeriodNanos, PooledWriter.Priority priority) {
+        if (!PARAMS.enabled || basePeriodNanos == 0) {
+            return basePeriodNanos;
+        }
+
+        switch (priority) {
+            case CRITICAL:
+                return 0;
+            case LOW:
+                return (long) (periodNanos * PARAMS.lowPriorityMultiplier);
+            default:
+                return periodNanos;
+        }
+    }
+
+    @OnCreateEventLoop
+    public static void attachEventLoop(Context context, FtcEventLoop eventLoop) {
+        eventLoop.getOpModeManager().registerListener(new OpModeManagerNotifier.Notifications() {
+            @Override
+            public void onOpModePreInit(OpMode opMode) {
+                reset();
+            }
+
+            @Override
+            public void onOpModePreStart(OpMode opMode) {
+            }
+
+            @Override
+            public void onOpModePostStop(OpMode opMode) {
+            }
+        });
+    }
+}
@@ -8,12 +8,23 @@ public final class MecanumCommandMessage {
     public double rightBackPower;
     public double rightFrontPower;
 
+    public MecanumCommandMessage() {
+    }
+
     public MecanumCommandMessage(double voltage, double leftFrontPower, double leftBackPower, double rightBackPower, double rightFrontPower) {
-        this.timestamp = System.nanoTime();
+        fill(System.nanoTime(), voltage, leftFrontPower, leftBackPower, rightBackPower, rightFrontPower);
+    }
+
+    /**
+     * Overwrites every field, for reuse through a {@link PooledWriter}.
+     */
+    public MecanumCommandMessage fill(long timestamp, double voltage, double leftFrontPower, double leftBackPower, double rightBackPower, double rightFrontPower) {
+        this.timestamp = timestamp;
         this.voltage = voltage;
         this.leftFrontPower = leftFrontPower;
         this.leftBackPower = leftBackPower;
         this.rightBackPower = rightBackPower;
         this.rightFrontPower = rightFrontPower;
+        return this;
     }
 }
@@ -14,9 +14,27 @@ public final class MecanumLocalizerInputsMessage {
     public double yaw;
     public double pitch;
     public double roll;
+    public boolean imuFresh;
+
+    public MecanumLocalizerInputsMessage() {
+    }
 
     public MecanumLocalizerInputsMessage(PositionVelocityPair leftFront, PositionVelocityPair leftBack, PositionVelocityPair rightBack, PositionVelocityPair rightFront, YawPitchRollAngles angles) {
-        this.timestamp = System.nanoTime();
+        this(leftFront, leftBack, rightBack, rightFront, angles, true);
+    }
+
+    /**
+     * @param imuFresh Whether {@code angles} were read this tick, rather than repeated from an earlier read.
+     */
+    public MecanumLocalizerInputsMessage(PositionVelocityPair leftFront, PositionVelocityPair leftBack, PositionVelocityPair rightBack, PositionVelocityPair rightFront, YawPitchRollAngles angles, boolean imuFresh) {
+        fill(System.nanoTime(), leftFront, leftBack, rightBack, rightFront, angles, imuFresh);
+    }
+
+    /**
+     * Overwrites every field, for reuse through a {@link PooledWriter}.
+     */
+    public MecanumLocalizerInputsMessage fill(long timestamp, PositionVelocityPair leftFront, PositionVelocityPair leftBack, PositionVelocityPair rightBack, PositionVelocityPair rightFront, YawPitchRollAngles angles, boolean imuFresh) {
+        this.timestamp = timestamp;
         this.leftFront = leftFront;
         this.leftBack = leftBack;
         this.rightBack = rightBack;
@@ -26,5 +44,7 @@ public final class MecanumLocalizerInputsMessage {
             this.pitch = angles.getPitch(AngleUnit.RADIANS);
             this.roll = angles.getRoll(AngleUnit.RADIANS);
         }
+        this.imuFresh = imuFresh;
+        return this;
     }
 }
@@ -0,0 +1,158 @@
+package org.firstinspires.ftc.teamcode.messages;
+
+import com.acmerobotics.roadrunner.ftc.DownsampledWriter;
+import com.acmerobotics.roadrunner.ftc.FlightRecorder;
+
+import org.firstinspires.ftc.teamcode.logging.ColumnarLog;
+
+import java.util.function.Supplier;
+
+/**
+ * Writes a channel like {@link DownsampledWriter}, but with messages taken from a ring of preallocated instances,
+ * and decides whether a write is due before the message is built:
+ * <pre>
+ * PoseMessage m = writer.acquire();
+ * if (m != null) {
+ *     writer.write(m.fill(timestamp, x, y, heading));
+ * }
+ * </pre>
+ * Normally the message is serialized during {@link #write(Object)} and its slot comes around again
+ * {@code capacity} writes later. With {@link AsyncLogSink.Params#enabled} set when the writer is created,
+ * {@link #write(Object)} only publishes the slot, and the sink's thread serializes it later; while the ring is
+ * full of unserialized messages, {@link #acquire()} drops the write and counts an overflow instead of blocking.
+ * <p>
+ * With {@link LogRatePolicy.Params#enabled} set, a downsampled writer's period follows the loop load according to its
+ * {@link Priority} instead of staying at {@link #maxPeriodNanos}.
+ * <p>
+ * Messages go to the {@link ColumnarLog} while one is open, and to the RoadRunner log otherwise.
+ * <p>
+ * Each writer belongs to the one thread that writes its channel, and a message must not be kept after it's written.
+ */
+public final class PooledWriter<T> {
+    public static final int DEFAULT_CAPACITY = 32;
+
+    /**
+     * How a channel is treated by {@link LogRatePolicy}.
+     */
+    public enum Priority {
+        // written every time while the policy is enabled
+        CRITICAL,
+        NORMAL,
+        // written less often than NORMAL channels
+        LOW
+    }
+
+    public final String channel;
+    // 0 writes every message; otherwise the period while LogRatePolicy is disabled
+    public final long maxPeriodNanos;
+    public final Priority priority;
+    public final boolean async;
+
+    private final Object[] ring;
+    private long nextWriteNanos;
+
+    // single producer, single consumer: the writing thread only advances published, the sink only consumed
+    private volatile long published, consumed;
+    private volatile long overflows;
+
+    public PooledWriter(String channel, long maxPeriodNanos, Supplier<T> factory) {
+        this(channel, maxPeriodNanos, Priority.NORMAL, DEFAULT_CAPACITY, factory);
+    }
+
+    public PooledWriter(String channel, long maxPeriodNanos, Priority priority, Supplier<T> factory) {
+        this(channel, maxPeriodNanos, priority, DEFAULT_CAPACITY, factory);
+    }
+
+    public PooledWriter(String channel, long maxPeriodNanos, int capacity, Supplier<T> factory) {
+        this(channel, maxPeriodNanos, Priority.NORMAL, capacity, factory);
+    }
+
+    public PooledWriter(String channel, long maxPeriodNanos, Priority priority, int capacity, Supplier<T> factory) {
+        this.channel = channel;
+        this.maxPeriodNanos = maxPeriodNanos;
+        this.priority = priority;
+
+        ring = new Object[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = factory.get();
+        }
+
+        async = AsyncLogSink.PARAMS.enabled;
+        if (async) {
+            AsyncLogSink.register(this);
+        }
+    }
+
+    /**
+     * @return the next message to fill, or null if the downsampler would drop it or the ring is full
+     */
+    @SuppressWarnings("unchecked")
+    public T acquire() {
+        long period = LogRatePolicy.periodNanos(maxPeriodNanos, priority);
+        if (period > 0) {
+            long now = System.nanoTime();
+            if (now < nextWriteNanos) {
+                return null;
+            }
+
+            // same schedule as DownsampledWriter
+            nextWriteNanos = (now / period + 1) * period;
+        }
+
+        long slot = published;
+        if (async && slot - consumed == ring.length) {
+            overflows++;
+            return null;
+        }
+
+        return (T) ring[(int) (slot % ring.length)];
+    }
+
+    /**
+     * Writes the message returned by the last {@link #acquire()}.
+     */
+    public void write(T message) {
+        if (!async) {
+            record(message);
+        }
+
+        // publishes the message's fields to the sink
+        published++;
+    }
+
+    /**
+     * @return how many messages were dropped because the sink fell behind
+     */
+    public long getOverflows() {
+        return overflows;
+    }
+
+    /**
+     * @return the fraction of the ring published but not yet serialized by the sink; always 0 if not async
+     */
+    public double getBacklogFraction() {
+        return async ? (double) (published - consumed) / ring.length : 0.0;
+    }
+
+    /**
+     * Serializes every published message. Only called from the sink's thread.
+     *
+     * @return how many messages were serialized
+     */
+    int drain() {
+        long end = published;
+        long start = consumed;
+        for (long i = start; i < end; i++) {
+            record(ring[(int) (i % ring.length)]);
+        }
+
+        consumed = end;
+        return (int) (end - start);
+    }
+
+    private void record(Object message) {
+        if (!ColumnarLog.write(channel, message)) {
+            FlightRecorder.write(channel, message);
+        }
+    }
+}
@@ -8,11 +8,26 @@ public final class PoseMessage {
     public double y;
     public double heading;
 
+    public PoseMessage() {
+    }
+
     public PoseMessage(Pose2d pose) {
-        this.timestamp = System.nanoTime();
-        this.x = pose.position.x;
-        this.y = pose.position.y;
-        this.heading = pose.heading.toDouble();
+        fill(System.nanoTime(), pose);
+    }
+
+    public PoseMessage fill(long timestamp, Pose2d pose) {
+        return fill(timestamp, pose.position.x, pose.position.y, pose.heading.toDouble());
+    }
+
+    /**
+     * Overwrites every field, for reuse through a {@link PooledWriter}.
+     */
+    public PoseMessage fill(long timestamp, double x, double y, double heading) {
+        this.timestamp = timestamp;
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+        return this;
     }
 }
 
@@ -6,10 +6,21 @@ public final class TankCommandMessage {
     public double leftPower;
     public double rightPower;
 
+    public TankCommandMessage() {
+    }
+
     public TankCommandMessage(double voltage, double leftPower, double rightPower) {
-        this.timestamp = System.nanoTime();
+        fill(System.nanoTime(), voltage, leftPower, rightPower);
+    }
+
+    /**
+     * Overwrites every field, for reuse through a {@link PooledWriter}.
+     */
+    public TankCommandMessage fill(long timestamp, double voltage, double leftPower, double rightPower) {
+        this.timestamp = timestamp;
         this.voltage = voltage;
         this.leftPower = leftPower;
         this.rightPower = rightPower;
+        return this;
     }
 }
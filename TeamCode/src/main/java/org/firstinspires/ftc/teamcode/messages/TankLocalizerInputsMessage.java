@@ -14,4 +14,26 @@ public final class TankLocalizerInputsMessage {
         this.left = left.toArray(new PositionVelocityPair[0]);
         this.right = right.toArray(new PositionVelocityPair[0]);
     }
+
+    /**
+     * Makes an empty message for a {@link PooledWriter}, with room for this many readings on each side.
+     */
+    public TankLocalizerInputsMessage(int leftCount, int rightCount) {
+        this.left = new PositionVelocityPair[leftCount];
+        this.right = new PositionVelocityPair[rightCount];
+    }
+
+    /**
+     * Overwrites every field; {@code left} and {@code right} must have the sizes the message was made with.
+     */
+    public TankLocalizerInputsMessage fill(long timestamp, List<PositionVelocityPair> left, List<PositionVelocityPair> right) {
+        this.timestamp = timestamp;
+        for (int i = 0; i < this.left.length; i++) {
+            this.left[i] = left.get(i);
+        }
+        for (int i = 0; i < this.right.length; i++) {
+            this.right[i] = right.get(i);
+        }
+        return this;
+    }
 }
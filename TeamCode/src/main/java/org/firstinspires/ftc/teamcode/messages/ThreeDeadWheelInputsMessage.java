@@ -8,10 +8,21 @@ public final class ThreeDeadWheelInputsMessage {
     public PositionVelocityPair par1;
     public PositionVelocityPair perp;
 
+    public ThreeDeadWheelInputsMessage() {
+    }
+
     public ThreeDeadWheelInputsMessage(PositionVelocityPair par0, PositionVelocityPair par1, PositionVelocityPair perp) {
-        this.timestamp = System.nanoTime();
+        fill(System.nanoTime(), par0, par1, perp);
+    }
+
+    /**
+     * Overwrites every field, for reuse through a {@link PooledWriter}.
+     */
+    public ThreeDeadWheelInputsMessage fill(long timestamp, PositionVelocityPair par0, PositionVelocityPair par1, PositionVelocityPair perp) {
+        this.timestamp = timestamp;
         this.par0 = par0;
         this.par1 = par1;
         this.perp = perp;
+        return this;
     }
 }
\ No newline at end of file
@@ -16,9 +16,28 @@ public final class TwoDeadWheelInputsMessage {
     public double xRotationRate;
     public double yRotationRate;
     public double zRotationRate;
+    public boolean imuFresh;
+
+    public TwoDeadWheelInputsMessage() {
+    }
 
     public TwoDeadWheelInputsMessage(PositionVelocityPair par, PositionVelocityPair perp, YawPitchRollAngles angles, AngularVelocity angularVelocity) {
-        this.timestamp = System.nanoTime();
+        this(par, perp, angles, angularVelocity, true);
+    }
+
+    /**
+     * @param imuFresh Whether {@code angles} and {@code angularVelocity} were read this tick,
+     *                 rather than repeated from an earlier read.
+     */
+    public TwoDeadWheelInputsMessage(PositionVelocityPair par, PositionVelocityPair perp, YawPitchRollAngles angles, AngularVelocity angularVelocity, boolean imuFresh) {
+        fill(System.nanoTime(), par, perp, angles, angularVelocity, imuFresh);
+    }
+
+    /**
+     * Overwrites every field, for reuse through a {@link PooledWriter}.
+     */
+    public TwoDeadWheelInputsMessage fill(long timestamp, PositionVelocityPair par, PositionVelocityPair perp, YawPitchRollAngles angles, AngularVelocity angularVelocity, boolean imuFresh) {
+        this.timestamp = timestamp;
         this.par = par;
         this.perp = perp;
         {
@@ -31,5 +50,7 @@ public final class TwoDeadWheelInputsMessage {
             this.yRotationRate = angularVelocity.yRotationRate;
             this.zRotationRate = angularVelocity.zRotationRate;
         }
+        this.imuFresh = imuFresh;
+        return this;
     }
 }
@@ -8,9 +8,14 @@ import com.acmerobotics.roadrunner.PoseVelocity2d;
 import com.acmerobotics.roadrunner.Vector2d;
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 
+import org.firstinspires.ftc.teamcode.AsyncImu;
 import org.firstinspires.ftc.teamcode.Drawing;
+import org.firstinspires.ftc.teamcode.Localizer;
 import org.firstinspires.ftc.teamcode.MecanumDrive;
+import org.firstinspires.ftc.teamcode.OtosLocalizer;
 import org.firstinspires.ftc.teamcode.TankDrive;
+import org.firstinspires.ftc.teamcode.messages.AsyncLogSink;
+import org.firstinspires.ftc.teamcode.messages.LogRatePolicy;
 
 public class LocalizationTest extends LinearOpMode {
     @Override
@@ -23,6 +28,8 @@ public class LocalizationTest extends LinearOpMode {
             waitForStart();
 
             while (opModeIsActive()) {
+                drive.loopClock.tick();
+
                 drive.setDrivePowers(new PoseVelocity2d(
                         new Vector2d(
                                 -gamepad1.left_stick_y,
@@ -37,6 +44,40 @@ public class LocalizationTest extends LinearOpMode {
                 telemetry.addData("x", pose.position.x);
                 telemetry.addData("y", pose.position.y);
                 telemetry.addData("heading (deg)", Math.toDegrees(pose.heading.toDouble()));
+                telemetry.addData("bulk reads per loop", drive.loopClock.getLastCycleBulkReads());
+                Localizer localizer = drive.localizationThread != null
+                        ? drive.localizationThread.localizer : drive.localizer;
+                if (localizer instanceof MecanumDrive.DriveLocalizer) {
+                    MecanumDrive.DriveLocalizer dl = (MecanumDrive.DriveLocalizer) localizer;
+                    AsyncImu asyncImu = dl.asyncImu;
+                    if (asyncImu != null) {
+                        telemetry.addData("imu rate (Hz)", asyncImu.getSampleRateHz());
+                        telemetry.addData("imu staleness (ms)", asyncImu.getStalenessNanos() * 1e-6);
+                    }
+
+                    telemetry.addData("slip residual (in/s)", dl.getSlipResidual());
+                    telemetry.addData("slip heading rate residual (deg/s)",
+                            Math.toDegrees(dl.getSlipHeadingRateResidual()));
+                    telemetry.addData("slip ticks", dl.getSlipTicks());
+                    if (MecanumDrive.PARAMS.slipRejection && !dl.isSlipReferenceAvailable()) {
+                        telemetry.addLine("slip rejection off: needs imuPeriodMs = 0 or asyncImu");
+                    }
+                } else if (localizer instanceof OtosLocalizer) {
+                    OtosLocalizer otos = (OtosLocalizer) localizer;
+                    telemetry.addData("otos reads", otos.getReadCount());
+                    telemetry.addData("otos staleness (ms)", otos.getStalenessNanos() * 1e-6);
+                }
+                if (drive.localizationThread != null) {
+                    telemetry.addData("localization updates", drive.localizationThread.getUpdateCount());
+                    telemetry.addData("pose age (ms)",
+                            (System.nanoTime() - drive.localizationThread.getSnapshot().timestamp) * 1e-6);
+                }
+                if (AsyncLogSink.PARAMS.enabled) {
+                    telemetry.addData("log overflows", AsyncLogSink.getOverflowCount());
+                }
+                if (LogRatePolicy.PARAMS.enabled) {
+                    telemetry.addData("log period (ms)", LogRatePolicy.getPeriodNanos() * 1e-6);
+                }
                 telemetry.update();
 
                 TelemetryPacket packet = new TelemetryPacket();
@@ -50,6 +91,8 @@ public class LocalizationTest extends LinearOpMode {
             waitForStart();
 
             while (opModeIsActive()) {
+                drive.loopClock.tick();
+
                 drive.setDrivePowers(new PoseVelocity2d(
                         new Vector2d(
                                 -gamepad1.left_stick_y,
@@ -64,6 +107,12 @@ public class LocalizationTest extends LinearOpMode {
                 telemetry.addData("x", pose.position.x);
                 telemetry.addData("y", pose.position.y);
                 telemetry.addData("heading (deg)", Math.toDegrees(pose.heading.toDouble()));
+                telemetry.addData("bulk reads per loop", drive.loopClock.getLastCycleBulkReads());
+                if (drive.localizer instanceof OtosLocalizer) {
+                    OtosLocalizer otos = (OtosLocalizer) drive.localizer;
+                    telemetry.addData("otos reads", otos.getReadCount());
+                    telemetry.addData("otos staleness (ms)", otos.getStalenessNanos() * 1e-6);
+                }
                 telemetry.update();
 
                 TelemetryPacket packet = new TelemetryPacket();
@@ -1,9 +1,9 @@
 package org.firstinspires.ftc.teamcode.tuning;
 
 import com.acmerobotics.roadrunner.Pose2d;
-import com.acmerobotics.roadrunner.ftc.Actions;
 import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
 
+import org.firstinspires.ftc.teamcode.FixedRateScheduler;
 import org.firstinspires.ftc.teamcode.MecanumDrive;
 import org.firstinspires.ftc.teamcode.TankDrive;
 import org.firstinspires.ftc.teamcode.ThreeDeadWheelLocalizer;
@@ -29,7 +29,7 @@ public final class ManualFeedbackTuner extends LinearOpMode {
             waitForStart();
 
             while (opModeIsActive()) {
-                Actions.runBlocking(
+                new FixedRateScheduler(drive.loopClock).runBlocking(
                     drive.actionBuilder(new Pose2d(0, 0, 0))
                             .lineToX(DISTANCE)
                             .lineToX(0)
@@ -50,7 +50,7 @@ public final class ManualFeedbackTuner extends LinearOpMode {
             waitForStart();
 
             while (opModeIsActive()) {
-                Actions.runBlocking(
+                new FixedRateScheduler(drive.loopClock).runBlocking(
                     drive.actionBuilder(new Pose2d(0, 0, 0))
                             .lineToX(DISTANCE)
                             .lineToX(0)
@@ -0,0 +1,135 @@
+package org.firstinspires.ftc.teamcode.tuning;
+
+import com.acmerobotics.dashboard.FtcDashboard;
+import com.acmerobotics.dashboard.telemetry.MultipleTelemetry;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.Pose2dDual;
+import com.acmerobotics.roadrunner.SequentialAction;
+import com.acmerobotics.roadrunner.Time;
+import com.acmerobotics.roadrunner.TimeTrajectory;
+import com.acmerobotics.roadrunner.Vector2d;
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode;
+
+import org.firstinspires.ftc.teamcode.MecanumDrive;
+import org.firstinspires.ftc.teamcode.SampledTrajectory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares looking up targets in a {@link SampledTrajectory} with evaluating the {@link TimeTrajectory},
+ * on the robot itself since that's the hardware the follower runs on. Doesn't move the robot.
+ * <p>
+ * Reports the time per lookup of each, and the largest difference between them over a dense time grid
+ * next to the bound measured while sampling.
+ */
+public final class TrajectoryLookupBenchmark extends LinearOpMode {
+    public static int WARMUP_PASSES = 5;
+    public static int PASSES = 20;
+    public static double LOOKUP_DT = 0.001;
+
+    // keeps the JIT from discarding the lookups
+    private double sink;
+
+    @Override
+    public void runOpMode() throws InterruptedException {
+        telemetry = new MultipleTelemetry(telemetry, FtcDashboard.getInstance().getTelemetry());
+
+        MecanumDrive drive = new MecanumDrive(hardwareMap, new Pose2d(0, 0, 0));
+
+        List<TimeTrajectory> trajectories = new ArrayList<>();
+        drive.actionBuilder(new Pose2d(0, 0, 0),
+                turn -> new SequentialAction(),
+                trajectory -> {
+                    trajectories.add(trajectory);
+                    return new SequentialAction();
+                })
+                .splineTo(new Vector2d(30, 30), Math.PI / 2)
+                .splineTo(new Vector2d(0, 60), Math.PI)
+                .build();
+        TimeTrajectory exact = trajectories.get(0);
+
+        long sampleStart = System.nanoTime();
+        SampledTrajectory sampled = drive.sample(exact);
+        double sampleMs = (System.nanoTime() - sampleStart) * 1e-6;
+
+        telemetry.addLine("Press start to run the benchmark");
+        telemetry.update();
+        waitForStart();
+
+        int lookups = (int) Math.ceil(exact.duration / LOOKUP_DT) + 1;
+
+        for (int pass = 0; pass < WARMUP_PASSES && opModeIsActive(); pass++) {
+            runExact(exact, lookups);
+            runSampled(sampled, lookups);
+        }
+
+        long exactNanos = 0, sampledNanos = 0;
+        for (int pass = 0; pass < PASSES && opModeIsActive(); pass++) {
+            exactNanos += runExact(exact, lookups);
+            sampledNanos += runSampled(sampled, lookups);
+        }
+
+        double maxPositionError = 0, maxHeadingError = 0, maxVelocityError = 0;
+        for (int i = 0; i < lookups; i++) {
+            double t = Math.min(i * LOOKUP_DT, exact.duration);
+            Pose2dDual<Time> pose = exact.get(t);
+            sampled.get(t);
+
+            maxPositionError = Math.max(maxPositionError, Math.hypot(
+                    sampled.x - pose.position.x.get(0), sampled.y - pose.position.y.get(0)));
+            double headingError = Math.atan2(pose.heading.imag.get(0), pose.heading.real.get(0)) - sampled.heading;
+            maxHeadingError = Math.max(maxHeadingError,
+                    Math.abs(Math.atan2(Math.sin(headingError), Math.cos(headingError))));
+            maxVelocityError = Math.max(maxVelocityError, Math.hypot(
+                    sampled.xVel - pose.position.x.get(1), sampled.yVel - pose.position.y.get(1)));
+        }
+
+        double perPass = Math.max(1, PASSES) * (double) lookups;
+        double exactNsPerLookup = exactNanos / perPass;
+        double sampledNsPerLookup = sampledNanos / perPass;
+
+        while (opModeIsActive()) {
+            telemetry.addData("samples", sampled.size());
+            telemetry.addData("sampling time (ms)", sampleMs);
+            telemetry.addData("TimeTrajectory.get (ns/lookup)", exactNsPerLookup);
+            telemetry.addData("SampledTrajectory.get (ns/lookup)", sampledNsPerLookup);
+            telemetry.addData("speedup", exactNsPerLookup / sampledNsPerLookup);
+            telemetry.addData("max position error (in)", maxPositionError);
+            telemetry.addData("max heading error (deg)", Math.toDegrees(maxHeadingError));
+            telemetry.addData("sampling bound, position (in)", sampled.maxPositionError);
+            telemetry.addData("sampling bound, heading (deg)", Math.toDegrees(sampled.maxHeadingError));
+            telemetry.addData("max velocity error (in/s)", maxVelocityError);
+            telemetry.addData("sampling bound, velocity (in/s)", sampled.maxVelocityError);
+            telemetry.addData("checksum", sink);
+            telemetry.update();
+
+            sleep(100);
+        }
+    }
+
+    private long runExact(TimeTrajectory exact, int lookups) {
+        double acc = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            acc += exact.get(Math.min(i * LOOKUP_DT, exact.duration)).position.x.get(0);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        sink += acc;
+        return elapsed;
+    }
+
+    private long runSampled(SampledTrajectory sampled, int lookups) {
+        double acc = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            sampled.get(Math.min(i * LOOKUP_DT, sampled.duration));
+            acc += sampled.x;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        sink += acc;
+        return elapsed;
+    }
+}
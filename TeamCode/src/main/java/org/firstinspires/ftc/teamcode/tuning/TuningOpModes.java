@@ -16,13 +16,14 @@ import com.acmerobotics.roadrunner.ftc.LateralPushTest;
 import com.acmerobotics.roadrunner.ftc.LateralRampLogger;
 import com.acmerobotics.roadrunner.ftc.ManualFeedforwardTuner;
 import com.acmerobotics.roadrunner.ftc.MecanumMotorDirectionDebugger;
-import com.qualcomm.hardware.lynx.LynxModule;
 import com.qualcomm.robotcore.eventloop.opmode.OpMode;
 import com.qualcomm.robotcore.eventloop.opmode.OpModeManager;
 import com.qualcomm.robotcore.eventloop.opmode.OpModeRegistrar;
 
 import org.firstinspires.ftc.robotcore.internal.opmode.OpModeMeta;
+import org.firstinspires.ftc.teamcode.Localizer;
 import org.firstinspires.ftc.teamcode.MecanumDrive;
+import org.firstinspires.ftc.teamcode.OtosLocalizer;
 import org.firstinspires.ftc.teamcode.TankDrive;
 import org.firstinspires.ftc.teamcode.ThreeDeadWheelLocalizer;
 import org.firstinspires.ftc.teamcode.TwoDeadWheelLocalizer;
@@ -30,6 +31,7 @@ import org.firstinspires.ftc.teamcode.TwoDeadWheelLocalizer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Function;
 
 public final class TuningOpModes {
     // TODO: change this to TankDrive.class if you're using tank
@@ -52,30 +54,46 @@ public final class TuningOpModes {
     public static void register(OpModeManager manager) {
         if (DISABLED) return;
 
-        DriveViewFactory dvf;
+        // takes the op mode the view is for, so an unsupported localizer can say which one it broke
+        Function<Class<? extends OpMode>, DriveViewFactory> dvf;
         if (DRIVE_CLASS.equals(MecanumDrive.class)) {
-            dvf = hardwareMap -> {
+            dvf = opMode -> hardwareMap -> {
                 MecanumDrive md = new MecanumDrive(hardwareMap, new Pose2d(0, 0, 0));
+                // DriveView writes the motors directly from here on, so the layer can't trust what it last wrote
+                md.motorOutputs.invalidate();
 
                 List<Encoder> leftEncs = new ArrayList<>(), rightEncs = new ArrayList<>();
                 List<Encoder> parEncs = new ArrayList<>(), perpEncs = new ArrayList<>();
-                if (md.localizer instanceof MecanumDrive.DriveLocalizer) {
-                    MecanumDrive.DriveLocalizer dl = (MecanumDrive.DriveLocalizer) md.localizer;
+                Localizer localizer = md.localizer;
+                if (md.localizationThread != null) {
+                    // the tuners read the encoders themselves
+                    md.localizationThread.close();
+                    localizer = md.localizationThread.localizer;
+                }
+
+                if (localizer instanceof MecanumDrive.DriveLocalizer) {
+                    MecanumDrive.DriveLocalizer dl = (MecanumDrive.DriveLocalizer) localizer;
                     leftEncs.add(dl.leftFront);
                     leftEncs.add(dl.leftBack);
                     rightEncs.add(dl.rightFront);
                     rightEncs.add(dl.rightBack);
-                } else if (md.localizer instanceof ThreeDeadWheelLocalizer) {
-                    ThreeDeadWheelLocalizer dl = (ThreeDeadWheelLocalizer) md.localizer;
+                } else if (localizer instanceof ThreeDeadWheelLocalizer) {
+                    ThreeDeadWheelLocalizer dl = (ThreeDeadWheelLocalizer) localizer;
                     parEncs.add(dl.par0);
                     parEncs.add(dl.par1);
                     perpEncs.add(dl.perp);
-                } else if (md.localizer instanceof TwoDeadWheelLocalizer) {
-                    TwoDeadWheelLocalizer dl = (TwoDeadWheelLocalizer) md.localizer;
+                } else if (localizer instanceof TwoDeadWheelLocalizer) {
+                    TwoDeadWheelLocalizer dl = (TwoDeadWheelLocalizer) localizer;
                     parEncs.add(dl.par);
                     perpEncs.add(dl.perp);
+                } else if (localizer instanceof OtosLocalizer) {
+                    // the OTOS tracks on-chip and has no encoders to expose, so only the motor direction
+                    // debugger works; calibrate its scalars with LocalizationTest instead
+                    if (!opMode.equals(MecanumMotorDirectionDebugger.class)) {
+                        throw new RuntimeException("OTOS tuning isn't supported by " + opMode.getSimpleName());
+                    }
                 } else {
-                    throw new RuntimeException("unknown localizer: " + md.localizer.getClass().getName());
+                    throw new RuntimeException("unknown localizer: " + localizer.getClass().getName());
                 }
 
                 return new DriveView(
@@ -84,7 +102,7 @@ public final class TuningOpModes {
                         MecanumDrive.PARAMS.maxWheelVel,
                         MecanumDrive.PARAMS.minProfileAccel,
                         MecanumDrive.PARAMS.maxProfileAccel,
-                        hardwareMap.getAll(LynxModule.class),
+                        md.loopClock.getModules(),
                         Arrays.asList(
                                 md.leftFront,
                                 md.leftBack
@@ -105,8 +123,10 @@ public final class TuningOpModes {
                 );
             };
         } else if (DRIVE_CLASS.equals(TankDrive.class)) {
-            dvf = hardwareMap -> {
+            dvf = opMode -> hardwareMap -> {
                 TankDrive td = new TankDrive(hardwareMap, new Pose2d(0, 0, 0));
+                // DriveView writes the motors directly from here on, so the layer can't trust what it last wrote
+                td.motorOutputs.invalidate();
 
                 List<Encoder> leftEncs = new ArrayList<>(), rightEncs = new ArrayList<>();
                 List<Encoder> parEncs = new ArrayList<>(), perpEncs = new ArrayList<>();
@@ -123,6 +143,12 @@ public final class TuningOpModes {
                     TwoDeadWheelLocalizer dl = (TwoDeadWheelLocalizer) td.localizer;
                     parEncs.add(dl.par);
                     perpEncs.add(dl.perp);
+                } else if (td.localizer instanceof OtosLocalizer) {
+                    // the OTOS tracks on-chip and has no encoders to expose, so only the motor direction
+                    // debugger works; calibrate its scalars with LocalizationTest instead
+                    if (!opMode.equals(MecanumMotorDirectionDebugger.class)) {
+                        throw new RuntimeException("OTOS tuning isn't supported by " + opMode.getSimpleName());
+                    }
                 } else {
                     throw new RuntimeException("unknown localizer: " + td.localizer.getClass().getName());
                 }
@@ -133,7 +159,7 @@ public final class TuningOpModes {
                         TankDrive.PARAMS.maxWheelVel,
                         TankDrive.PARAMS.minProfileAccel,
                         TankDrive.PARAMS.maxProfileAccel,
-                        hardwareMap.getAll(LynxModule.class),
+                        td.loopClock.getModules(),
                         td.leftMotors,
                         td.rightMotors,
                         leftEncs,
@@ -151,18 +177,19 @@ public final class TuningOpModes {
             throw new RuntimeException();
         }
 
-        manager.register(metaForClass(AngularRampLogger.class), new AngularRampLogger(dvf));
-        manager.register(metaForClass(ForwardPushTest.class), new ForwardPushTest(dvf));
-        manager.register(metaForClass(ForwardRampLogger.class), new ForwardRampLogger(dvf));
-        manager.register(metaForClass(LateralPushTest.class), new LateralPushTest(dvf));
-        manager.register(metaForClass(LateralRampLogger.class), new LateralRampLogger(dvf));
-        manager.register(metaForClass(ManualFeedforwardTuner.class), new ManualFeedforwardTuner(dvf));
-        manager.register(metaForClass(MecanumMotorDirectionDebugger.class), new MecanumMotorDirectionDebugger(dvf));
-        manager.register(metaForClass(DeadWheelDirectionDebugger.class), new DeadWheelDirectionDebugger(dvf));
+        manager.register(metaForClass(AngularRampLogger.class), new AngularRampLogger(dvf.apply(AngularRampLogger.class)));
+        manager.register(metaForClass(ForwardPushTest.class), new ForwardPushTest(dvf.apply(ForwardPushTest.class)));
+        manager.register(metaForClass(ForwardRampLogger.class), new ForwardRampLogger(dvf.apply(ForwardRampLogger.class)));
+        manager.register(metaForClass(LateralPushTest.class), new LateralPushTest(dvf.apply(LateralPushTest.class)));
+        manager.register(metaForClass(LateralRampLogger.class), new LateralRampLogger(dvf.apply(LateralRampLogger.class)));
+        manager.register(metaForClass(ManualFeedforwardTuner.class), new ManualFeedforwardTuner(dvf.apply(ManualFeedforwardTuner.class)));
+        manager.register(metaForClass(MecanumMotorDirectionDebugger.class), new MecanumMotorDirectionDebugger(dvf.apply(MecanumMotorDirectionDebugger.class)));
+        manager.register(metaForClass(DeadWheelDirectionDebugger.class), new DeadWheelDirectionDebugger(dvf.apply(DeadWheelDirectionDebugger.class)));
 
         manager.register(metaForClass(ManualFeedbackTuner.class), ManualFeedbackTuner.class);
         manager.register(metaForClass(SplineTest.class), SplineTest.class);
         manager.register(metaForClass(LocalizationTest.class), LocalizationTest.class);
+        manager.register(metaForClass(TrajectoryLookupBenchmark.class), TrajectoryLookupBenchmark.class);
 
         FtcDashboard.getInstance().withConfigRoot(configRoot -> {
             for (Class<?> c : Arrays.asList(
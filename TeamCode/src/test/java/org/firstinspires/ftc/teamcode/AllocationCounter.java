@@ -0,0 +1,52 @@
+package org.firstinspires.ftc.teamcode;
+
+import java.lang.reflect.Method;
+
+/**
+ * Reads how many bytes the current thread has allocated, from HotSpot's {@code com.sun.management.ThreadMXBean}.
+ * <p>
+ * The management classes aren't in {@code android.jar}, so they're looked up reflectively;
+ * {@link #isSupported()} is false on JVMs without them. Each reading boxes its result,
+ * so a measured section is charged a few dozen bytes on top of its own allocations.
+ */
+public final class AllocationCounter {
+    private static final Object THREAD_MX_BEAN;
+    private static final Method GET_THREAD_ALLOCATED_BYTES;
+
+    static {
+        Object bean = null;
+        Method method = null;
+        try {
+            bean = Class.forName("java.lang.management.ManagementFactory")
+                    .getMethod("getThreadMXBean").invoke(null);
+            method = Class.forName("com.sun.management.ThreadMXBean")
+                    .getMethod("getThreadAllocatedBytes", long.class);
+            if ((long) method.invoke(bean, Thread.currentThread().getId()) < 0) {
+                method = null;
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            method = null;
+        }
+
+        THREAD_MX_BEAN = bean;
+        GET_THREAD_ALLOCATED_BYTES = method;
+    }
+
+    private AllocationCounter() {
+    }
+
+    public static boolean isSupported() {
+        return GET_THREAD_ALLOCATED_BYTES != null;
+    }
+
+    /**
+     * @return the bytes allocated by the current thread so far
+     */
+    public static long currentThreadAllocatedBytes() {
+        try {
+            return (long) GET_THREAD_ALLOCATED_BYTES.invoke(THREAD_MX_BEAN, Thread.currentThread().getId());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.firstinspires.ftc.teamcode;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.acmerobotics.roadrunner.DualNum;
+import com.acmerobotics.roadrunner.MecanumKinematics;
+import com.acmerobotics.roadrunner.MotorFeedforward;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.Pose2dDual;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+import com.acmerobotics.roadrunner.Rotation2dDual;
+import com.acmerobotics.roadrunner.Time;
+import com.acmerobotics.roadrunner.Vector2d;
+import com.acmerobotics.roadrunner.Vector2dDual;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Checks that the steady-state target and control part of a
+ * {@link MecanumDrive.FollowSampledTrajectoryAction} tick, i.e. {@link SampledTrajectory#get},
+ * {@link PrimitiveHolonomicController} and the inverse kinematics and feedforward in
+ * {@link MecanumDrive#computeWheelPowers}, allocates nothing.
+ * That's the follower {@link MecanumDrive#actionBuilder(Pose2d)} uses. The localizer update and dashboard
+ * telemetry aren't covered, and neither is {@link MecanumDrive#exactActionBuilder(Pose2d)}, whose
+ * {@code TimeTrajectory.get} allocates every tick.
+ */
+public class ControlTickAllocationTest {
+    private static final int WARMUP_TICKS = 20_000, TICKS = 100_000;
+    // charged by the two counter readings, not by the ticks
+    private static final long SLACK_BYTES = 256;
+
+    private final MecanumKinematics kinematics = new MecanumKinematics(12.0, 1.0);
+    private final MotorFeedforward feedforward = new MotorFeedforward(0.1, 0.02, 0.004);
+    private final PrimitiveHolonomicController controller =
+            new PrimitiveHolonomicController(2.0, 2.0, 3.0, 0.1, 0.1, 0.1);
+
+    private final Pose2d actualPose = new Pose2d(1.0, -0.5, 0.1);
+    private final PoseVelocity2d actualVel = new PoseVelocity2d(new Vector2d(20.0, 1.0), 0.2);
+    private final double[] powers = new double[4];
+
+    private SampledTrajectory trajectory;
+    private double sink;
+
+    @Before
+    public void setUp() throws IOException {
+        assumeTrue("thread allocation counting isn't supported on this JVM", AllocationCounter.isSupported());
+
+        trajectory = straightLine(48.0, 2.0, 200);
+    }
+
+    @Test
+    public void sampledTargetTickDoesNotAllocate() {
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            sampledTick(i);
+        }
+
+        long before = AllocationCounter.currentThreadAllocatedBytes();
+        for (int i = 0; i < TICKS; i++) {
+            sampledTick(i);
+        }
+        long allocated = AllocationCounter.currentThreadAllocatedBytes() - before;
+
+        assertTrue(allocated + " bytes allocated over " + TICKS + " ticks", allocated < SLACK_BYTES);
+    }
+
+    @Test
+    public void dualTargetTickDoesNotAllocate() {
+        Pose2dDual<Time> target = new Pose2dDual<>(
+                new Vector2dDual<>(
+                        new DualNum<>(new double[]{10.0, 24.0, 5.0}),
+                        new DualNum<>(new double[]{-2.0, 1.0, 0.0})),
+                new Rotation2dDual<>(
+                        new DualNum<>(new double[]{Math.cos(0.3), -Math.sin(0.3) * 0.5, 0.0}),
+                        new DualNum<>(new double[]{Math.sin(0.3), Math.cos(0.3) * 0.5, 0.0})));
+
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            dualTick(target);
+        }
+
+        long before = AllocationCounter.currentThreadAllocatedBytes();
+        for (int i = 0; i < TICKS; i++) {
+            dualTick(target);
+        }
+        long allocated = AllocationCounter.currentThreadAllocatedBytes() - before;
+
+        assertTrue(allocated + " bytes allocated over " + TICKS + " ticks", allocated < SLACK_BYTES);
+    }
+
+    private void sampledTick(int i) {
+        trajectory.get((i % 1000) * trajectory.duration / 1000);
+        controller.compute(
+                trajectory.x, trajectory.y, trajectory.heading,
+                trajectory.xVel, trajectory.yVel, trajectory.angVel,
+                trajectory.xAccel, trajectory.yAccel, trajectory.angAccel,
+                actualPose, actualVel);
+        MecanumDrive.computeWheelPowers(controller, kinematics, feedforward, 12.5, powers);
+        sink += powers[0] + powers[1] + powers[2] + powers[3];
+    }
+
+    private void dualTick(Pose2dDual<Time> target) {
+        controller.compute(target, actualPose, actualVel);
+        MecanumDrive.computeWheelPowers(controller, kinematics, feedforward, 12.5, powers);
+        sink += powers[0] + powers[1] + powers[2] + powers[3];
+    }
+
+    /**
+     * Builds a table for driving {@code length} inches along x at constant speed, through the file format
+     * {@link TrajectoryCache} uses.
+     */
+    static SampledTrajectory straightLine(double length, double duration, int count) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(SampledTrajectory.Kind.TRAJECTORY.ordinal());
+        out.writeDouble(duration);
+        // interpolation error bounds: position, heading, velocity, angular velocity
+        for (int i = 0; i < 4; i++) {
+            out.writeDouble(0.0);
+        }
+        out.writeInt(count);
+
+        double vel = length / duration;
+        // t, x, y, heading, xVel, yVel, angVel, xAccel, yAccel, angAccel
+        for (int column = 0; column < 10; column++) {
+            for (int i = 0; i < count; i++) {
+                double t = duration * i / (count - 1);
+                double v;
+                switch (column) {
+                    case 0:
+                        v = t;
+                        break;
+                    case 1:
+                        v = vel * t;
+                        break;
+                    case 4:
+                        v = vel;
+                        break;
+                    default:
+                        v = 0.0;
+                }
+                out.writeDouble(v);
+            }
+        }
+
+        return SampledTrajectory.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+}
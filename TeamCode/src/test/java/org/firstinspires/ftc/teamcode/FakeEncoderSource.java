@@ -0,0 +1,47 @@
+package org.firstinspires.ftc.teamcode;
+
+/**
+ * An {@link EncoderSource} whose channels are set by the test, and which counts its reads.
+ * Safe to read from a localizer's background thread while the test sets values.
+ */
+final class FakeEncoderSource implements EncoderSource {
+    private final int[] positions;
+    private final double[] velocities;
+    // added to every channel's position on each read, to script motion on a background thread
+    private final int[] stepPerRead;
+    private long reads;
+
+    FakeEncoderSource(int channels) {
+        positions = new int[channels];
+        velocities = new double[channels];
+        stepPerRead = new int[channels];
+    }
+
+    synchronized void set(int channel, int position, double velocity) {
+        positions[channel] = position;
+        velocities[channel] = velocity;
+    }
+
+    synchronized void setStepPerRead(int channel, int step) {
+        stepPerRead[channel] = step;
+    }
+
+    synchronized long getReads() {
+        return reads;
+    }
+
+    @Override
+    public int channelCount() {
+        return positions.length;
+    }
+
+    @Override
+    public synchronized void read(int[] positions, double[] velocities) {
+        reads++;
+        for (int i = 0; i < this.positions.length; i++) {
+            this.positions[i] += stepPerRead[i];
+            positions[i] = this.positions[i];
+            velocities[i] = this.velocities[i];
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.firstinspires.ftc.teamcode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+import com.acmerobotics.roadrunner.ftc.PositionVelocityPair;
+
+import org.firstinspires.ftc.teamcode.tools.ReplayEncoder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Runs {@link OctoQuadLocalizer} against a {@link FakeEncoderSource}, integrating in {@code update()}
+ * and on its background thread.
+ */
+public class OctoQuadLocalizerTest {
+    private static final double IN_PER_TICK = 0.002;
+
+    private OctoQuadLocalizer.Params savedParams;
+    private ThreeDeadWheelLocalizer.Params savedThreeDeadWheelParams;
+
+    @Before
+    public void setUp() {
+        savedParams = OctoQuadLocalizer.PARAMS;
+        savedThreeDeadWheelParams = ThreeDeadWheelLocalizer.PARAMS;
+
+        OctoQuadLocalizer.PARAMS = new OctoQuadLocalizer.Params();
+        OctoQuadLocalizer.PARAMS.par0Channel = 3;
+        OctoQuadLocalizer.PARAMS.par1Channel = 5;
+        OctoQuadLocalizer.PARAMS.perpChannel = 0;
+        OctoQuadLocalizer.PARAMS.par0YTicks = -2900.0;
+        OctoQuadLocalizer.PARAMS.par1YTicks = 3100.0;
+        OctoQuadLocalizer.PARAMS.perpXTicks = -1200.0;
+
+        ThreeDeadWheelLocalizer.PARAMS = new ThreeDeadWheelLocalizer.Params();
+        ThreeDeadWheelLocalizer.PARAMS.par0YTicks = OctoQuadLocalizer.PARAMS.par0YTicks;
+        ThreeDeadWheelLocalizer.PARAMS.par1YTicks = OctoQuadLocalizer.PARAMS.par1YTicks;
+        ThreeDeadWheelLocalizer.PARAMS.perpXTicks = OctoQuadLocalizer.PARAMS.perpXTicks;
+    }
+
+    @After
+    public void tearDown() {
+        OctoQuadLocalizer.PARAMS = savedParams;
+        ThreeDeadWheelLocalizer.PARAMS = savedThreeDeadWheelParams;
+    }
+
+    @Test
+    public void unthreadedMatchesThreeDeadWheelLocalizer() {
+        OctoQuadLocalizer.PARAMS.threadPeriodMicros = 0;
+
+        FakeEncoderSource source = new FakeEncoderSource(8);
+        Pose2d begin = new Pose2d(1.0, 2.0, 0.3);
+        OctoQuadLocalizer localizer = new OctoQuadLocalizer(source, IN_PER_TICK, begin);
+        assertEquals("reads before the first update", 0, source.getReads());
+
+        ReplayEncoder par0 = new ReplayEncoder(), par1 = new ReplayEncoder(), perp = new ReplayEncoder();
+        ThreeDeadWheelLocalizer reference = new ThreeDeadWheelLocalizer(par0, par1, perp, IN_PER_TICK, begin);
+
+        Random random = new Random(16);
+        int par0Pos = 0, par1Pos = 0, perpPos = 0;
+        for (int tick = 0; tick < 2000; tick++) {
+            int par0Vel = 15000 + random.nextInt(4000) - 2000;
+            int par1Vel = 12000 + random.nextInt(4000) - 2000;
+            int perpVel = random.nextInt(6000) - 3000;
+            par0Pos += par0Vel / 200;
+            par1Pos += par1Vel / 200;
+            perpPos += perpVel / 200;
+
+            source.set(OctoQuadLocalizer.PARAMS.par0Channel, par0Pos, par0Vel);
+            source.set(OctoQuadLocalizer.PARAMS.par1Channel, par1Pos, par1Vel);
+            source.set(OctoQuadLocalizer.PARAMS.perpChannel, perpPos, perpVel);
+            par0.set(new PositionVelocityPair(par0Pos, par0Vel, par0Pos, par0Vel));
+            par1.set(new PositionVelocityPair(par1Pos, par1Vel, par1Pos, par1Vel));
+            perp.set(new PositionVelocityPair(perpPos, perpVel, perpPos, perpVel));
+
+            PoseVelocity2d vel = localizer.update();
+            PoseVelocity2d expectedVel = reference.update();
+            assertEquals("one read per update", tick + 1, source.getReads());
+
+            Pose2d pose = localizer.getPose(), expected = reference.getPose();
+            assertEquals(expected.position.x, pose.position.x, 0.0);
+            assertEquals(expected.position.y, pose.position.y, 0.0);
+            assertEquals(expected.heading.real, pose.heading.real, 0.0);
+            assertEquals(expected.heading.imag, pose.heading.imag, 0.0);
+            if (tick > 0) {
+                assertEquals(expectedVel.linearVel.x, vel.linearVel.x, 0.0);
+                assertEquals(expectedVel.linearVel.y, vel.linearVel.y, 0.0);
+                assertEquals(expectedVel.angVel, vel.angVel, 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void threadedIntegratesInBackground() throws InterruptedException {
+        OctoQuadLocalizer.PARAMS.threadPeriodMicros = 500;
+
+        // straight ahead: both parallel wheels advance 10 ticks per read
+        FakeEncoderSource source = new FakeEncoderSource(8);
+        source.setStepPerRead(OctoQuadLocalizer.PARAMS.par0Channel, 10);
+        source.setStepPerRead(OctoQuadLocalizer.PARAMS.par1Channel, 10);
+        source.set(OctoQuadLocalizer.PARAMS.par0Channel, 0, 2000.0);
+        source.set(OctoQuadLocalizer.PARAMS.par1Channel, 0, 2000.0);
+
+        Pose2d begin = new Pose2d(0.0, 0.0, 0.0);
+        OctoQuadLocalizer localizer = new OctoQuadLocalizer(source, IN_PER_TICK, begin);
+        assertTrue("the constructor reads once", source.getReads() >= 1);
+
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (localizer.getIntegrations() < 50 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue("only " + localizer.getIntegrations() + " integrations",
+                localizer.getIntegrations() >= 50);
+
+        localizer.close();
+        // let an integration that was already running finish
+        long integrations;
+        do {
+            integrations = localizer.getIntegrations();
+            Thread.sleep(20);
+        } while (localizer.getIntegrations() != integrations);
+
+        long reads = source.getReads();
+        assertEquals("every read is integrated", reads, integrations);
+
+        PoseVelocity2d vel = localizer.update();
+        assertEquals("update() doesn't read while the thread owns the source", reads, source.getReads());
+
+        // the first read only latches the positions
+        Pose2d pose = localizer.getPose();
+        assertEquals((integrations - 1) * 10 * IN_PER_TICK, pose.position.x, 1e-9);
+        assertEquals(0.0, pose.position.y, 1e-9);
+        assertEquals(0.0, pose.heading.toDouble(), 1e-12);
+        assertEquals(2000.0 * IN_PER_TICK, vel.linearVel.x, 1e-9);
+        assertEquals(0.0, vel.angVel, 1e-12);
+    }
+}
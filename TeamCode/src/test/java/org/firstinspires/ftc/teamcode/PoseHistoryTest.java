@@ -0,0 +1,55 @@
+package org.firstinspires.ftc.teamcode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Checks that {@link PoseHistory.DrawBuffers} never refills arrays a queued dashboard packet may still hold.
+ */
+public class PoseHistoryTest {
+    @Test
+    public void drawBuffersAreHeldForTheTransmissionInterval() {
+        PoseHistory history = new PoseHistory(50);
+        PoseHistory.DrawBuffers buffers = new PoseHistory.DrawBuffers(20);
+
+        // what each pair held, and when, the last time it was handed out
+        Map<double[], double[]> contents = new IdentityHashMap<>();
+        Map<double[], Long> handedOut = new IdentityHashMap<>();
+
+        long start = System.nanoTime();
+        long lastUpdate = start;
+        double[] lastX = null;
+        for (int tick = 0; tick < 1000; tick++) {
+            // a 5 ms loop
+            long now = start + tick * 5_000_000L;
+            history.add(now, tick, -tick, 0.0);
+            buffers.sample(history, now);
+
+            double[] x = buffers.getX();
+            double[] before = contents.get(x);
+            if (before != null && !Arrays.equals(before, x)) {
+                assertTrue("refilled " + (now - handedOut.get(x)) / 1_000_000 + " ms after it was handed out",
+                        now - handedOut.get(x) >= PoseHistory.DrawBuffers.HOLD_NANOS);
+            }
+            if (x != lastX) {
+                lastUpdate = now;
+                lastX = x;
+            }
+            assertTrue("history not redrawn for " + (now - lastUpdate) / 1_000_000 + " ms",
+                    now - lastUpdate <= 2 * PoseHistory.DrawBuffers.HOLD_NANOS / (PoseHistory.DrawBuffers.DEPTH - 1));
+
+            contents.put(x, x.clone());
+            handedOut.put(x, now);
+        }
+
+        // the newest pose reaches the drawing
+        buffers.sample(history, start + 10_000_000_000L);
+        assertEquals(999.0, buffers.getX()[19], 0.0);
+    }
+}
@@ -0,0 +1,143 @@
+package org.firstinspires.ftc.teamcode;
+
+import static org.junit.Assert.assertEquals;
+
+import com.acmerobotics.roadrunner.DualNum;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+import com.acmerobotics.roadrunner.Time;
+import com.acmerobotics.roadrunner.Twist2d;
+import com.acmerobotics.roadrunner.Twist2dDual;
+import com.acmerobotics.roadrunner.Vector2d;
+import com.acmerobotics.roadrunner.Vector2dDual;
+import com.acmerobotics.roadrunner.ftc.PositionVelocityPair;
+
+import org.firstinspires.ftc.teamcode.tools.ReplayEncoder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Checks that {@link ThreeDeadWheelLocalizer}, integrating on plain doubles through {@link PrimitivePose},
+ * produces exactly the poses of the {@code Twist2dDual} and {@code Pose2d.plus} code it replaced.
+ */
+public class ThreeDeadWheelLocalizerTest {
+    private static final double IN_PER_TICK = 0.002;
+    private static final int TICKS = 5000;
+
+    private ThreeDeadWheelLocalizer.Params savedParams;
+
+    @Before
+    public void setUp() {
+        savedParams = ThreeDeadWheelLocalizer.PARAMS;
+        ThreeDeadWheelLocalizer.PARAMS = new ThreeDeadWheelLocalizer.Params();
+        ThreeDeadWheelLocalizer.PARAMS.par0YTicks = -2900.0;
+        ThreeDeadWheelLocalizer.PARAMS.par1YTicks = 3100.0;
+        ThreeDeadWheelLocalizer.PARAMS.perpXTicks = -1200.0;
+    }
+
+    @After
+    public void tearDown() {
+        ThreeDeadWheelLocalizer.PARAMS = savedParams;
+    }
+
+    @Test
+    public void matchesTwistPathBitForBit() {
+        ReplayEncoder par0 = new ReplayEncoder(), par1 = new ReplayEncoder(), perp = new ReplayEncoder();
+        Pose2d begin = new Pose2d(12.0, -30.0, 0.7);
+        ThreeDeadWheelLocalizer localizer = new ThreeDeadWheelLocalizer(par0, par1, perp, IN_PER_TICK, begin);
+
+        // a drive of straights, arcs and spins at 5 ms per tick, with encoder noise
+        Random random = new Random(2024);
+        int par0Pos = 100, par1Pos = -250, perpPos = 40;
+        Pose2d expected = begin;
+        for (int tick = 0; tick < TICKS; tick++) {
+            double phase = tick / 500.0;
+            int par0Vel = (int) (20000 * Math.sin(phase) + 6000 * Math.cos(3 * phase)) + random.nextInt(50);
+            int par1Vel = (int) (20000 * Math.sin(phase) - 6000 * Math.cos(3 * phase)) + random.nextInt(50);
+            int perpVel = (int) (8000 * Math.cos(2 * phase)) + random.nextInt(50);
+
+            int par0Delta = par0Vel / 200, par1Delta = par1Vel / 200, perpDelta = perpVel / 200;
+            par0Pos += par0Delta;
+            par1Pos += par1Delta;
+            perpPos += perpDelta;
+
+            par0.set(new PositionVelocityPair(par0Pos, par0Vel, par0Pos, par0Vel));
+            par1.set(new PositionVelocityPair(par1Pos, par1Vel, par1Pos, par1Vel));
+            perp.set(new PositionVelocityPair(perpPos, perpVel, perpPos, perpVel));
+
+            PoseVelocity2d vel = localizer.update();
+            if (tick == 0) {
+                // the first update only latches the positions
+                continue;
+            }
+
+            Twist2dDual<Time> twist = twist(par0Delta, par1Delta, perpDelta, par0Vel, par1Vel, perpVel);
+            expected = expected.plus(twist.value());
+            PoseVelocity2d expectedVel = twist.velocity().value();
+
+            Pose2d actual = localizer.getPose();
+            assertEquals("x at tick " + tick, expected.position.x, actual.position.x, 0.0);
+            assertEquals("y at tick " + tick, expected.position.y, actual.position.y, 0.0);
+            assertEquals("heading real at tick " + tick, expected.heading.real, actual.heading.real, 0.0);
+            assertEquals("heading imag at tick " + tick, expected.heading.imag, actual.heading.imag, 0.0);
+
+            assertEquals(expectedVel.linearVel.x, vel.linearVel.x, 0.0);
+            assertEquals(expectedVel.linearVel.y, vel.linearVel.y, 0.0);
+            assertEquals(expectedVel.angVel, vel.angVel, 0.0);
+        }
+    }
+
+    @Test
+    public void primitivePoseMatchesPose2d() {
+        Random random = new Random(7);
+        Pose2d expected = new Pose2d(-5.0, 3.0, -2.0);
+        PrimitivePose actual = new PrimitivePose(expected);
+        for (int i = 0; i < 10_000; i++) {
+            double lineX = random.nextGaussian(), lineY = random.nextGaussian();
+            // include exact zeros, where Pose2d.exp relies on its epsilon
+            double angle = i % 10 == 0 ? 0.0 : random.nextGaussian() * 0.1;
+
+            expected = expected.plus(new Twist2d(new Vector2d(lineX, lineY), angle));
+            actual.plus(lineX, lineY, angle);
+
+            if (i % 7 == 0) {
+                double correction = random.nextGaussian() * 0.01;
+                expected = new Pose2d(expected.position, expected.heading.plus(correction));
+                actual.rotate(correction);
+            }
+
+            Pose2d pose = actual.toPose2d();
+            assertEquals(expected.position.x, pose.position.x, 0.0);
+            assertEquals(expected.position.y, pose.position.y, 0.0);
+            assertEquals(expected.heading.real, pose.heading.real, 0.0);
+            assertEquals(expected.heading.imag, pose.heading.imag, 0.0);
+        }
+    }
+
+    /**
+     * The twist as ThreeDeadWheelLocalizer built it before it integrated on plain doubles.
+     */
+    private static Twist2dDual<Time> twist(int par0PosDelta, int par1PosDelta, int perpPosDelta,
+                                           int par0Vel, int par1Vel, int perpVel) {
+        ThreeDeadWheelLocalizer.Params p = ThreeDeadWheelLocalizer.PARAMS;
+        return new Twist2dDual<>(
+                new Vector2dDual<>(
+                        new DualNum<Time>(new double[] {
+                                (p.par0YTicks * par1PosDelta - p.par1YTicks * par0PosDelta) / (p.par0YTicks - p.par1YTicks),
+                                (p.par0YTicks * par1Vel - p.par1YTicks * par0Vel) / (p.par0YTicks - p.par1YTicks),
+                        }).times(IN_PER_TICK),
+                        new DualNum<Time>(new double[] {
+                                (p.perpXTicks / (p.par0YTicks - p.par1YTicks) * (par1PosDelta - par0PosDelta) + perpPosDelta),
+                                (p.perpXTicks / (p.par0YTicks - p.par1YTicks) * (par1Vel - par0Vel) + perpVel),
+                        }).times(IN_PER_TICK)
+                ),
+                new DualNum<>(new double[] {
+                        (par0PosDelta - par1PosDelta) / (p.par0YTicks - p.par1YTicks),
+                        (par0Vel - par1Vel) / (p.par0YTicks - p.par1YTicks),
+                })
+        );
+    }
+}
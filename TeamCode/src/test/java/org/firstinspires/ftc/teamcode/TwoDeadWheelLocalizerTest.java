@@ -0,0 +1,134 @@
+package org.firstinspires.ftc.teamcode;
+
+import static org.junit.Assert.assertEquals;
+
+import com.acmerobotics.roadrunner.DualNum;
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.PoseVelocity2d;
+import com.acmerobotics.roadrunner.Rotation2d;
+import com.acmerobotics.roadrunner.Time;
+import com.acmerobotics.roadrunner.Twist2dDual;
+import com.acmerobotics.roadrunner.Vector2dDual;
+import com.acmerobotics.roadrunner.ftc.PositionVelocityPair;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.teamcode.tools.ReplayEncoder;
+import org.firstinspires.ftc.teamcode.tools.ReplayImu;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Checks that {@link TwoDeadWheelLocalizer}, reading the IMU every tick and integrating on plain doubles through
+ * {@link PrimitivePose}, produces exactly the poses of the {@code Twist2dDual} and {@code Pose2d.plus} code
+ * it replaced.
+ */
+public class TwoDeadWheelLocalizerTest {
+    private static final double IN_PER_TICK = 0.002;
+    private static final int TICKS = 5000;
+    private static final long TICK_NANOS = 5_000_000;
+
+    private TwoDeadWheelLocalizer.Params savedParams;
+    private long now;
+
+    @Before
+    public void setUp() {
+        savedParams = TwoDeadWheelLocalizer.PARAMS;
+        TwoDeadWheelLocalizer.PARAMS = new TwoDeadWheelLocalizer.Params();
+        TwoDeadWheelLocalizer.PARAMS.parYTicks = -2900.0;
+        TwoDeadWheelLocalizer.PARAMS.perpXTicks = -1200.0;
+        TwoDeadWheelLocalizer.PARAMS.imuPeriodMs = 0;
+    }
+
+    @After
+    public void tearDown() {
+        TwoDeadWheelLocalizer.PARAMS = savedParams;
+    }
+
+    @Test
+    public void matchesTwistPathBitForBit() {
+        ReplayEncoder par = new ReplayEncoder(), perp = new ReplayEncoder();
+        ReplayImu imu = new ReplayImu();
+        Pose2d begin = new Pose2d(12.0, -30.0, 0.7);
+        TwoDeadWheelLocalizer localizer = new TwoDeadWheelLocalizer(par, perp, imu, IN_PER_TICK, begin, () -> now);
+
+        // a drive of straights, arcs and spins at 5 ms per tick, with encoder and gyro noise;
+        // the yaw wraps past +/- pi several times
+        Random random = new Random(2024);
+        int parPos = 100, perpPos = 40;
+        double yaw = 3.0;
+        Pose2d expected = begin;
+        Rotation2d lastHeading = null;
+        for (int tick = 0; tick < TICKS; tick++) {
+            now = tick * TICK_NANOS;
+
+            double phase = tick / 500.0;
+            int parVel = (int) (20000 * Math.sin(phase)) + random.nextInt(50);
+            int perpVel = (int) (8000 * Math.cos(2 * phase)) + random.nextInt(50);
+            double yawRate = 2.5 * Math.cos(3 * phase) + 0.01 * random.nextGaussian();
+
+            int parDelta = parVel / 200, perpDelta = perpVel / 200;
+            parPos += parDelta;
+            perpPos += perpDelta;
+            yaw += yawRate * TICK_NANOS * 1e-9;
+            yaw -= 2 * Math.PI * Math.floor((yaw + Math.PI) / (2 * Math.PI));
+
+            par.set(new PositionVelocityPair(parPos, parVel, parPos, parVel));
+            perp.set(new PositionVelocityPair(perpPos, perpVel, perpPos, perpVel));
+            imu.set(now, yaw, 0.0, 0.0, 0.0, 0.0, yawRate);
+
+            PoseVelocity2d vel = localizer.update();
+
+            // read back the way the localizer reads the IMU, which rounds the rate through degrees and floats
+            Rotation2d heading = Rotation2d.exp(imu.getRobotYawPitchRollAngles().getYaw(AngleUnit.RADIANS));
+            double headingVel = (float) Math.toRadians(imu.getRobotAngularVelocity(AngleUnit.DEGREES).zRotationRate);
+            if (tick == 0) {
+                // the first update only latches the positions and heading
+                lastHeading = heading;
+                continue;
+            }
+
+            Twist2dDual<Time> twist = twist(parDelta, perpDelta, heading.minus(lastHeading),
+                    parVel, perpVel, headingVel);
+            lastHeading = heading;
+            expected = expected.plus(twist.value());
+            PoseVelocity2d expectedVel = twist.velocity().value();
+
+            Pose2d actual = localizer.getPose();
+            assertEquals("x at tick " + tick, expected.position.x, actual.position.x, 0.0);
+            assertEquals("y at tick " + tick, expected.position.y, actual.position.y, 0.0);
+            assertEquals("heading real at tick " + tick, expected.heading.real, actual.heading.real, 0.0);
+            assertEquals("heading imag at tick " + tick, expected.heading.imag, actual.heading.imag, 0.0);
+
+            assertEquals(expectedVel.linearVel.x, vel.linearVel.x, 0.0);
+            assertEquals(expectedVel.linearVel.y, vel.linearVel.y, 0.0);
+            assertEquals(expectedVel.angVel, vel.angVel, 0.0);
+        }
+    }
+
+    /**
+     * The twist as TwoDeadWheelLocalizer built it before it integrated on plain doubles.
+     */
+    private static Twist2dDual<Time> twist(int parPosDelta, int perpPosDelta, double headingDelta,
+                                           int parVel, int perpVel, double headingVel) {
+        TwoDeadWheelLocalizer.Params p = TwoDeadWheelLocalizer.PARAMS;
+        return new Twist2dDual<>(
+                new Vector2dDual<>(
+                        new DualNum<Time>(new double[] {
+                                parPosDelta - p.parYTicks * headingDelta,
+                                parVel - p.parYTicks * headingVel,
+                        }).times(IN_PER_TICK),
+                        new DualNum<Time>(new double[] {
+                                perpPosDelta - p.perpXTicks * headingDelta,
+                                perpVel - p.perpXTicks * headingVel,
+                        }).times(IN_PER_TICK)
+                ),
+                new DualNum<>(new double[] {
+                        headingDelta,
+                        headingVel,
+                })
+        );
+    }
+}
@@ -0,0 +1,213 @@
+package org.firstinspires.ftc.teamcode.tools;
+
+import org.firstinspires.ftc.teamcode.logging.ColumnType;
+import org.firstinspires.ftc.teamcode.logging.ColumnarLogReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a {@code ColumnarLog} ({@code .rrc}) as the same entries {@link FlightLogReader} returns, so the tools
+ * that stream {@code FlightRecorder} logs work on either.
+ * <p>
+ * The channels with a {@code timestamp} column are merged into one stream in timestamp order (ties in channel
+ * order); the rest come first. Flattened columns are nested again, {@code "par0.position"} as a map and
+ * {@code "x[1]"} as a list, and values are boxed by column type. Enums were logged as ordinals, so they come back
+ * as {@code Integer}s rather than constant names. Each channel decodes one data block at a time, so memory stays
+ * bounded by the block size however long the log is.
+ */
+public final class ColumnarEntryReader implements LogEntryReader {
+    private static final class Channel {
+        final ColumnarLogReader reader;
+        final String name;
+        final String[] columns;
+        final ColumnType[] types;
+        final int timestampColumn;
+        final int blocks;
+
+        // the current block: one of long[] or double[] per column
+        final Object[] values;
+        int block = -1;
+        int rows;
+        int next;
+
+        Channel(ColumnarLogReader reader, String name) {
+            this.reader = reader;
+            this.name = name;
+            columns = reader.getColumns(name).toArray(new String[0]);
+            types = new ColumnType[columns.length];
+            values = new Object[columns.length];
+            int timestampColumn = -1;
+            for (int i = 0; i < columns.length; i++) {
+                types[i] = reader.getColumnType(name, columns[i]);
+                if (columns[i].equals("timestamp") && types[i] != ColumnType.DOUBLE) {
+                    timestampColumn = i;
+                }
+            }
+            this.timestampColumn = timestampColumn;
+            blocks = reader.getBlockCount(name);
+        }
+
+        /**
+         * Decodes the next non-empty block if the current one is used up.
+         *
+         * @return whether there's a row left
+         */
+        boolean hasNext() {
+            while (next == rows) {
+                if (block + 1 == blocks) {
+                    return false;
+                }
+                block++;
+
+                rows = reader.getBlockRowCount(name, block);
+                next = 0;
+                for (int i = 0; i < columns.length; i++) {
+                    if (types[i] == ColumnType.DOUBLE) {
+                        double[] buffer = values[i] instanceof double[] && ((double[]) values[i]).length >= rows
+                                ? (double[]) values[i] : new double[rows];
+                        reader.getDoubles(name, columns[i], block, buffer);
+                        values[i] = buffer;
+                    } else {
+                        long[] buffer = values[i] instanceof long[] && ((long[]) values[i]).length >= rows
+                                ? (long[]) values[i] : new long[rows];
+                        reader.getLongs(name, columns[i], block, buffer);
+                        values[i] = buffer;
+                    }
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Only valid after {@link #hasNext()} returned true.
+         */
+        long timestamp() {
+            return ((long[]) values[timestampColumn])[next];
+        }
+
+        FlightLogReader.Entry nextEntry() {
+            Map<String, Object> message = new LinkedHashMap<>();
+            for (int i = 0; i < columns.length; i++) {
+                put(message, columns[i], 0, box(i, next));
+            }
+            next++;
+            return new FlightLogReader.Entry(name, message);
+        }
+
+        private Object box(int c, int r) {
+            switch (types[c]) {
+                case DOUBLE:
+                    return ((double[]) values[c])[r];
+                case LONG:
+                    return ((long[]) values[c])[r];
+                case INT:
+                    return (int) ((long[]) values[c])[r];
+                case BOOLEAN:
+                    return ((long[]) values[c])[r] != 0;
+                default:
+                    throw new AssertionError(types[c]);
+            }
+        }
+    }
+
+    private final ColumnarLogReader reader;
+    private final List<Channel> untimed = new ArrayList<>();
+    private final List<Channel> timed = new ArrayList<>();
+
+    public ColumnarEntryReader(File file) throws IOException {
+        reader = new ColumnarLogReader(file);
+        for (String name : reader.getChannels()) {
+            Channel channel = new Channel(reader, name);
+            (channel.timestampColumn < 0 ? untimed : timed).add(channel);
+        }
+    }
+
+    @Override
+    public FlightLogReader.Entry next() throws IOException {
+        try {
+            for (Channel channel : untimed) {
+                if (channel.hasNext()) {
+                    return channel.nextEntry();
+                }
+            }
+
+            Channel earliest = null;
+            for (Channel channel : timed) {
+                if (channel.hasNext() && (earliest == null || channel.timestamp() < earliest.timestamp())) {
+                    earliest = channel;
+                }
+            }
+            if (earliest == null) {
+                return null;
+            }
+
+            return earliest.nextEntry();
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("corrupt columnar log: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        untimed.clear();
+        timed.clear();
+        reader.close();
+    }
+
+    /**
+     * Puts {@code value} at the flattened column name {@code path}, starting at {@code start},
+     * creating the maps and lists along the way.
+     */
+    @SuppressWarnings("unchecked")
+    private static void put(Map<String, Object> struct, String path, int start, Object value) {
+        int end = start;
+        while (end < path.length() && path.charAt(end) != '.' && path.charAt(end) != '[') {
+            end++;
+        }
+        String field = path.substring(start, end);
+        if (end == path.length()) {
+            struct.put(field, value);
+            return;
+        }
+
+        if (path.charAt(end) == '.') {
+            Object child = struct.get(field);
+            if (!(child instanceof Map)) {
+                child = new LinkedHashMap<String, Object>();
+                struct.put(field, child);
+            }
+            put((Map<String, Object>) child, path, end + 1, value);
+            return;
+        }
+
+        int close = path.indexOf(']', end);
+        int index = Integer.parseInt(path.substring(end + 1, close));
+        Object child = struct.get(field);
+        if (!(child instanceof List)) {
+            child = new ArrayList<Object>();
+            struct.put(field, child);
+        }
+        List<Object> list = (List<Object>) child;
+        while (list.size() <= index) {
+            list.add(null);
+        }
+
+        if (close + 1 == path.length()) {
+            list.set(index, value);
+        } else {
+            // an array of structs: "name[i].field"
+            Object element = list.get(index);
+            if (!(element instanceof Map)) {
+                element = new LinkedHashMap<String, Object>();
+                list.set(index, element);
+            }
+            put((Map<String, Object>) element, path, close + 2, value);
+        }
+    }
+}
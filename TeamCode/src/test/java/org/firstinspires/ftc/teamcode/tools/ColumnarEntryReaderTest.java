@@ -0,0 +1,62 @@
+package org.firstinspires.ftc.teamcode.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.acmerobotics.roadrunner.ftc.PositionVelocityPair;
+
+import org.firstinspires.ftc.teamcode.logging.ColumnarLogWriter;
+import org.firstinspires.ftc.teamcode.messages.PoseMessage;
+import org.firstinspires.ftc.teamcode.messages.ThreeDeadWheelInputsMessage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes a {@link ColumnarLogWriter} log and reads it back as {@link FlightLogReader}-style entries.
+ */
+public class ColumnarEntryReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void mergesChannelsInTimestampOrderAndNestsColumns() throws IOException {
+        File file = folder.newFile("test.rrc");
+        // small blocks, so rows span several of them
+        try (ColumnarLogWriter writer = new ColumnarLogWriter(file, 3)) {
+            for (int i = 0; i < 10; i++) {
+                // inputs come just before the pose they produce
+                writer.write("THREE_DEAD_WHEEL_INPUTS", new ThreeDeadWheelInputsMessage().fill(1000L * i,
+                        new PositionVelocityPair(10 * i, i, 10 * i, i),
+                        new PositionVelocityPair(-20 * i, -i, -20 * i, -i),
+                        new PositionVelocityPair(i, 0, i, 0)));
+                writer.write("ESTIMATED_POSE", new PoseMessage().fill(1000L * i + 1, 0.5 * i, -0.25 * i, 0.01 * i));
+            }
+        }
+
+        try (LogEntryReader reader = LogEntryReader.open(file)) {
+            for (int i = 0; i < 10; i++) {
+                FlightLogReader.Entry inputs = reader.next();
+                assertEquals("THREE_DEAD_WHEEL_INPUTS", inputs.channel);
+                Map<?, ?> m = (Map<?, ?>) inputs.value;
+                assertEquals(1000L * i, m.get("timestamp"));
+                PositionVelocityPair par1 = ReplayEncoder.parse(m.get("par1"));
+                assertEquals(-20 * i, par1.position);
+                assertEquals(-i, par1.velocity);
+
+                FlightLogReader.Entry pose = reader.next();
+                assertEquals("ESTIMATED_POSE", pose.channel);
+                m = (Map<?, ?>) pose.value;
+                assertEquals(1000L * i + 1, m.get("timestamp"));
+                assertEquals(0.5 * i, (Double) m.get("x"), 0.0);
+                assertEquals(-0.25 * i, (Double) m.get("y"), 0.0);
+                assertEquals(0.01 * i, (Double) m.get("heading"), 0.0);
+            }
+            assertNull(reader.next());
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package org.firstinspires.ftc.teamcode.tools;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the logs {@code FlightRecorder} writes to {@code /sdcard/FIRST/RoadRunner/logs}, on a desktop JVM.
+ * <p>
+ * A log is the magic {@code "RR"} and a version short, followed by entries. A schema entry (type 0)
+ * names a channel and describes its messages; a message entry (type 1) holds the channel index and
+ * a message encoded by that schema. Everything is big-endian and strings are length-prefixed UTF-8.
+ * <p>
+ * Structs are returned as {@code Map<String, Object>} in field order, arrays as {@code List<Object>},
+ * enums as their constant names and primitives boxed.
+ */
+public final class FlightLogReader implements LogEntryReader {
+    private static final int TAG_STRUCT = 0;
+    private static final int TAG_INT = 1;
+    private static final int TAG_LONG = 2;
+    private static final int TAG_DOUBLE = 3;
+    private static final int TAG_STRING = 4;
+    private static final int TAG_BOOLEAN = 5;
+    private static final int TAG_ENUM = 6;
+    private static final int TAG_ARRAY = 7;
+
+    /**
+     * A message and the channel it was written to.
+     */
+    public static final class Entry {
+        public final String channel;
+        public final Object value;
+
+        Entry(String channel, Object value) {
+            this.channel = channel;
+            this.value = value;
+        }
+    }
+
+    private static final class Schema {
+        final int tag;
+        // struct fields, or the array element in fieldSchemas[0]
+        final String[] fieldNames;
+        final Schema[] fieldSchemas;
+        final String[] enumConstants;
+
+        Schema(int tag, String[] fieldNames, Schema[] fieldSchemas, String[] enumConstants) {
+            this.tag = tag;
+            this.fieldNames = fieldNames;
+            this.fieldSchemas = fieldSchemas;
+            this.enumConstants = enumConstants;
+        }
+    }
+
+    private final DataInputStream in;
+    private final List<String> channels = new ArrayList<>();
+    private final List<Schema> schemas = new ArrayList<>();
+
+    public FlightLogReader(File file) throws IOException {
+        this(new FileInputStream(file));
+    }
+
+    public FlightLogReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+
+        byte[] magic = new byte[2];
+        this.in.readFully(magic);
+        if (magic[0] != 'R' || magic[1] != 'R') {
+            throw new IOException("not a RoadRunner log");
+        }
+
+        short version = this.in.readShort();
+        if (version != 0) {
+            throw new IOException("unsupported log version: " + version);
+        }
+    }
+
+    @Override
+    public Entry next() throws IOException {
+        while (true) {
+            int type;
+            try {
+                type = in.readInt();
+            } catch (EOFException e) {
+                return null;
+            }
+
+            try {
+                if (type == 0) {
+                    channels.add(readString());
+                    schemas.add(readSchema());
+                } else if (type == 1) {
+                    int channel = in.readInt();
+                    if (channel < 0 || channel >= channels.size()) {
+                        throw new IOException("message for unknown channel " + channel);
+                    }
+
+                    return new Entry(channels.get(channel), readValue(schemas.get(channel)));
+                } else {
+                    throw new IOException("unknown entry type: " + type);
+                }
+            } catch (EOFException e) {
+                // the robot stopped mid-write
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String readString() throws IOException {
+        int length = in.readInt();
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Schema readSchema() throws IOException {
+        int tag = in.readInt();
+        switch (tag) {
+            case TAG_STRUCT: {
+                int n = in.readInt();
+                String[] names = new String[n];
+                Schema[] fields = new Schema[n];
+                for (int i = 0; i < n; i++) {
+                    names[i] = readString();
+                    fields[i] = readSchema();
+                }
+                return new Schema(tag, names, fields, null);
+            }
+            case TAG_INT:
+            case TAG_LONG:
+            case TAG_DOUBLE:
+            case TAG_STRING:
+            case TAG_BOOLEAN:
+                return new Schema(tag, null, null, null);
+            case TAG_ENUM: {
+                int n = in.readInt();
+                String[] constants = new String[n];
+                for (int i = 0; i < n; i++) {
+                    constants[i] = readString();
+                }
+                return new Schema(tag, null, null, constants);
+            }
+            case TAG_ARRAY:
+                return new Schema(tag, null, new Schema[]{readSchema()}, null);
+            default:
+                throw new IOException("unknown schema tag: " + tag);
+        }
+    }
+
+    private Object readValue(Schema schema) throws IOException {
+        switch (schema.tag) {
+            case TAG_STRUCT: {
+                Map<String, Object> struct = new LinkedHashMap<>();
+                for (int i = 0; i < schema.fieldNames.length; i++) {
+                    struct.put(schema.fieldNames[i], readValue(schema.fieldSchemas[i]));
+                }
+                return struct;
+            }
+            case TAG_INT:
+                return in.readInt();
+            case TAG_LONG:
+                return in.readLong();
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_STRING:
+                return readString();
+            case TAG_BOOLEAN:
+                return in.readByte() != 0;
+            case TAG_ENUM: {
+                int ordinal = in.readInt();
+                if (ordinal < 0 || ordinal >= schema.enumConstants.length) {
+                    throw new IOException("enum ordinal out of range: " + ordinal);
+                }
+                return schema.enumConstants[ordinal];
+            }
+            case TAG_ARRAY: {
+                int n = in.readInt();
+                List<Object> list = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    list.add(readValue(schema.fieldSchemas[0]));
+                }
+                return list;
+            }
+            default:
+                throw new IOException("unknown schema tag: " + schema.tag);
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package org.firstinspires.ftc.teamcode.tools;
+
+import com.acmerobotics.roadrunner.Pose2d;
+import com.acmerobotics.roadrunner.ftc.PositionVelocityPair;
+
+import org.firstinspires.ftc.teamcode.AllocationCounter;
+import org.firstinspires.ftc.teamcode.Localizer;
+import org.firstinspires.ftc.teamcode.MecanumDrive;
+import org.firstinspires.ftc.teamcode.ThreeDeadWheelLocalizer;
+import org.firstinspires.ftc.teamcode.TwoDeadWheelLocalizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Replays the localizer inputs in a {@code FlightRecorder} log through a {@link Localizer} on a desktop JVM,
+ * and reports updates per second, bytes allocated per update and the trajectory it produced.
+ * <p>
+ * The recorded encoder values and IMU angles are loaded into {@link ReplayEncoder}s and a {@link ReplayImu}
+ * up front, so the timed loop only runs the localizer. The localizers read the time from {@link #getClock()},
+ * which returns each input's recorded timestamp, so rates such as the mecanum slip residuals come out as they did
+ * on the robot however fast the replay runs. The drive and localizer {@code PARAMS} are
+ * restored from the log; IMU decimation and the async IMU are turned off, since replay runs far faster
+ * than the robot did and the recorded angles were already what the localizer saw.
+ * <p>
+ * A {@code ColumnarLog} ({@code .rrc}) is read through {@link ColumnarEntryReader}. It has the inputs but not the
+ * {@code PARAMS}, which still go to the RoadRunner log, so those are read from {@code --params} or else the
+ * {@code .log} of the same op mode started closest in time.
+ * <p>
+ * To compare a variant, construct a replay and pass {@link #run} a supplier building it on
+ * {@link #getEncoder(int)}, {@link #getImu()} and {@link #getClock()}.
+ * <pre>
+ * usage: LocalizerReplay LOG_FILE [--params PARAMS_LOG] [--passes N] [--out TRAJECTORY_CSV]
+ * </pre>
+ */
+public final class LocalizerReplay {
+    public enum Kind {
+        MECANUM("MECANUM_LOCALIZER_INPUTS", "MECANUM_PARAMS",
+                "leftFront", "leftBack", "rightBack", "rightFront"),
+        TWO_DEAD_WHEEL("TWO_DEAD_WHEEL_INPUTS", "TWO_DEAD_WHEEL_PARAMS", "par", "perp"),
+        THREE_DEAD_WHEEL("THREE_DEAD_WHEEL_INPUTS", "THREE_DEAD_WHEEL_PARAMS", "par0", "par1", "perp");
+
+        public final String inputsChannel, paramsChannel;
+        private final String[] encoderFields;
+
+        Kind(String inputsChannel, String paramsChannel, String... encoderFields) {
+            this.inputsChannel = inputsChannel;
+            this.paramsChannel = paramsChannel;
+            this.encoderFields = encoderFields;
+        }
+    }
+
+    /**
+     * The outcome of {@link #run}; the trajectory is from the last pass.
+     */
+    public static final class Result {
+        public final int updates;
+        public final long elapsedNanos;
+        // -1 if the JVM can't measure it
+        public final long allocatedBytes;
+        public final long[] timestamps;
+        public final double[] xs, ys, headings;
+
+        Result(int updates, long elapsedNanos, long allocatedBytes,
+               long[] timestamps, double[] xs, double[] ys, double[] headings) {
+            this.updates = updates;
+            this.elapsedNanos = elapsedNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.timestamps = timestamps;
+            this.xs = xs;
+            this.ys = ys;
+            this.headings = headings;
+        }
+
+        public double updatesPerSecond() {
+            return updates / (elapsedNanos * 1e-9);
+        }
+
+        public double bytesPerUpdate() {
+            return allocatedBytes < 0 ? Double.NaN : (double) allocatedBytes / updates;
+        }
+    }
+
+    public final Kind kind;
+
+    private final ReplayEncoder[] encoders;
+    private final ReplayImu imu = new ReplayImu();
+    private long now;
+    private final LongSupplier clock = () -> now;
+
+    private final long[] timestamps;
+    private final PositionVelocityPair[][] pairs;
+    private final double[][] imuValues;
+
+    public LocalizerReplay(Kind kind, List<Object> inputs) {
+        this.kind = kind;
+
+        encoders = new ReplayEncoder[kind.encoderFields.length];
+        for (int i = 0; i < encoders.length; i++) {
+            encoders[i] = new ReplayEncoder();
+        }
+
+        int n = inputs.size();
+        timestamps = new long[n];
+        pairs = new PositionVelocityPair[n][encoders.length];
+        imuValues = new double[n][];
+        for (int k = 0; k < n; k++) {
+            Map<?, ?> message = (Map<?, ?>) inputs.get(k);
+            timestamps[k] = (Long) message.get("timestamp");
+            for (int i = 0; i < encoders.length; i++) {
+                pairs[k][i] = ReplayEncoder.parse(message.get(kind.encoderFields[i]));
+            }
+            if (message.containsKey("yaw")) {
+                imuValues[k] = new double[]{
+                        (Double) message.get("yaw"),
+                        (Double) message.get("pitch"),
+                        (Double) message.get("roll"),
+                        message.containsKey("xRotationRate") ? (Double) message.get("xRotationRate") : 0.0,
+                        message.containsKey("yRotationRate") ? (Double) message.get("yRotationRate") : 0.0,
+                        message.containsKey("zRotationRate") ? (Double) message.get("zRotationRate") : 0.0,
+                };
+            }
+        }
+    }
+
+    public int size() {
+        return timestamps.length;
+    }
+
+    public ReplayEncoder getEncoder(int i) {
+        return encoders[i];
+    }
+
+    public ReplayImu getImu() {
+        return imu;
+    }
+
+    /**
+     * @return the recorded timestamp of the input being replayed (in nanoseconds)
+     */
+    public LongSupplier getClock() {
+        return clock;
+    }
+
+    /**
+     * @return the localizer that recorded the log, built on the replay encoders and IMU
+     */
+    public Localizer createRecordedLocalizer() {
+        Pose2d origin = new Pose2d(0, 0, 0);
+        switch (kind) {
+            case MECANUM:
+                return new MecanumDrive.DriveLocalizer(
+                        encoders[0], encoders[1], encoders[2], encoders[3], imu, origin, clock);
+            case TWO_DEAD_WHEEL:
+                return new TwoDeadWheelLocalizer(
+                        encoders[0], encoders[1], imu, MecanumDrive.PARAMS.inPerTick, origin, clock);
+            case THREE_DEAD_WHEEL:
+                return new ThreeDeadWheelLocalizer(encoders[0], encoders[1], encoders[2], MecanumDrive.PARAMS.inPerTick, origin);
+            default:
+                throw new AssertionError(kind);
+        }
+    }
+
+    /**
+     * Replays every input {@code passes} times, each through a fresh localizer.
+     */
+    public Result run(Supplier<Localizer> factory, int passes) {
+        boolean countAllocations = AllocationCounter.isSupported();
+
+        int n = size();
+        double[] xs = new double[n], ys = new double[n], headings = new double[n];
+
+        long elapsed = 0, allocated = countAllocations ? 0 : -1;
+        for (int pass = 0; pass < passes; pass++) {
+            Localizer localizer = factory.get();
+
+            long allocatedStart = countAllocations ? AllocationCounter.currentThreadAllocatedBytes() : 0;
+            long start = System.nanoTime();
+            for (int k = 0; k < n; k++) {
+                step(k);
+                localizer.update();
+
+                Pose2d pose = localizer.getPose();
+                xs[k] = pose.position.x;
+                ys[k] = pose.position.y;
+                headings[k] = pose.heading.toDouble();
+            }
+            elapsed += System.nanoTime() - start;
+            if (countAllocations) {
+                allocated += AllocationCounter.currentThreadAllocatedBytes() - allocatedStart;
+            }
+        }
+
+        return new Result(n * passes, elapsed, allocated, timestamps, xs, ys, headings);
+    }
+
+    private void step(int k) {
+        now = timestamps[k];
+        for (int i = 0; i < encoders.length; i++) {
+            encoders[i].set(pairs[k][i]);
+        }
+
+        double[] v = imuValues[k];
+        if (v != null) {
+            imu.set(timestamps[k], v[0], v[1], v[2], v[3], v[4], v[5]);
+        }
+    }
+
+    /**
+     * Copies the fields of a logged {@code PARAMS} struct onto {@code params}, skipping any it doesn't have.
+     */
+    static void restoreParams(Object params, Object logged) throws IllegalAccessException {
+        if (!(logged instanceof Map)) {
+            return;
+        }
+
+        for (Map.Entry<?, ?> e : ((Map<?, ?>) logged).entrySet()) {
+            Field field;
+            try {
+                field = params.getClass().getField((String) e.getKey());
+            } catch (NoSuchFieldException ex) {
+                continue;
+            }
+
+            Object value = e.getValue();
+            if (field.getType().isEnum() && value instanceof String) {
+                for (Object constant : field.getType().getEnumConstants()) {
+                    if (((Enum<?>) constant).name().equals(value)) {
+                        field.set(params, constant);
+                    }
+                }
+            } else if (!(value instanceof Map) && !(value instanceof List)) {
+                field.set(params, value);
+            }
+        }
+    }
+
+    /**
+     * @return the {@code .log} in the same directory as {@code rrc} written by the same op mode
+     *         ({@code <millis>__<OpMode>}) and started closest in time to it, or null if there's none
+     */
+    static File findParamsLog(File rrc) {
+        String name = rrc.getName();
+        int split = name.indexOf("__");
+        File[] siblings = rrc.getAbsoluteFile().getParentFile().listFiles();
+        if (split < 0 || siblings == null) {
+            return null;
+        }
+
+        long millis;
+        try {
+            millis = Long.parseLong(name.substring(0, split));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        String suffix = name.substring(split, name.length() - ".rrc".length()) + ".log";
+
+        File best = null;
+        long bestGap = Long.MAX_VALUE;
+        for (File sibling : siblings) {
+            String siblingName = sibling.getName();
+            if (!siblingName.endsWith(suffix)) {
+                continue;
+            }
+
+            try {
+                long gap = Math.abs(Long.parseLong(siblingName.substring(0, siblingName.indexOf("__"))) - millis);
+                if (gap < bestGap) {
+                    best = sibling;
+                    bestGap = gap;
+                }
+            } catch (NumberFormatException e) {
+                // not a timestamped log
+            }
+        }
+        return best;
+    }
+
+    private static Object last(Map<String, List<Object>> messages, String channel) {
+        List<Object> list = messages.get(channel);
+        return list == null || list.isEmpty() ? null : list.get(list.size() - 1);
+    }
+
+    public static void main(String[] args) throws IOException, IllegalAccessException {
+        if (args.length < 1) {
+            System.err.println("usage: LocalizerReplay LOG_FILE [--params PARAMS_LOG] [--passes N] "
+                    + "[--out TRAJECTORY_CSV]");
+            System.exit(2);
+        }
+
+        File logFile = new File(args[0]);
+        File paramsFile = null;
+        int passes = 10;
+        File out = null;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--params")) {
+                paramsFile = new File(args[i + 1]);
+            } else if (args[i].equals("--passes")) {
+                passes = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("--out")) {
+                out = new File(args[i + 1]);
+            } else {
+                throw new IllegalArgumentException("unknown option: " + args[i]);
+            }
+        }
+
+        Map<String, List<Object>> messages;
+        try (LogEntryReader reader = LogEntryReader.open(logFile)) {
+            messages = reader.readAll();
+        }
+
+        if (paramsFile == null && logFile.getName().endsWith(".rrc")) {
+            paramsFile = findParamsLog(logFile);
+            if (paramsFile == null) {
+                System.err.println("no .log with the PARAMS next to " + logFile + "; replaying with the defaults");
+            }
+        }
+        if (paramsFile != null) {
+            try (LogEntryReader reader = LogEntryReader.open(paramsFile)) {
+                for (Map.Entry<String, List<Object>> e : reader.readAll().entrySet()) {
+                    if (e.getKey().endsWith("_PARAMS")) {
+                        messages.put(e.getKey(), e.getValue());
+                    }
+                }
+            }
+        }
+
+        Kind kind = null;
+        for (Kind k : Kind.values()) {
+            if (messages.containsKey(k.inputsChannel)) {
+                kind = k;
+                break;
+            }
+        }
+        if (kind == null) {
+            System.err.println("no localizer input channels found in " + logFile);
+            if (logFile.getName().endsWith(".log")) {
+                // the op mode ran with ColumnarLog on, so this log only has parameters
+                System.err.println("(with ColumnarLog on, they're in the matching .rrc)");
+            }
+            System.exit(1);
+        }
+
+        restoreParams(MecanumDrive.PARAMS, last(messages, "MECANUM_PARAMS"));
+        restoreParams(TwoDeadWheelLocalizer.PARAMS, last(messages, "TWO_DEAD_WHEEL_PARAMS"));
+        restoreParams(ThreeDeadWheelLocalizer.PARAMS, last(messages, "THREE_DEAD_WHEEL_PARAMS"));
+        MecanumDrive.PARAMS.imuPeriodMs = 0;
+        MecanumDrive.PARAMS.asyncImu = false;
+        TwoDeadWheelLocalizer.PARAMS.imuPeriodMs = 0;
+
+        LocalizerReplay replay = new LocalizerReplay(kind, messages.get(kind.inputsChannel));
+
+        // let the JIT compile the localizer before measuring
+        replay.run(replay::createRecordedLocalizer, Math.max(1, passes / 2));
+        Result result = replay.run(replay::createRecordedLocalizer, passes);
+
+        System.out.printf(Locale.US, "%s: %d inputs, %d passes%n", kind, replay.size(), passes);
+        System.out.printf(Locale.US, "updates per second: %.0f%n", result.updatesPerSecond());
+        System.out.printf(Locale.US, "bytes allocated per update: %.1f%n", result.bytesPerUpdate());
+        int last = replay.size() - 1;
+        if (last >= 0) {
+            System.out.printf(Locale.US, "final pose: x %.3f, y %.3f, heading %.2f deg%n",
+                    result.xs[last], result.ys[last], Math.toDegrees(result.headings[last]));
+        }
+
+        if (out != null) {
+            try (PrintWriter w = new PrintWriter(out, "UTF-8")) {
+                w.println("timestamp,x,y,heading");
+                for (int k = 0; k <= last; k++) {
+                    w.printf(Locale.US, "%d,%.6f,%.6f,%.6f%n",
+                            result.timestamps[k], result.xs[k], result.ys[k], result.headings[k]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.firstinspires.ftc.teamcode.tools;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A log read as a stream of {@link FlightLogReader.Entry}s, whichever format the robot wrote it in.
+ */
+public interface LogEntryReader extends Closeable {
+    /**
+     * Opens a {@code FlightRecorder} log, or a {@code ColumnarLog} if the name ends in {@code .rrc}.
+     */
+    static LogEntryReader open(File file) throws IOException {
+        if (file.getName().endsWith(".rrc")) {
+            return new ColumnarEntryReader(file);
+        }
+        return new FlightLogReader(file);
+    }
+
+    /**
+     * @return the next message, or null at the end of the log
+     */
+    FlightLogReader.Entry next() throws IOException;
+
+    /**
+     * Reads the rest of the log, grouped by channel in the order messages were written.
+     */
+    default Map<String, List<Object>> readAll() throws IOException {
+        Map<String, List<Object>> messages = new LinkedHashMap<>();
+        for (FlightLogReader.Entry e = next(); e != null; e = next()) {
+            List<Object> list = messages.get(e.channel);
+            if (list == null) {
+                list = new ArrayList<>();
+                messages.put(e.channel, list);
+            }
+            list.add(e.value);
+        }
+
+        return messages;
+    }
+}
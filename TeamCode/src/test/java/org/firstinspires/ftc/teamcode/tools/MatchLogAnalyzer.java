@@ -0,0 +1,504 @@
+package org.firstinspires.ftc.teamcode.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Summarizes {@code FlightRecorder} logs on a desktop JVM: path tracking error per trajectory segment,
+ * the loop period distribution, battery voltage sag and commanded power saturation.
+ * {@code ColumnarLog} ({@code .rrc}) files are read through {@link ColumnarEntryReader}; with it on, the poses and
+ * commands are in the {@code .rrc} and the matching {@code .log} only has parameters.
+ * <p>
+ * A {@code FlightRecorder} log is read in one pass with memory that doesn't grow with its length, so a whole
+ * event's logs can be analyzed at once. {@code TARGET_POSE} is only written while a trajectory or turn is running, so a segment is a
+ * run of targets with no gap longer than {@code --gap-ms}; back-to-back actions show up as one segment. Each
+ * target is joined to the {@code ESTIMATED_POSE} nearest to it in time, within {@code --join-ms}.
+ * Loop periods are the gaps between localizer inputs, which are written on every update.
+ * <pre>
+ * usage: MatchLogAnalyzer LOG_FILE_OR_DIR... [--gap-ms MS] [--join-ms MS] [--low-voltage V] [--csv SEGMENTS_CSV]
+ * </pre>
+ */
+public final class MatchLogAnalyzer {
+    private static final List<String> LOOP_CHANNELS = Arrays.asList(
+            "MECANUM_LOCALIZER_INPUTS", "TANK_LOCALIZER_INPUTS", "TWO_DEAD_WHEEL_INPUTS", "THREE_DEAD_WHEEL_INPUTS");
+    private static final List<String> COMMAND_CHANNELS = Arrays.asList("MECANUM_COMMAND", "TANK_COMMAND");
+
+    // 0.1 ms loop period buckets up to 250 ms; longer periods share the last one
+    private static final long BUCKET_NANOS = 100_000;
+    private static final int BUCKETS = 2500;
+
+    /**
+     * Tracking error over one trajectory segment. Positions are in inches and angles in radians.
+     */
+    public static final class Segment {
+        public final int index;
+        // nanoTime of the first and last target
+        public final long startNanos, endNanos;
+        // from the log's first timestamped message
+        public final double startSeconds;
+        // targets joined to an estimate
+        public final int samples;
+        public final double meanError, rmsError, maxError, finalError;
+        public final double maxHeadingError;
+        public final double peakCommandSpeed;
+
+        Segment(int index, long startNanos, long endNanos, double startSeconds, int samples, double meanError,
+                double rmsError, double maxError, double finalError, double maxHeadingError, double peakCommandSpeed) {
+            this.index = index;
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+            this.startSeconds = startSeconds;
+            this.samples = samples;
+            this.meanError = meanError;
+            this.rmsError = rmsError;
+            this.maxError = maxError;
+            this.finalError = finalError;
+            this.maxHeadingError = maxHeadingError;
+            this.peakCommandSpeed = peakCommandSpeed;
+        }
+
+        public double durationSeconds() {
+            return (endNanos - startNanos) * 1e-9;
+        }
+    }
+
+    /**
+     * Everything but the segments, which are passed to the callback as they end.
+     */
+    public static final class Summary {
+        public long firstNanos = Long.MAX_VALUE, lastNanos = Long.MIN_VALUE;
+        public int messages, segments;
+        public long estimates, targets;
+
+        public String loopChannel;
+        public long loopCount;
+        public long maxLoopNanos;
+        private long loopTotalNanos;
+        private final int[] loopBuckets = new int[BUCKETS];
+
+        public long voltageSamples;
+        public double minVoltage = Double.POSITIVE_INFINITY, maxVoltage = Double.NEGATIVE_INFINITY;
+        // the largest drop from an earlier reading
+        public double maxVoltageSag;
+        public long lowVoltageSamples;
+        private double voltageTotal;
+
+        public long commandSamples, saturatedSamples;
+        public double maxAbsPower;
+        // samples above full power, per motor
+        public final Map<String, Long> saturatedByMotor = new LinkedHashMap<>();
+
+        public double durationSeconds() {
+            return lastNanos < firstNanos ? 0.0 : (lastNanos - firstNanos) * 1e-9;
+        }
+
+        public double meanLoopMs() {
+            return loopCount == 0 ? Double.NaN : loopTotalNanos * 1e-6 / loopCount;
+        }
+
+        /**
+         * @return the loop period at {@code percentile} (0 to 100), accurate to 0.1 ms
+         */
+        public double loopPercentileMs(double percentile) {
+            if (loopCount == 0) {
+                return Double.NaN;
+            }
+
+            long rank = (long) Math.ceil(percentile / 100.0 * loopCount);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += loopBuckets[i];
+                if (seen >= Math.max(rank, 1)) {
+                    return Math.min(i + 1, maxLoopNanos / (double) BUCKET_NANOS) * BUCKET_NANOS * 1e-6;
+                }
+            }
+            return maxLoopNanos * 1e-6;
+        }
+
+        public double meanVoltage() {
+            return voltageSamples == 0 ? Double.NaN : voltageTotal / voltageSamples;
+        }
+
+        public double saturatedFraction() {
+            return commandSamples == 0 ? 0.0 : (double) saturatedSamples / commandSamples;
+        }
+
+        /**
+         * @return whether the log had any estimated or target poses or drive commands
+         */
+        public boolean hasDriveChannels() {
+            return estimates > 0 || targets > 0 || commandSamples > 0;
+        }
+    }
+
+    public final long segmentGapNanos;
+    public final long joinToleranceNanos;
+    public final double lowVoltage;
+
+    public MatchLogAnalyzer(long segmentGapNanos, long joinToleranceNanos, double lowVoltage) {
+        this.segmentGapNanos = segmentGapNanos;
+        this.joinToleranceNanos = joinToleranceNanos;
+        this.lowVoltage = lowVoltage;
+    }
+
+    // per-log state; a target waits for the next estimate so it can be joined to whichever is nearer
+    private Summary summary;
+    private Consumer<Segment> onSegment;
+    private boolean hasEstimate, hasPendingTarget, inSegment;
+    private long estimateNanos, targetNanos, loopLastNanos;
+    private double estimateX, estimateY, estimateHeading;
+    private double targetX, targetY, targetHeading;
+    private double peakVoltage;
+
+    private long segmentStart, segmentEnd;
+    private int segmentSamples;
+    private double errorTotal, errorSquaredTotal, errorMax, errorLast, headingErrorMax, commandSpeedMax;
+
+    /**
+     * Reads the rest of {@code reader}, passing each trajectory segment to {@code onSegment} when it ends.
+     */
+    public Summary analyze(LogEntryReader reader, Consumer<Segment> onSegment) throws IOException {
+        summary = new Summary();
+        this.onSegment = onSegment;
+        hasEstimate = hasPendingTarget = inSegment = false;
+        loopLastNanos = Long.MIN_VALUE;
+        peakVoltage = Double.NEGATIVE_INFINITY;
+
+        for (FlightLogReader.Entry e = reader.next(); e != null; e = reader.next()) {
+            if (!(e.value instanceof Map)) {
+                continue;
+            }
+
+            @SuppressWarnings("unchecked")
+            Map<String, Object> m = (Map<String, Object>) e.value;
+            Object ts = m.get("timestamp");
+            if (!(ts instanceof Number)) {
+                // parameters and other untimed channels
+                continue;
+            }
+            long t = ((Number) ts).longValue();
+
+            summary.messages++;
+            summary.firstNanos = Math.min(summary.firstNanos, t);
+            summary.lastNanos = Math.max(summary.lastNanos, t);
+
+            switch (e.channel) {
+                case "ESTIMATED_POSE":
+                    onEstimate(t, m);
+                    break;
+                case "TARGET_POSE":
+                    onTarget(t, m);
+                    break;
+                case "DRIVE_COMMAND":
+                    if (inSegment) {
+                        commandSpeedMax = Math.max(commandSpeedMax,
+                                Math.hypot(get(m, "forwardVelocity"), get(m, "lateralVelocity")));
+                    }
+                    break;
+                default:
+                    if (COMMAND_CHANNELS.contains(e.channel)) {
+                        onCommand(m);
+                    } else if (LOOP_CHANNELS.contains(e.channel)) {
+                        onLoop(e.channel, t);
+                    }
+            }
+        }
+
+        if (hasPendingTarget) {
+            join(false, 0, 0, 0, 0);
+        }
+        endSegment();
+
+        Summary s = summary;
+        summary = null;
+        this.onSegment = null;
+        return s;
+    }
+
+    private void onEstimate(long t, Map<String, Object> m) {
+        summary.estimates++;
+        double x = get(m, "x"), y = get(m, "y"), heading = get(m, "heading");
+        if (hasPendingTarget) {
+            join(true, t, x, y, heading);
+        }
+
+        hasEstimate = true;
+        estimateNanos = t;
+        estimateX = x;
+        estimateY = y;
+        estimateHeading = heading;
+    }
+
+    private void onTarget(long t, Map<String, Object> m) {
+        summary.targets++;
+        if (hasPendingTarget) {
+            join(false, 0, 0, 0, 0);
+        }
+
+        if (inSegment && t - segmentEnd > segmentGapNanos) {
+            endSegment();
+        }
+        if (!inSegment) {
+            inSegment = true;
+            segmentStart = t;
+            segmentSamples = 0;
+            errorTotal = errorSquaredTotal = errorMax = errorLast = headingErrorMax = commandSpeedMax = 0.0;
+        }
+        segmentEnd = t;
+
+        hasPendingTarget = true;
+        targetNanos = t;
+        targetX = get(m, "x");
+        targetY = get(m, "y");
+        targetHeading = get(m, "heading");
+    }
+
+    /**
+     * Joins the pending target to the previous estimate or, if given and nearer, the next one.
+     */
+    private void join(boolean hasNext, long nextNanos, double nextX, double nextY, double nextHeading) {
+        hasPendingTarget = false;
+
+        long prevGap = hasEstimate ? Math.abs(targetNanos - estimateNanos) : Long.MAX_VALUE;
+        long nextGap = hasNext ? Math.abs(nextNanos - targetNanos) : Long.MAX_VALUE;
+        double x, y, heading;
+        if (prevGap <= nextGap && prevGap <= joinToleranceNanos) {
+            x = estimateX;
+            y = estimateY;
+            heading = estimateHeading;
+        } else if (nextGap < prevGap && nextGap <= joinToleranceNanos) {
+            x = nextX;
+            y = nextY;
+            heading = nextHeading;
+        } else {
+            return;
+        }
+
+        double error = Math.hypot(targetX - x, targetY - y);
+        double headingError = Math.abs(Math.IEEEremainder(targetHeading - heading, 2 * Math.PI));
+        segmentSamples++;
+        errorTotal += error;
+        errorSquaredTotal += error * error;
+        errorMax = Math.max(errorMax, error);
+        errorLast = error;
+        headingErrorMax = Math.max(headingErrorMax, headingError);
+    }
+
+    private void endSegment() {
+        if (!inSegment) {
+            return;
+        }
+        inSegment = false;
+
+        double mean = segmentSamples == 0 ? Double.NaN : errorTotal / segmentSamples;
+        double rms = segmentSamples == 0 ? Double.NaN : Math.sqrt(errorSquaredTotal / segmentSamples);
+        Segment segment = new Segment(summary.segments++, segmentStart, segmentEnd,
+                (segmentStart - summary.firstNanos) * 1e-9, segmentSamples, mean, rms,
+                errorMax, errorLast, headingErrorMax, commandSpeedMax);
+        if (onSegment != null) {
+            onSegment.accept(segment);
+        }
+    }
+
+    private void onLoop(String channel, long t) {
+        if (summary.loopChannel == null) {
+            summary.loopChannel = channel;
+        } else if (!summary.loopChannel.equals(channel)) {
+            return;
+        }
+
+        if (loopLastNanos != Long.MIN_VALUE) {
+            long period = t - loopLastNanos;
+            if (period >= 0) {
+                summary.loopCount++;
+                summary.loopTotalNanos += period;
+                summary.maxLoopNanos = Math.max(summary.maxLoopNanos, period);
+                summary.loopBuckets[(int) Math.min(period / BUCKET_NANOS, BUCKETS - 1)]++;
+            }
+        }
+        loopLastNanos = t;
+    }
+
+    private void onCommand(Map<String, Object> m) {
+        Summary s = summary;
+
+        Object v = m.get("voltage");
+        if (v instanceof Number) {
+            double voltage = ((Number) v).doubleValue();
+            s.voltageSamples++;
+            s.voltageTotal += voltage;
+            s.minVoltage = Math.min(s.minVoltage, voltage);
+            s.maxVoltage = Math.max(s.maxVoltage, voltage);
+            peakVoltage = Math.max(peakVoltage, voltage);
+            s.maxVoltageSag = Math.max(s.maxVoltageSag, peakVoltage - voltage);
+            if (voltage < lowVoltage) {
+                s.lowVoltageSamples++;
+            }
+        }
+
+        s.commandSamples++;
+        boolean saturated = false;
+        for (Map.Entry<String, Object> field : m.entrySet()) {
+            if (!field.getKey().endsWith("Power") || !(field.getValue() instanceof Number)) {
+                continue;
+            }
+
+            double power = Math.abs(((Number) field.getValue()).doubleValue());
+            s.maxAbsPower = Math.max(s.maxAbsPower, power);
+            Long count = s.saturatedByMotor.get(field.getKey());
+            if (power > 1.0) {
+                saturated = true;
+                s.saturatedByMotor.put(field.getKey(), count == null ? 1 : count + 1);
+            } else if (count == null) {
+                s.saturatedByMotor.put(field.getKey(), 0L);
+            }
+        }
+        if (saturated) {
+            s.saturatedSamples++;
+        }
+    }
+
+    private static double get(Map<String, Object> m, String field) {
+        Object o = m.get(field);
+        return o instanceof Number ? ((Number) o).doubleValue() : Double.NaN;
+    }
+
+    private static void print(PrintStream out, Summary s) {
+        out.printf(Locale.US, "  duration %.1f s, %d messages, %d segments%n",
+                s.durationSeconds(), s.messages, s.segments);
+        if (!s.hasDriveChannels()) {
+            out.println("  no pose/command channels found");
+        }
+
+        if (s.loopCount > 0) {
+            out.printf(Locale.US, "  loop (%s): %d periods, mean %.2f ms, p50 %.1f ms, p95 %.1f ms, "
+                            + "p99 %.1f ms, max %.1f ms%n",
+                    s.loopChannel, s.loopCount, s.meanLoopMs(), s.loopPercentileMs(50), s.loopPercentileMs(95),
+                    s.loopPercentileMs(99), s.maxLoopNanos * 1e-6);
+        } else {
+            out.println("  loop: no localizer inputs");
+        }
+
+        if (s.voltageSamples > 0) {
+            out.printf(Locale.US, "  voltage: min %.2f V, mean %.2f V, max %.2f V, max sag %.2f V, "
+                            + "%d of %d samples low%n",
+                    s.minVoltage, s.meanVoltage(), s.maxVoltage, s.maxVoltageSag,
+                    s.lowVoltageSamples, s.voltageSamples);
+        }
+
+        if (s.commandSamples > 0) {
+            StringBuilder motors = new StringBuilder();
+            for (Map.Entry<String, Long> e : s.saturatedByMotor.entrySet()) {
+                motors.append(motors.length() == 0 ? "" : ", ").append(e.getKey()).append(' ').append(e.getValue());
+            }
+            out.printf(Locale.US, "  saturation: %.1f%% of %d commands, max |power| %.2f (%s)%n",
+                    100.0 * s.saturatedFraction(), s.commandSamples, s.maxAbsPower, motors);
+        }
+    }
+
+    private static void addLogs(File f, List<File> logs) {
+        if (f.isDirectory()) {
+            File[] children = f.listFiles();
+            if (children == null) {
+                return;
+            }
+
+            Arrays.sort(children);
+            for (File child : children) {
+                if (child.isDirectory() || child.getName().endsWith(".log") || child.getName().endsWith(".rrc")) {
+                    addLogs(child, logs);
+                }
+            }
+        } else {
+            logs.add(f);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        long gapMs = 250;
+        long joinMs = 25;
+        double lowVoltage = 10.0;
+        File csv = null;
+        List<File> logs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith("--")) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("missing value for " + args[i]);
+                }
+
+                String value = args[++i];
+                switch (args[i - 1]) {
+                    case "--gap-ms":
+                        gapMs = Long.parseLong(value);
+                        break;
+                    case "--join-ms":
+                        joinMs = Long.parseLong(value);
+                        break;
+                    case "--low-voltage":
+                        lowVoltage = Double.parseDouble(value);
+                        break;
+                    case "--csv":
+                        csv = new File(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option: " + args[i - 1]);
+                }
+            } else {
+                addLogs(new File(args[i]), logs);
+            }
+        }
+
+        if (logs.isEmpty()) {
+            System.err.println("usage: MatchLogAnalyzer LOG_FILE_OR_DIR... [--gap-ms MS] [--join-ms MS] "
+                    + "[--low-voltage V] [--csv SEGMENTS_CSV]");
+            System.exit(2);
+        }
+
+        MatchLogAnalyzer analyzer = new MatchLogAnalyzer(gapMs * 1_000_000, joinMs * 1_000_000, lowVoltage);
+        try (PrintWriter w = csv == null ? null : new PrintWriter(csv, "UTF-8")) {
+            if (w != null) {
+                w.println("log,segment,start_s,duration_s,samples,mean_error,rms_error,max_error,final_error,"
+                        + "max_heading_error_deg,peak_command_speed");
+            }
+
+            for (File log : logs) {
+                System.out.println(log.getName());
+
+                Summary summary;
+                try (LogEntryReader reader = LogEntryReader.open(log)) {
+                    summary = analyzer.analyze(reader, seg -> {
+                        System.out.printf(Locale.US, "  segment %d at %.1f s: %.1f s, %d samples, "
+                                        + "error mean %.2f in, rms %.2f in, max %.2f in, final %.2f in, "
+                                        + "heading max %.1f deg%n",
+                                seg.index, seg.startSeconds, seg.durationSeconds(), seg.samples, seg.meanError,
+                                seg.rmsError, seg.maxError, seg.finalError, Math.toDegrees(seg.maxHeadingError));
+                        if (w != null) {
+                            w.printf(Locale.US, "%s,%d,%.3f,%.3f,%d,%.4f,%.4f,%.4f,%.4f,%.3f,%.3f%n",
+                                    log.getName(), seg.index, seg.startSeconds, seg.durationSeconds(), seg.samples,
+                                    seg.meanError, seg.rmsError, seg.maxError, seg.finalError,
+                                    Math.toDegrees(seg.maxHeadingError), seg.peakCommandSpeed);
+                        }
+                    });
+                } catch (IOException e) {
+                    System.out.println("  unreadable: " + e.getMessage());
+                    continue;
+                }
+
+                print(System.out, summary);
+                if (!summary.hasDriveChannels() && log.getName().endsWith(".log")) {
+                    // the op mode ran with ColumnarLog on, so this log only has parameters
+                    System.out.println("  (with ColumnarLog on, they're in the matching .rrc)");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.firstinspires.ftc.teamcode.tools;
+
+import com.acmerobotics.roadrunner.ftc.Encoder;
+import com.acmerobotics.roadrunner.ftc.PositionVelocityPair;
+import com.qualcomm.robotcore.hardware.DcMotorController;
+import com.qualcomm.robotcore.hardware.DcMotorSimple;
+
+import java.util.Map;
+
+/**
+ * An {@link Encoder} that returns whatever was last recorded for it.
+ * The recorded values already have the direction applied, so {@link #setDirection} has no effect.
+ */
+public final class ReplayEncoder implements Encoder {
+    private PositionVelocityPair value = new PositionVelocityPair(0, 0, 0, 0);
+    private DcMotorSimple.Direction direction = DcMotorSimple.Direction.FORWARD;
+
+    /**
+     * @param pair A logged {@link PositionVelocityPair}, as read by {@link FlightLogReader}.
+     */
+    public static PositionVelocityPair parse(Object pair) {
+        Map<?, ?> fields = (Map<?, ?>) pair;
+        return new PositionVelocityPair(
+                (Integer) fields.get("position"),
+                (Integer) fields.get("velocity"),
+                (Integer) fields.get("rawPosition"),
+                (Integer) fields.get("rawVelocity"));
+    }
+
+    public void set(PositionVelocityPair value) {
+        this.value = value;
+    }
+
+    @Override
+    public PositionVelocityPair getPositionAndVelocity() {
+        return value;
+    }
+
+    /**
+     * Never called during replay: only the RoadRunner tuning op modes ask for an encoder's controller,
+     * to bulk read its hub, and they run on the robot's encoders.
+     */
+    @Override
+    public DcMotorController getController() {
+        throw new UnsupportedOperationException("replayed encoders have no controller");
+    }
+
+    @Override
+    public DcMotorSimple.Direction getDirection() {
+        return direction;
+    }
+
+    @Override
+    public void setDirection(DcMotorSimple.Direction direction) {
+        this.direction = direction;
+    }
+}
@@ -0,0 +1,112 @@
+package org.firstinspires.ftc.teamcode.tools;
+
+import com.qualcomm.robotcore.hardware.IMU;
+
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.AngularVelocity;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesOrder;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesReference;
+import org.firstinspires.ftc.robotcore.external.navigation.Orientation;
+import org.firstinspires.ftc.robotcore.external.navigation.Quaternion;
+import org.firstinspires.ftc.robotcore.external.navigation.UnnormalizedAngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.YawPitchRollAngles;
+
+/**
+ * An {@link IMU} that returns whatever was last recorded.
+ * Every orientation call is derived from the recorded yaw, pitch and roll.
+ */
+public final class ReplayImu implements IMU {
+    private double yaw, pitch, roll;
+    private double xRotationRate, yRotationRate, zRotationRate;
+    private long timestamp;
+
+    /**
+     * Angles are in radians and rates in radians per second, as the localizers log them.
+     */
+    public void set(long timestamp, double yaw, double pitch, double roll,
+                    double xRotationRate, double yRotationRate, double zRotationRate) {
+        this.timestamp = timestamp;
+        this.yaw = yaw;
+        this.pitch = pitch;
+        this.roll = roll;
+        this.xRotationRate = xRotationRate;
+        this.yRotationRate = yRotationRate;
+        this.zRotationRate = zRotationRate;
+    }
+
+    @Override
+    public YawPitchRollAngles getRobotYawPitchRollAngles() {
+        return new YawPitchRollAngles(AngleUnit.RADIANS, yaw, pitch, roll, timestamp);
+    }
+
+    @Override
+    public AngularVelocity getRobotAngularVelocity(AngleUnit angleUnit) {
+        return new AngularVelocity(UnnormalizedAngleUnit.RADIANS,
+                (float) xRotationRate, (float) yRotationRate, (float) zRotationRate, timestamp)
+                .toAngleUnit(angleUnit.getUnnormalized());
+    }
+
+    @Override
+    public boolean initialize(Parameters parameters) {
+        return true;
+    }
+
+    /**
+     * Does nothing: the recorded angles already reflect any reset made on the robot.
+     */
+    @Override
+    public void resetYaw() {
+    }
+
+    @Override
+    public Orientation getRobotOrientation(AxesReference reference, AxesOrder order, AngleUnit angleUnit) {
+        // yaw, pitch and roll are intrinsic Z-X-Y rotations
+        return new Orientation(AxesReference.INTRINSIC, AxesOrder.ZXY, AngleUnit.RADIANS,
+                (float) yaw, (float) pitch, (float) roll, timestamp)
+                .toAxesReference(reference)
+                .toAxesOrder(order)
+                .toAngleUnit(angleUnit);
+    }
+
+    @Override
+    public Quaternion getRobotOrientationAsQuaternion() {
+        // the product of the intrinsic Z-X-Y rotations
+        double cz = Math.cos(yaw / 2), sz = Math.sin(yaw / 2);
+        double cx = Math.cos(pitch / 2), sx = Math.sin(pitch / 2);
+        double cy = Math.cos(roll / 2), sy = Math.sin(roll / 2);
+        return new Quaternion(
+                (float) (cz * cx * cy - sz * sx * sy),
+                (float) (cz * sx * cy - sz * cx * sy),
+                (float) (cz * cx * sy + sz * sx * cy),
+                (float) (cz * sx * sy + sz * cx * cy),
+                timestamp);
+    }
+
+    @Override
+    public Manufacturer getManufacturer() {
+        return Manufacturer.Other;
+    }
+
+    @Override
+    public String getDeviceName() {
+        return "Replayed IMU";
+    }
+
+    @Override
+    public String getConnectionInfo() {
+        return "log";
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @Override
+    public void resetDeviceConfigurationForOpMode() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * Desktop tools for the logs the robot writes: reading {@code FlightRecorder} and {@code ColumnarLog} logs,
+ * replaying localizer inputs and summarizing matches.
+ * <p>
+ * They use JVM APIs that aren't in {@code android.jar}, so they live in the unit test source set and stay out of
+ * the robot APK. Run their {@code main} methods from Android Studio, which uses TeamCode's unit test classpath.
+ */
+package org.firstinspires.ftc.teamcode.tools;